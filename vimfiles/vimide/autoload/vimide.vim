@@ -29,12 +29,14 @@
 " ----------------------------------------------------------------------------
 
 " default server informations.
-let s:server_host = "localhost"
-let s:server_port = "3333"
+let s:server_host = exists('g:VIdeServerHost') ? g:VIdeServerHost : "localhost"
+let s:server_port = exists('g:VIdeServerPort') ? g:VIdeServerPort : "3333"
+let s:channel_port = exists('g:VIdeChannelPort') ? g:VIdeChannelPort : "3334"
 
 " default command declartions.
 let s:command_ping = "/ping"
 let s:command_jobs = "/jobs"
+let s:command_job = "/job?id=<id>"
 
 " default library informations.
 if has('win32') || has('win64') || has('win32unix')
@@ -94,6 +96,26 @@ function! s:GetLibXgetPath()
   return g:VIde_LibXget
 endfunction
 
+" ----------------------------------------------------------------------------
+" Opens the json channel to the vimide server, or reuses the opened one.
+"
+" GetChannel:
+"   returns '' if the channel isn't available.
+" ----------------------------------------------------------------------------
+function! s:GetChannel()
+  if exists('s:channel') && ch_status(s:channel) == 'open'
+    return s:channel
+  endif
+
+  silent! let s:channel = ch_open(s:server_host . ':' . s:channel_port,
+        \ {'mode': 'json', 'waittime': 100})
+  if !exists('s:channel') || ch_status(s:channel) != 'open'
+    silent! unlet s:channel
+    return ''
+  endif
+  return s:channel
+endfunction
+
 " ----------------------------------------------------------------------------
 "
 " Functions:
@@ -119,6 +141,9 @@ function! vimide#Ping()
     let vv = get(result, 'Vimide')
     let str = "Eclipse: " . ev . "\n"
     let str .= "Vimide : " . vv
+    if has_key(result, 'Ready')
+      let str .= "\nReady  : " . (result.Ready ? 'yes' : 'warming up')
+    endif
     call vimide#print#Echo(str)
   endif
 endfunction
@@ -160,6 +185,106 @@ function! vimide#Jobs()
   endif
 endfunction
 
+" ----------------------------------------------------------------------------
+" Executes several commands in one request to the server.
+"
+" Batch:
+"   commands - the list of the commands, a nested list is a group of the
+"     independent commands executed concurrently.
+"   options (optional) - the options of Execute.
+"     |- parallel: 1 to execute all the commands concurrently.
+"   Returns the list of the results in the shape of the commands, a failed
+"   command results as {'_error': status, 'message': body}.
+" ----------------------------------------------------------------------------
+function! vimide#Batch(commands, ...)
+  let options = len(a:000) > 0 ? a:000[0] : {}
+  let command = '/batch?requests=' . s:UrlEncode(s:JsonList(a:commands))
+  if get(options, 'parallel', 0)
+    let command .= '&parallel=1'
+  endif
+  return vimide#Execute(command, options)
+endfunction
+
+function! s:JsonList(commands)
+  let items = []
+  for command in a:commands
+    if type(command) == g:LIST_TYPE
+      call add(items, s:JsonList(command))
+    else
+      let uri = command =~ '^/' ? command : '/' . command
+      call add(items, '"' . escape(uri, '\"') . '"')
+    endif
+  endfor
+  return '[' . join(items, ',') . ']'
+endfunction
+
+function! s:UrlEncode(str)
+  return substitute(a:str, '[^A-Za-z0-9_.~/-]',
+        \ '\=s:PercentEncode(submatch(0))', 'g')
+endfunction
+
+function! s:PercentEncode(char)
+  " encodes each byte of the multi-byte characters.
+  let result = ''
+  for i in range(strlen(a:char))
+    let result .= printf('%%%02X', char2nr(a:char[i]))
+  endfor
+  return result
+endfunction
+
+" ----------------------------------------------------------------------------
+" Submits a long-running command as a server job, the job is polled in the
+" background so vim stays usable meanwhile.
+"
+" Submit:
+"   command - the command of a long-running servlet.
+"   Callback - the function called with the result once the job is done.
+"   Executed at once if the vim was compiled without +timers.
+" ----------------------------------------------------------------------------
+function! vimide#Submit(command, Callback)
+  if !has('timers')
+    call call(a:Callback, [vimide#Execute(a:command)])
+    return
+  endif
+
+  let job = vimide#Execute(a:command . (a:command =~ '?' ? '&' : '?') .
+        \ 'async=1')
+  if type(job) != g:DICT_TYPE || !has_key(job, 'id')
+    call vimide#print#EchoError('Failed to submit: ' . a:command)
+    return
+  endif
+
+  let s:jobs[job.id] = a:Callback
+  call timer_start(500, function('s:PollJob', [job.id, job.version]))
+endfunction
+
+let s:jobs = {}
+
+function! s:PollJob(id, version, timer)
+  let job = vimide#Execute(substitute(s:command_job, '<id>', a:id, ''))
+  if type(job) != g:DICT_TYPE || !has_key(job, 'state')
+    silent! call remove(s:jobs, a:id)
+    return
+  endif
+
+  if job.state == 'waiting' || job.state == 'running'
+    if job.version != a:version && has_key(job, 'task')
+      call vimide#print#Echo(job.task .
+            \ (job.percent >= 0 ? ' ' . job.percent . '%' : ''))
+    endif
+    call timer_start(500, function('s:PollJob', [a:id, job.version]))
+    return
+  endif
+
+  let Callback = remove(s:jobs, a:id)
+  if job.state == 'done'
+    call call(Callback, [job.result])
+  else
+    call vimide#print#EchoError(job.name . ' ' . job.state .
+          \ (has_key(job, 'error') ? ': ' . job.error : ''))
+  endif
+endfunction
+
 " ----------------------------------------------------------------------------
 " Executes the command by server.
 "
@@ -167,6 +292,8 @@ endfunction
 "   options (optional) - the specific options setting to execute.
 "     |- exec: 1 to execute the command using execute instead of system.
 "     |- raw : 1 to get the result without evaluating as json.
+"   The command is sent over the json channel if g:VIdeUseChannel is set and
+"   the vim was compiled with +channel, through libxget otherwise.
 " ----------------------------------------------------------------------------
 function! vimide#Execute(command, ...)
   if g:VIdeDisable
@@ -177,6 +304,24 @@ function! vimide#Execute(command, ...)
   let exec = get(options, 'exec', 0)
 
   let result = ''
+  if a:command != '' && g:VIdeUseChannel && has('channel')
+    " requests over the persistent channel, the server answers with the
+    " decoded json already.
+    let channel = s:GetChannel()
+    if type(channel) != g:STRING_TYPE
+      let raw = get(options, 'raw', 0)
+      let uri = a:command =~ '^/' ? a:command : '/' . a:command
+      let request = {'uri': uri, 'raw': raw}
+      let result = ch_evalexpr(channel, request, {'timeout': 30000})
+      if type(result) == g:DICT_TYPE && has_key(result, '_error')
+        return ''
+      endif
+      " the non-json responses are answered as is.
+      return type(result) == g:STRING_TYPE && result != '' && !raw ?
+            \ eval(result) : result
+    endif
+  endif
+
   if a:command != ''
     let libfile = s:GetLibXgetPath()
     if libfile != ''
@@ -186,6 +331,13 @@ function! vimide#Execute(command, ...)
       endif
       let command .= a:command
 
+      " asks for the vim literals, which eval() understands as is, only if
+      " the vim couldn't decode the json itself.
+      if !get(options, 'raw', 0) && command !~ '[?&]format=' &&
+            \ !exists('*json_decode')
+        let command .= (command =~ '?' ? '&' : '?') . 'format=vim'
+      endif
+
       " escape specific characters.
       let command = substitute(command, '\s', '%20', 'g')
       " let command = escape(command, '&%!')
@@ -203,7 +355,13 @@ function! vimide#Execute(command, ...)
   " TODO: error determines here.
 
   let raw = get(options, 'raw', 0)
-  return result != '' && !raw ? eval(result) : result
+  if result == '' || raw
+    return result
+  endif
+  " the json is decoded as the channel does, the other formats are
+  " evaluated as vim literals.
+  return exists('*json_decode') && a:command !~ '[?&]format=' ?
+        \ json_decode(result) : eval(result)
 endfunction
 
 " vim:ft=vim
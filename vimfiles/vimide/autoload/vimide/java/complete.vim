@@ -40,13 +40,19 @@ if !exists('g:VIdeJavaCompleteLayout')
   endif
 endif
 
+" the millis to wait for a completion, the server gives up after.
+if !exists('g:VIdeJavaCompleteDeadline')
+  let g:VIdeJavaCompleteDeadline = 3000
+endif
+
 
 " ----------------------------------------------------------------------------
 "
 " Script Variables:
 "
 " ----------------------------------------------------------------------------
-let s:command_complete = '/javaComplete?project=<project>&file=<file>&offset=<offset>&layout=<layout>'
+let s:command_complete = '/javaComplete?project=<project>&file=<file>&offset=<offset>&layout=<layout>&client=' . getpid() .
+      \ '&deadline=' . g:VIdeJavaCompleteDeadline
 
 " ----------------------------------------------------------------------------
 "
@@ -197,15 +197,18 @@ function! vimide#project#impl#ProjectBuild(bang, cmdLine)
       endfor
     endif
 
-    let result = vimide#Execute(command)
-    if type(result) == g:STRING_TYPE
-      call vimide#print#Echo(result)
-    endif
+    call vimide#Submit(command, function('s:EchoResult'))
   else
     call vimide#print#EchoError("No illegal project was detected.")
   endif
 endfunction
 
+function! s:EchoResult(result)
+  if type(a:result) == g:STRING_TYPE
+    call vimide#print#Echo(a:result)
+  endif
+endfunction
+
 " ----------------------------------------------------------------------------
 " Change dir to the specific project location.
 "
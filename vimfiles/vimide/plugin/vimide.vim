@@ -111,6 +111,11 @@ if !exists('g:VIdeLocationListHeight')
   let g:VIdeLocationListHeight = 10
 endif
 
+" uses the persistent json channel instead of libxget, requires +channel.
+if !exists('g:VIdeUseChannel')
+  let g:VIdeUseChannel = 0
+endif
+
 " ----------------------------------------------------------------------------
 "
 " Command Declartions:
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.apt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writes the index of the <code>@WebServlet</code>
+ * classes into the compiled classes, so the servlets could be registered
+ * without scanning the classes at runtime.
+ * <p>
+ * Each line of the index is <code>class TAB asyncSupported TAB
+ * patterns</code>, the url patterns are separated by spaces, see
+ * {@link org.vimide.core.server.VimideHttpServer#registerServlets(Class)}.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@SupportedAnnotationTypes(ServletIndexProcessor.WEB_SERVLET)
+public class ServletIndexProcessor extends AbstractProcessor {
+
+    /**
+     * The resource name of the servlet index.
+     */
+    public static final String INDEX = "META-INF/vimide/servlets";
+
+    static final String WEB_SERVLET = "javax.servlet.annotation.WebServlet";
+
+    /**
+     * An entry of the servlet index.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    public static class Entry {
+
+        private final String className;
+        private final boolean asyncSupported;
+        private final String[] urlPatterns;
+
+        /**
+         * Creates an new Entry instance.
+         * 
+         * @param className the binary name of the servlet class.
+         * @param asyncSupported whether the servlet supports asynchronous.
+         * @param urlPatterns the url patterns.
+         */
+        public Entry(String className, boolean asyncSupported,
+                String... urlPatterns) {
+            this.className = className;
+            this.asyncSupported = asyncSupported;
+            this.urlPatterns = urlPatterns;
+        }
+
+        /**
+         * Parses the specified index line.
+         * 
+         * @param line the index line.
+         * @return the entry, null if a comment or malformed.
+         */
+        public static Entry parse(String line) {
+            final String[] fields = line.split("\t");
+            if (line.startsWith("#") || fields.length < 3
+                    || fields[0].length() == 0)
+                return null;
+            return new Entry(fields[0], Boolean.parseBoolean(fields[1]),
+                    fields[2].split(" "));
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public boolean isAsyncSupported() {
+            return asyncSupported;
+        }
+
+        public String[] getUrlPatterns() {
+            return urlPatterns;
+        }
+
+        /**
+         * Formats the index line of the entry.
+         */
+        @Override
+        public String toString() {
+            final StringBuilder line = new StringBuilder(className)
+                    .append('\t').append(asyncSupported).append('\t');
+            for (int i = 0; i < urlPatterns.length; i++) {
+                if (i > 0)
+                    line.append(' ');
+                line.append(urlPatterns[i]);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * Reads the entries of the servlet index.
+     * 
+     * @param in the stream of the index, closed once read.
+     * @return the entries.
+     * @throws IOException
+     */
+    public static List<Entry> readIndex(InputStream in) throws IOException {
+        final List<Entry> result = new ArrayList<Entry>();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                final Entry entry = Entry.parse(line);
+                if (null != entry)
+                    result.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * The index entries, keyed by the servlet class name.
+     */
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+    private boolean merged;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+     *      javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv) {
+        if (!merged) {
+            // an incremental build only hands the changed classes.
+            merged = true;
+            mergeExisting();
+        }
+
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() != ElementKind.CLASS
+                        || e.getModifiers().contains(Modifier.ABSTRACT))
+                    continue;
+                final Entry entry = toEntry((TypeElement) e);
+                if (null != entry)
+                    entries.put(entry.getClassName(), entry);
+            }
+        }
+
+        if (roundEnv.processingOver() && !entries.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index entry of the specified servlet type.
+     * 
+     * @param type the servlet type.
+     * @return the index entry, null if no url pattern declared.
+     */
+    private Entry toEntry(TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!WEB_SERVLET.equals(((TypeElement) mirror.getAnnotationType()
+                    .asElement()).getQualifiedName().toString()))
+                continue;
+
+            final List<String> patterns = new ArrayList<String>();
+            boolean async = false;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+                    .getElementUtils().getElementValuesWithDefaults(mirror)
+                    .entrySet()) {
+                final String name = entry.getKey().getSimpleName()
+                        .toString();
+                final Object value = entry.getValue().getValue();
+                if ("urlPatterns".equals(name) || "value".equals(name)) {
+                    for (Object pattern : (List<?>) value) {
+                        patterns.add(String.valueOf(((AnnotationValue) pattern)
+                                .getValue()));
+                    }
+                } else if ("asyncSupported".equals(name)) {
+                    async = Boolean.TRUE.equals(value);
+                }
+            }
+
+            if (patterns.isEmpty()) {
+                processingEnv.getMessager().printMessage(Kind.WARNING,
+                        "No url pattern declared, not indexed.", type);
+                return null;
+            }
+            return new Entry(processingEnv.getElementUtils()
+                    .getBinaryName(type).toString(), async,
+                    patterns.toArray(new String[patterns.size()]));
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the entries of the previous index whose classes still exist.
+     */
+    private void mergeExisting() {
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, "", INDEX);
+            for (Entry entry : readIndex(existing.openInputStream())) {
+                if (null != processingEnv.getElementUtils().getTypeElement(
+                        entry.getClassName().replace('$', '.')))
+                    entries.put(entry.getClassName(), entry);
+            }
+        } catch (IOException ignored) {
+            // no previous index, a full build.
+        }
+    }
+
+    /**
+     * Writes the index to the class output.
+     */
+    private void writeIndex() {
+        Writer writer = null;
+        try {
+            final FileObject index = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", INDEX);
+            writer = index.openWriter();
+            final PrintWriter out = new PrintWriter(writer);
+            out.println("# Generated by " + getClass().getName());
+            for (Entry entry : entries.values()) {
+                out.println(entry);
+            }
+            out.flush();
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Unable to write " + INDEX + ": " + e.getMessage());
+        } finally {
+            if (null != writer) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Metrics of an endpoint: the latency histogram in microseconds, the
+ * in-flight requests, the errors, the payload sizes and the latencies of the
+ * phases recorded by {@link VimideMetrics#recordPhase(String, long)}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class EndpointMetrics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final ConcurrentMap<String, LatencyHistogram> phases = Maps
+            .newConcurrentMap();
+
+    /**
+     * Creates an new EndpointMetrics instance.
+     * 
+     * @param name the endpoint name.
+     */
+    public EndpointMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Marks a request started.
+     * 
+     * @return the start in nanoseconds.
+     */
+    public long begin() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the request started at the specific time done.
+     * 
+     * @param startNanos the start returned by {@link #begin()}.
+     * @param status the response status.
+     * @param requestSize the request bytes, negative if unknown.
+     * @param responseSize the response bytes, negative if unknown.
+     */
+    public void end(long startNanos, int status, long requestSize,
+            long responseSize) {
+        inFlight.decrementAndGet();
+        latency.record((System.nanoTime() - startNanos) / 1000L);
+        if (status >= 400)
+            errors.incrementAndGet();
+        if (requestSize > 0)
+            requestBytes.addAndGet(requestSize);
+        if (responseSize > 0)
+            responseBytes.addAndGet(responseSize);
+    }
+
+    /**
+     * Records the latency of the specific phase.
+     * 
+     * @param phase the phase name.
+     * @param micros the latency in microseconds.
+     */
+    public void recordPhase(String phase, long micros) {
+        LatencyHistogram histogram = phases.get(phase);
+        if (null == histogram) {
+            phases.putIfAbsent(phase, new LatencyHistogram());
+            histogram = phases.get(phase);
+        }
+        histogram.record(micros);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Retrieves the phase histograms, sorted by the phase name.
+     * 
+     * @return the phase histograms.
+     */
+    public Map<String, LatencyHistogram> getPhases() {
+        return ImmutableSortedMap.copyOf(phases);
+    }
+
+}
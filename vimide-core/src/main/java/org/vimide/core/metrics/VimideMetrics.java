@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the {@link EndpointMetrics}.
+ * <p>
+ * The request being served by the current thread is kept, so the deeper
+ * code records its phases, e.g. the resource refresh or the reconcile, with
+ * {@link #recordPhase(String, long)} and doesn't need to know the endpoint.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideMetrics {
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideMetrics instance = new VimideMetrics();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideMetrics}.
+     * 
+     * @return singleton
+     */
+    public static VimideMetrics getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    static final ThreadLocal<EndpointMetrics> CURRENT = //
+    new ThreadLocal<EndpointMetrics>();
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = Maps
+            .newConcurrentMap();
+
+    /**
+     * Creates an new VimideMetrics instance.
+     */
+    private VimideMetrics() {
+        super();
+    }
+
+    /**
+     * Retrieves the metrics of the specific endpoint, creates it if absent.
+     * 
+     * @param name the endpoint name.
+     * @return the metrics.
+     */
+    public EndpointMetrics getEndpoint(String name) {
+        EndpointMetrics metrics = endpoints.get(name);
+        if (null == metrics) {
+            endpoints.putIfAbsent(name, new EndpointMetrics(name));
+            metrics = endpoints.get(name);
+        }
+        return metrics;
+    }
+
+    /**
+     * Retrieves all the endpoint metrics, sorted by the endpoint name.
+     * 
+     * @return the metrics.
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return ImmutableSortedMap.copyOf(endpoints);
+    }
+
+    /**
+     * Binds the current thread to the specific endpoint.
+     * 
+     * @param metrics the endpoint metrics, null to unbind.
+     * @return the previous bound one, to restore after.
+     */
+    public static EndpointMetrics bind(EndpointMetrics metrics) {
+        final EndpointMetrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        return previous;
+    }
+
+    /**
+     * Records the phase started at the specific time to the endpoint the
+     * current thread serving, if any.
+     * 
+     * @param phase the phase name, e.g. "refresh", "parse".
+     * @param startNanos the start by {@link System#nanoTime()}.
+     */
+    public static void recordPhase(String phase, long startNanos) {
+        final EndpointMetrics metrics = CURRENT.get();
+        if (null != metrics)
+            metrics.recordPhase(phase,
+                    (System.nanoTime() - startNanos) / 1000L);
+    }
+
+}
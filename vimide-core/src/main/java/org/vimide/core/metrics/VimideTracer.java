@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps the spans of the most recent requests, and exports them as the
+ * Chrome trace-event json, which is loaded by <code>chrome://tracing</code>.
+ * <p>
+ * A trace belongs to the thread serving the request, the spans are recorded
+ * by:
+ * 
+ * <pre>
+ * final int span = VimideTracer.enter(&quot;codeComplete&quot;);
+ * try {
+ *     ...
+ * } finally {
+ *     VimideTracer.exit(span);
+ * }
+ * </pre>
+ * 
+ * Both of them do nothing without a trace on the thread.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideTracer {
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideTracer instance = new VimideTracer();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideTracer}.
+     * 
+     * @return singleton
+     */
+    public static VimideTracer getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    static final boolean ENABLED = !Boolean.getBoolean("vimide.trace.disabled");
+    static final int CAPACITY = Math.max(1,
+            Integer.getInteger("vimide.trace.capacity", 64));
+    static final int MAX_SPANS = Math.max(1,
+            Integer.getInteger("vimide.trace.maxSpans", 1024));
+
+    static final ThreadLocal<Trace> CURRENT = new ThreadLocal<Trace>();
+
+    private final AtomicReferenceArray<Trace> traces = //
+    new AtomicReferenceArray<Trace>(CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates an new VimideTracer instance.
+     */
+    private VimideTracer() {
+        super();
+    }
+
+    /**
+     * Starts tracing the request served by the current thread.
+     * 
+     * @param name the request name, e.g. the endpoint.
+     * @param detail the request detail, e.g. the uri.
+     * @return the trace replaced, to restore by {@link #end(Trace, int)}.
+     */
+    public static Trace begin(String name, String detail) {
+        final Trace previous = CURRENT.get();
+        CURRENT.set(ENABLED ? new Trace(name, detail) : null);
+        return previous;
+    }
+
+    /**
+     * Ends the trace of the current thread and keeps it.
+     * 
+     * @param previous the trace returned by {@link #begin(String, String)}.
+     * @param status the response status.
+     */
+    public static void end(Trace previous, int status) {
+        final Trace trace = CURRENT.get();
+        CURRENT.set(previous);
+        if (null != trace) {
+            trace.finish(status);
+            getInstance().keep(trace);
+        }
+    }
+
+    /**
+     * Detaches the trace of the current thread without ending it, the
+     * request goes on elsewhere, e.g. as a job.
+     * 
+     * @param previous the trace returned by {@link #begin(String, String)}.
+     * @return the detached trace, to end by {@link #finish(Trace, int)}.
+     */
+    public static Trace detach(Trace previous) {
+        final Trace trace = CURRENT.get();
+        CURRENT.set(previous);
+        return trace;
+    }
+
+    /**
+     * Ends the detached trace and keeps it.
+     * 
+     * @param trace the trace returned by {@link #detach(Trace)}.
+     * @param status the response status.
+     */
+    public static void finish(Trace trace, int status) {
+        if (null != trace) {
+            trace.finish(status);
+            getInstance().keep(trace);
+        }
+    }
+
+    /**
+     * Enters a span of the current trace.
+     * 
+     * @param name the span name.
+     * @return the span handle for {@link #exit(int)}.
+     */
+    public static int enter(String name) {
+        final Trace trace = CURRENT.get();
+        return null == trace ? -1 : trace.enter(name);
+    }
+
+    /**
+     * Exits the specific span of the current trace.
+     * 
+     * @param span the handle returned by {@link #enter(String)}.
+     */
+    public static void exit(int span) {
+        if (span < 0)
+            return;
+        final Trace trace = CURRENT.get();
+        if (null != trace)
+            trace.exit(span);
+    }
+
+    void keep(Trace trace) {
+        traces.set((int) (sequence.getAndIncrement() % CAPACITY), trace);
+    }
+
+    /**
+     * Retrieves the kept traces, the oldest first.
+     * 
+     * @return the traces.
+     */
+    public List<Trace> getTraces() {
+        final long next = sequence.get();
+        final List<Trace> results = Lists.newArrayListWithCapacity(CAPACITY);
+        for (long i = Math.max(0, next - CAPACITY); i < next; i++) {
+            final Trace trace = traces.get((int) (i % CAPACITY));
+            if (null != trace)
+                results.add(trace);
+        }
+        return results;
+    }
+
+    /**
+     * Exports the specific traces as the Chrome trace-event json object.
+     * 
+     * @param traces the traces.
+     * @return the json object.
+     */
+    public static Map<String, Object> toTraceEvents(List<Trace> traces) {
+        final List<Map<String, Object>> events = Lists.newArrayList();
+        for (Trace trace : traces) {
+            trace.appendTo(events);
+        }
+
+        final Map<String, Object> result = Maps.newLinkedHashMap();
+        result.put("traceEvents", events);
+        result.put("displayTimeUnit", "ms");
+        return result;
+    }
+
+    /**
+     * Spans of a request, written by the serving thread only, and read after
+     * it's kept.
+     */
+    public static class Trace {
+
+        final String name;
+        final String detail;
+        final long threadId;
+        final String threadName;
+        final long startMicros;
+        final long startNanos;
+        long durationNanos;
+        int status;
+
+        String[] spanNames = new String[16];
+        long[] spanStarts = new long[16];
+        long[] spanEnds = new long[16];
+        int spans;
+        int dropped;
+
+        Trace(String name, String detail) {
+            this.name = name;
+            this.detail = detail;
+            this.threadId = Thread.currentThread().getId();
+            this.threadName = Thread.currentThread().getName();
+            this.startMicros = System.currentTimeMillis() * 1000L;
+            this.startNanos = System.nanoTime();
+        }
+
+        int enter(String spanName) {
+            if (spans >= MAX_SPANS) {
+                dropped++;
+                return -1;
+            }
+            if (spans == spanNames.length) {
+                final int length = Math.min(MAX_SPANS, spans * 2);
+                final String[] names = new String[length];
+                final long[] starts = new long[length];
+                final long[] ends = new long[length];
+                System.arraycopy(spanNames, 0, names, 0, spans);
+                System.arraycopy(spanStarts, 0, starts, 0, spans);
+                System.arraycopy(spanEnds, 0, ends, 0, spans);
+                spanNames = names;
+                spanStarts = starts;
+                spanEnds = ends;
+            }
+            spanNames[spans] = spanName;
+            spanStarts[spans] = System.nanoTime();
+            spanEnds[spans] = -1;
+            return spans++;
+        }
+
+        void exit(int span) {
+            if (span < spans)
+                spanEnds[span] = System.nanoTime();
+        }
+
+        void finish(int status) {
+            this.status = status;
+            this.durationNanos = System.nanoTime() - startNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationMicros() {
+            return durationNanos / 1000L;
+        }
+
+        void appendTo(List<Map<String, Object>> events) {
+            final Map<String, Object> args = Maps.newLinkedHashMap();
+            args.put("uri", detail);
+            args.put("status", status);
+            if (dropped > 0)
+                args.put("droppedSpans", dropped);
+
+            final Map<String, Object> threadArgs = Maps.newHashMap();
+            threadArgs.put("name", threadName);
+            final Map<String, Object> thread = Maps.newLinkedHashMap();
+            thread.put("name", "thread_name");
+            thread.put("ph", "M");
+            thread.put("pid", 1);
+            thread.put("tid", threadId);
+            thread.put("args", threadArgs);
+            events.add(thread);
+
+            events.add(event(name, startMicros, durationNanos / 1000L, args));
+            for (int i = 0; i < spans; i++) {
+                // the spans not exited (by an exception) end with the request.
+                final long end = spanEnds[i] < 0 ? startNanos + durationNanos
+                        : spanEnds[i];
+                events.add(event(spanNames[i], startMicros
+                        + (spanStarts[i] - startNanos) / 1000L,
+                        (end - spanStarts[i]) / 1000L, null));
+            }
+        }
+
+        Map<String, Object> event(String eventName, long ts, long dur,
+                Map<String, Object> args) {
+            final Map<String, Object> event = Maps.newLinkedHashMap();
+            event.put("name", eventName);
+            event.put("cat", "vimide");
+            event.put("ph", "X");
+            event.put("ts", ts);
+            event.put("dur", dur);
+            event.put("pid", 1);
+            event.put("tid", threadId);
+            if (null != args)
+                event.put("args", args);
+            return event;
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.io.IOException;
+
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.AbstractHttpConnection;
+import org.eclipse.jetty.server.BlockingHttpConnection;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+
+/**
+ * Connector of the requests dispatched in-process.
+ * <p>
+ * Unlike the {@link LocalConnector} it extends, the request is handled on
+ * the calling thread: no thread of the httpd's pool is taken and the caller
+ * doesn't wait on a timeout, so the dispatching threads of the channel and
+ * the batches never starve the pool they'd wait for. The requests arrived
+ * here are marked by the {@link #ATTRIBUTE} request attribute, which the
+ * clients over the network couldn't set.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+class InProcessConnector extends LocalConnector {
+
+    /**
+     * Request attribute marking the requests dispatched in-process.
+     */
+    static final String ATTRIBUTE = "org.vimide.core.server.inProcess";
+
+    /**
+     * Creates an new InProcessConnector instance.
+     */
+    InProcessConnector() {
+        super();
+        // nothing to accept, the requests are handled by the callers.
+        setAcceptors(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.jetty.server.AbstractConnector#customize(org.eclipse.jetty.io.EndPoint,
+     *      org.eclipse.jetty.server.Request)
+     */
+    @Override
+    public void customize(EndPoint endpoint, Request request)
+            throws IOException {
+        super.customize(endpoint, request);
+        request.setAttribute(ATTRIBUTE, Boolean.TRUE);
+    }
+
+    /**
+     * Handles the raw http/1.0 request on the calling thread.
+     * 
+     * @param raw the request bytes.
+     * @return the raw response.
+     * @throws IOException
+     */
+    ByteArrayBuffer handle(byte[] raw) throws IOException {
+        // the batch servlet dispatches on its own request thread.
+        final AbstractHttpConnection outer = AbstractHttpConnection
+                .getCurrentConnection();
+
+        final ByteArrayEndPoint endPoint = new ByteArrayEndPoint(raw, 1024);
+        endPoint.setGrowOutput(true);
+        final Connection connection = new Connection(this, endPoint,
+                getServer());
+        endPoint.setConnection(connection);
+        connectionOpened(connection);
+        try {
+            while (endPoint.getIn().length() > 0 && endPoint.isOpen()) {
+                connection.handle();
+            }
+        } finally {
+            connectionClosed(connection);
+            Connection.restore(outer);
+        }
+        return endPoint.getOut();
+    }
+
+    /**
+     * Blocking connection which could restore the current connection of the
+     * thread it's nested in.
+     */
+    static class Connection extends BlockingHttpConnection {
+
+        Connection(InProcessConnector connector, EndPoint endPoint,
+                Server server) {
+            super(connector, endPoint, server);
+        }
+
+        static void restore(AbstractHttpConnection connection) {
+            setCurrentConnection(connection);
+        }
+    }
+
+}
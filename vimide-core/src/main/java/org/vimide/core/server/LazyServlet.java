@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.io.IOException;
+
+import javax.servlet.GenericServlet;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Servlet registered from the servlet index, loads and initializes the
+ * indexed servlet on the first request.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+final class LazyServlet extends GenericServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ClassLoader classLoader;
+    private final String className;
+    private volatile Servlet delegate;
+
+    /**
+     * Creates an new LazyServlet instance.
+     * 
+     * @param classLoader the class loader of the indexed servlet.
+     * @param className the class name of the indexed servlet.
+     */
+    LazyServlet(ClassLoader classLoader, String className) {
+        super();
+        this.classLoader = classLoader;
+        this.className = className;
+    }
+
+    /**
+     * Retrieves the class name of the indexed servlet.
+     * 
+     * @return the class name.
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Loads the class of the indexed servlet, without instantiating it.
+     * 
+     * @return the servlet class.
+     * @throws ClassNotFoundException
+     */
+    Class<? extends Servlet> getServletClass() throws ClassNotFoundException {
+        return classLoader.loadClass(className).asSubclass(Servlet.class);
+    }
+
+    /**
+     * Tells if the indexed servlet was instantiated.
+     * 
+     * @return true if instantiated, false otherwise.
+     */
+    boolean isLoaded() {
+        return null != delegate;
+    }
+
+    /**
+     * Retrieves the indexed servlet, instantiates and initializes it on the
+     * first call.
+     * 
+     * @return the servlet.
+     * @throws ServletException
+     */
+    Servlet getDelegate() throws ServletException {
+        Servlet servlet = delegate;
+        if (null == servlet) {
+            synchronized (this) {
+                servlet = delegate;
+                if (null == servlet) {
+                    try {
+                        servlet = getServletClass().newInstance();
+                    } catch (Exception e) {
+                        throw new ServletException("Unable to instantiate '"
+                                + className + "'", e);
+                    }
+                    servlet.init(getServletConfig());
+                    delegate = servlet;
+                }
+            }
+        }
+        return servlet;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#service(javax.servlet.ServletRequest,
+     *      javax.servlet.ServletResponse)
+     */
+    @Override
+    public void service(ServletRequest req, ServletResponse res)
+            throws ServletException, IOException {
+        getDelegate().service(req, res);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#destroy()
+     */
+    @Override
+    public void destroy() {
+        final Servlet servlet;
+        synchronized (this) {
+            // shared by the holders of each url pattern.
+            servlet = delegate;
+            delegate = null;
+        }
+        if (null != servlet)
+            servlet.destroy();
+        super.destroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#getServletInfo()
+     */
+    @Override
+    public String getServletInfo() {
+        return className;
+    }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+/**
+ * Vimide server speaking the Vim channel json mode, see
+ * {@link VimideChannelSessionFactory}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideChannelServer extends VimideServer {
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideChannelServer instance = new VimideChannelServer();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideChannelServer}.
+     * 
+     * @return singleton
+     */
+    public static VimideChannelServer getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final VimideChannelSessionFactory sessionFactory = new VimideChannelSessionFactory();
+
+    /**
+     * Creates an new VimideChannelServer instance.
+     */
+    private VimideChannelServer() {
+        super();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.server.VimideServer#getDefaultSessionFactory()
+     */
+    @Override
+    public VimideSessionFactory getDefaultSessionFactory() {
+        return sessionFactory;
+    }
+
+}
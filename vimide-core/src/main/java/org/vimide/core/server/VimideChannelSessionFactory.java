@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.util.JsonUtil;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Session factory serving the Vim channel in json mode.
+ * <p>
+ * A request is <code>[id, payload]</code> where the payload is either the
+ * request uri, e.g. <code>"/ping"</code>, or an object of:
+ * <ul>
+ * <li>uri: the request uri, the query string included.</li>
+ * <li>method: the http method, GET by default, POST if a body supplied.</li>
+ * <li>params: object of the parameters appended to the query string.</li>
+ * <li>body: the request body.</li>
+ * <li>raw: 1 to answer the response body as a string.</li>
+ * </ul>
+ * The request is dispatched by the {@link VimideLocalDispatcher} to the same
+ * servlets as the http requests and answered with <code>[id, result]</code>
+ * as soon as it's done, regardless the order of arrival. A failed request is answered with
+ * <code>[id, {"_error": status, "message": body}]</code>.
+ * <p>
+ * The payload <code>{"subscribe": [types]}</code> forwards the events of the
+ * {@link VimideEventHub} to the session as
+ * <code>[0, {"event": type, "id": id, "data": data}]</code>. While the
+ * session is suspended by its queued bytes only the latest event of each
+ * type is kept, it's forwarded with <code>"superseded": count</code> of the
+ * events dropped, e.g. to request a full list of problems.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideChannelSessionFactory extends IoHandlerAdapter implements
+        VimideSessionFactory {
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideChannelSessionFactory.class);
+
+    static final ObjectMapper OBJECT_MAPPER = JsonUtil.getObjectMapper();
+
+    static final String SUBSCRIPTION = VimideChannelSessionFactory.class
+            .getName() + ".subscription";
+
+    /**
+     * Session container.
+     */
+    protected final VimideSessionRegistry sessionRegistry = new VimideSessionRegistry();
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.server.VimideSessionFactory#getSessionMap()
+     */
+    @Override
+    public Map<Long, VimideSession> getSessionMap() {
+        return sessionRegistry.asMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.server.VimideSessionFactory#getSessionRegistry()
+     */
+    @Override
+    public VimideSessionRegistry getSessionRegistry() {
+        return sessionRegistry;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#sessionCreated(org.apache.mina.core.session.IoSession)
+     */
+    @Override
+    public void sessionCreated(IoSession session) throws Exception {
+        LOGGER.debug("Channel connected from: {}", session.getRemoteAddress());
+        sessionRegistry.register(session);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#sessionClosed(org.apache.mina.core.session.IoSession)
+     */
+    @Override
+    public void sessionClosed(IoSession session) throws Exception {
+        LOGGER.debug("Channel closed from: {}", session.getRemoteAddress());
+
+        unsubscribe(session);
+        sessionRegistry.unregister(session);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#messageSent(org.apache.mina.core.session.IoSession,
+     *      java.lang.Object)
+     */
+    @Override
+    public void messageSent(IoSession session, Object message)
+            throws Exception {
+        sessionRegistry.messageSent(session);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#sessionIdle(org.apache.mina.core.session.IoSession,
+     *      org.apache.mina.core.session.IdleStatus)
+     */
+    @Override
+    public void sessionIdle(IoSession session, IdleStatus status)
+            throws Exception {
+        // the subscribers are quiet while waiting for the events.
+        if (null == session.getAttribute(SUBSCRIPTION))
+            sessionRegistry.reap(session, status);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#exceptionCaught(org.apache.mina.core.session.IoSession,
+     *      java.lang.Throwable)
+     */
+    @Override
+    public void exceptionCaught(IoSession session, Throwable cause)
+            throws Exception {
+        LOGGER.debug("Exception caught by {} for {}",
+                session.getRemoteAddress(), cause.getMessage());
+        session.close(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.apache.mina.core.service.IoHandlerAdapter#messageReceived(org.apache.mina.core.session.IoSession,
+     *      java.lang.Object)
+     */
+    @Override
+    public void messageReceived(IoSession session, Object message)
+            throws Exception {
+        final VimideSession vimideSession = sessionRegistry.get(session);
+        if (null == vimideSession) {
+            throw new IllegalStateException(
+                    "Illegal message received in a noop-session.");
+        }
+
+        final JsonNode node = OBJECT_MAPPER.readTree((String) message);
+        if (!node.isArray() || node.size() != 2) {
+            LOGGER.debug("Ignores the illegal channel message: {}", message);
+            return;
+        }
+
+        final JsonNode id = node.get(0);
+        final JsonNode payload = node.get(1);
+
+        Object result;
+        try {
+            if (payload.isObject() && payload.has("subscribe"))
+                result = subscribe(vimideSession, payload.get("subscribe"));
+            else
+                result = VimideLocalDispatcher.execute(payload);
+        } catch (final Exception e) {
+            LOGGER.error("Error caught at channel request {}: {}",
+                    new Object[] { payload, e.getMessage(), e });
+            result = VimideLocalDispatcher.error(500,
+                    String.valueOf(e.getMessage()));
+        }
+
+        final ArrayNode response = OBJECT_MAPPER.createArrayNode();
+        response.add(id);
+        response.addPOJO(result);
+        vimideSession.write(OBJECT_MAPPER.writeValueAsString(response));
+    }
+
+    /**
+     * Registers the event forwarding of the session.
+     */
+    Object subscribe(final VimideSession session, JsonNode types)
+            throws Exception {
+        unsubscribe(session.getIoSession());
+
+        final Set<String> typeSet;
+        if (null == types || types.isNull()
+                || (types.isArray() && types.size() == 0)) {
+            return Collections.singletonMap("subscribed",
+                    Collections.emptyList());
+        } else if (types.isArray()) {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (JsonNode type : types)
+                builder.add(type.asText());
+            typeSet = builder.build();
+        } else {
+            typeSet = ImmutableSet.of(types.asText());
+        }
+
+        final VimideEventListener listener = new VimideEventListener() {
+
+            @Override
+            public void onEvent(final VimideEvent event) {
+                if (!typeSet.contains(event.getType()))
+                    return;
+
+                try {
+                    // never blocks the publisher, an event deferred by a
+                    // suspended session is superseded by the next one of
+                    // the same type, the client resyncs on "superseded".
+                    session.offer(event.getType(),
+                            new VimideSession.Notification() {
+
+                                @Override
+                                public Object toMessage(int superseded) {
+                                    return toEventMessage(event, superseded);
+                                }
+                            });
+                } catch (final Exception e) {
+                    LOGGER.debug("Unable to forward the event: {}",
+                            e.getMessage());
+                }
+            }
+        };
+
+        session.set(SUBSCRIPTION, listener);
+        VimideEventHub.getInstance().addListener(listener);
+        return Collections.singletonMap("subscribed", typeSet);
+    }
+
+    /**
+     * Creates the channel message of the forwarded event.
+     */
+    static String toEventMessage(VimideEvent event, int superseded) {
+        final ObjectNode data = OBJECT_MAPPER.createObjectNode();
+        data.put("event", event.getType());
+        data.put("id", event.getId());
+        data.putPOJO("data", event.getData());
+        if (superseded > 0)
+            data.put("superseded", superseded);
+
+        final ArrayNode message = OBJECT_MAPPER.createArrayNode();
+        message.add(0);
+        message.add(data);
+        try {
+            return OBJECT_MAPPER.writeValueAsString(message);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void unsubscribe(IoSession session) {
+        final Object listener = session.removeAttribute(SUBSCRIPTION);
+        if (listener instanceof VimideEventListener)
+            VimideEventHub.getInstance().removeListener(
+                    (VimideEventListener) listener);
+    }
+
+}
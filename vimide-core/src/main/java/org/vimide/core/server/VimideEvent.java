@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+/**
+ * Event pushed to the clients through the {@link VimideEventHub}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideEvent {
+
+    private final long id;
+    private final String type;
+    private final Object data;
+
+    /**
+     * Creates an new VimideEvent instance.
+     * 
+     * @param id the sequence id.
+     * @param type the event type.
+     * @param data the payload, serialized as json.
+     */
+    public VimideEvent(long id, String type, Object data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Retrieves the sequence id, increasing through the hub's lifetime.
+     * 
+     * @return the id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the event type, e.g. "problems", "job", "files".
+     * 
+     * @return the type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the payload.
+     * 
+     * @return the data.
+     */
+    public Object getData() {
+        return data;
+    }
+
+}
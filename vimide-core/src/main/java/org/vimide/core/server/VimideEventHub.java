@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Hub of the events pushed to the clients.
+ * <p>
+ * Publishing never blocks, the events are delivered to the listeners on a
+ * single dispatching thread in the publishing order. The listeners only queue
+ * the events, the writing is done on their own threads. The latest events are
+ * kept in a ring, so a reconnecting client could resume from the last event
+ * id it has seen.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideEventHub {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideEventHub.class);
+
+    public static final int HISTORY_SIZE = Math.max(1,
+            Integer.getInteger("vimide.events.history", 256));
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideEventHub instance = new VimideEventHub();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideEventHub}.
+     * 
+     * @return singleton
+     */
+    public static VimideEventHub getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final List<VimideEventListener> listeners = new CopyOnWriteArrayList<VimideEventListener>();
+    private final VimideEvent[] history = new VimideEvent[HISTORY_SIZE];
+    private long sequence;
+
+    private final ExecutorService dispatcher = Executors
+            .newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("vimide-events-%d").setDaemon(true)
+                    .build());
+
+    /**
+     * Creates an new VimideEventHub instance.
+     */
+    private VimideEventHub() {
+        super();
+    }
+
+    /**
+     * Publishes an event.
+     * 
+     * @param type the event type.
+     * @param data the payload.
+     * @return the published event.
+     */
+    public VimideEvent publish(String type, Object data) {
+        final VimideEvent event;
+        synchronized (history) {
+            event = new VimideEvent(++sequence, type, data);
+            history[(int) (event.getId() % HISTORY_SIZE)] = event;
+
+            // submitted inside the lock to keep the ids ordered.
+            dispatcher.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    dispatch(event);
+                }
+            });
+        }
+        return event;
+    }
+
+    /**
+     * Retrieves the kept events published after the specific id.
+     * 
+     * @param lastId the last id seen.
+     * @return list of events, oldest first.
+     */
+    public List<VimideEvent> getEventsAfter(long lastId) {
+        final List<VimideEvent> results = Lists.newArrayList();
+        synchronized (history) {
+            long from = Math.max(lastId + 1, sequence - HISTORY_SIZE + 1);
+            for (long id = Math.max(1, from); id <= sequence; id++) {
+                VimideEvent event = history[(int) (id % HISTORY_SIZE)];
+                if (null != event && event.getId() == id)
+                    results.add(event);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the id of the latest published event.
+     * 
+     * @return the id, 0 if none.
+     */
+    public long getLastEventId() {
+        synchronized (history) {
+            return sequence;
+        }
+    }
+
+    /**
+     * Tells if any listener is registered.
+     * 
+     * @return true if listened.
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    public void addListener(VimideEventListener listener) {
+        if (null != listener)
+            listeners.add(listener);
+    }
+
+    public void removeListener(VimideEventListener listener) {
+        if (null != listener)
+            listeners.remove(listener);
+    }
+
+    void dispatch(VimideEvent event) {
+        for (VimideEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (final Exception e) {
+                LOGGER.error("Error caught at dispatching event {}: {}",
+                        new Object[] { event.getType(), e.getMessage(), e });
+            }
+        }
+    }
+
+}
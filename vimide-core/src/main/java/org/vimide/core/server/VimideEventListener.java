@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+/**
+ * Listener of the events published to the {@link VimideEventHub}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public interface VimideEventListener {
+
+    /**
+     * Invoked on the hub's dispatching thread, in the publishing order. The
+     * thread is shared by all the listeners, so it must not block, i.e. no
+     * I/O should be done here.
+     * 
+     * @param event the event.
+     */
+    void onEvent(VimideEvent event);
+
+}
@@ -22,23 +22,37 @@
  */
 package org.vimide.core.server;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.Servlet;
+import javax.servlet.ServletRequest;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.apt.ServletIndexProcessor;
+import org.vimide.core.servlet.ResponseCache;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Http implementation of Vimide's server.
@@ -75,12 +89,34 @@ public class VimideHttpServer {
         return SingletonHolder.instance;
     }
 
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * The characters of the request uri which are escaped when dispatched
+     * in-process, besides the controls, the spaces and the non-ascii ones.
+     */
+    static final String UNSAFE_URI_CHARS = "\"#<>\\^`{|}";
+
+    static final int MIN_THREADS = Integer.getInteger(
+            "vimide.http.minThreads", 4);
+    static final int MAX_THREADS = Integer.getInteger(
+            "vimide.http.maxThreads", 32);
+    static final int QUEUE_CAPACITY = Integer.getInteger(
+            "vimide.http.queueCapacity", 256);
+    static final int ACCEPTORS = Math.max(1, Integer.getInteger(
+            "vimide.http.acceptors", Math.max(1, Runtime.getRuntime()
+                    .availableProcessors() / 4)));
+
     /**
      * Http daemon server instance.
      */
     private Server httpd;
+    private InProcessConnector localConnector;
     private List<WeakReference<Class<? extends Servlet>>> servletList = Lists
             .newArrayList();
+    private List<LazyServlet> lazyServletList = Lists
+            .newCopyOnWriteArrayList();
 
     /**
      * Creates an new VimideHttpServer instance.
@@ -112,9 +148,9 @@ public class VimideHttpServer {
         if (!Strings.isNullOrEmpty(hostname) && hostname.trim().equals("*"))
             hostname = null;
 
-        if (port <= 0 || port > 65535)
+        if (port < 0 || port > 65535)
             throw new IllegalArgumentException(
-                    "Illegal listening port was submit. It must during (0, 65535].");
+                    "Illegal listening port was submit. It must during [0, 65535], 0 for an ephemeral port.");
 
         SocketAddress localAddress;
         if (null == hostname)
@@ -142,7 +178,33 @@ public class VimideHttpServer {
                     "The httpd is running now, make sure to shutdown first.");
         }
 
-        httpd = new Server((InetSocketAddress) localAddress);
+        final InetSocketAddress address = (InetSocketAddress) localAddress;
+
+        // bounded pool, the queued requests beyond the capacity are refused
+        // by the connector instead of growing without limit.
+        final QueuedThreadPool threadPool = new QueuedThreadPool(
+                new BlockingArrayQueue<Runnable>(MIN_THREADS, MIN_THREADS,
+                        QUEUE_CAPACITY));
+        threadPool.setName("vimide-httpd");
+        threadPool.setMinThreads(MIN_THREADS);
+        threadPool.setMaxThreads(Math.max(MIN_THREADS, MAX_THREADS));
+
+        // NOTE: jetty 8 uses a selector per acceptor.
+        final SelectChannelConnector connector = new SelectChannelConnector();
+        if (null != address.getAddress()
+                && !address.getAddress().isAnyLocalAddress())
+            connector.setHost(address.getAddress().getHostAddress());
+        connector.setPort(address.getPort());
+        connector.setAcceptors(ACCEPTORS);
+
+        httpd = new Server();
+        httpd.setThreadPool(threadPool);
+        httpd.addConnector(connector);
+
+        // in-process connector for the requests arrived by other transports.
+        localConnector = new InProcessConnector();
+        httpd.addConnector(localConnector);
+
         final ServletContextHandler contextHandler = new ServletContextHandler(
                 ServletContextHandler.SESSIONS);
         contextHandler.setContextPath("/");
@@ -164,12 +226,31 @@ public class VimideHttpServer {
 
         if (isRunning()) {
             httpd.stop();
+            localConnector = null;
             LOGGER.info("STOPED the vimide http server.");
             
             servletList.clear();
+            lazyServletList.clear();
         }
     }
 
+    /**
+     * Retrieves the bound port of the network connector, useful when started
+     * on the ephemeral port.
+     * 
+     * @return the bound port, -1 if not running.
+     */
+    public int getLocalPort() {
+        if (null != httpd && null != httpd.getConnectors()) {
+            for (Connector connector : httpd.getConnectors()) {
+                if (connector != localConnector
+                        && connector.getLocalPort() > 0)
+                    return connector.getLocalPort();
+            }
+        }
+        return -1;
+    }
+
     /**
      * Tells if the http server is running.
      * 
@@ -207,18 +288,173 @@ public class VimideHttpServer {
             if (null != webServlet.urlPatterns()
                     && webServlet.urlPatterns().length > 0) {
                 for (String pathSpec : webServlet.urlPatterns()) {
-                    contextHandler.addServlet(new ServletHolder(servletClass),
-                            pathSpec);
+                    final ServletHolder holder = new ServletHolder(
+                            servletClass);
+                    // the annotation isn't processed by the embedded context.
+                    holder.setAsyncSupported(webServlet.asyncSupported());
+                    contextHandler.addServlet(holder, pathSpec);
 
                     // adding a weak ref to the list for easier lookup.
                     WeakReference<Class<? extends Servlet>> e = new WeakReference<Class<? extends Servlet>>(
                             servletClass);
                     servletList.add(e);
                 }
+                ResponseCache.getInstance().invalidate();
+            }
+        }
+    }
+
+    /**
+     * Registers the servlets listed in the servlet index, which generated by
+     * {@link ServletIndexProcessor} into the same classpath entry of the
+     * specified anchor class. The servlets are loaded with the anchor's class
+     * loader on their first request.
+     * 
+     * @param anchor the class locates the classpath entry.
+     * @return the count of the registered servlets, -1 if no index found.
+     * @throws IOException
+     */
+    public int registerServlets(Class<?> anchor) throws IOException {
+        final String classFile = anchor.getName().replace('.', '/')
+                + ".class";
+        final URL classUrl = anchor.getResource("/" + classFile);
+        if (null == classUrl)
+            return -1;
+
+        final String base = classUrl.toString();
+        final URL index = new URL(base.substring(0, base.length()
+                - classFile.length())
+                + ServletIndexProcessor.INDEX);
+
+        final List<ServletIndexProcessor.Entry> entries;
+        try {
+            entries = ServletIndexProcessor.readIndex(index.openStream());
+        } catch (IOException e) {
+            LOGGER.debug("No servlet index: {}", index);
+            return -1;
+        }
+
+        for (ServletIndexProcessor.Entry entry : entries) {
+            LOGGER.debug("Indexed servlet: {}", entry.getClassName());
+            registerServlet(anchor.getClassLoader(), entry.getClassName(),
+                    entry.isAsyncSupported(), entry.getUrlPatterns());
+        }
+        return entries.size();
+    }
+
+    /**
+     * Registers the servlet by its class name, the servlet is loaded and
+     * instantiated on its first request.
+     * 
+     * @param classLoader the class loader of the servlet.
+     * @param className the class name of the servlet.
+     * @param asyncSupported whether the servlet supports asynchronous.
+     * @param urlPatterns the url patterns to map.
+     */
+    public void registerServlet(ClassLoader classLoader, String className,
+            boolean asyncSupported, String... urlPatterns) {
+        if (null != httpd
+                && httpd.getHandler() instanceof ServletContextHandler
+                && urlPatterns.length > 0) {
+            final ServletContextHandler contextHandler = (ServletContextHandler) httpd
+                    .getHandler();
+
+            // shared by the patterns, the servlet instantiated once.
+            final LazyServlet servlet = new LazyServlet(classLoader,
+                    className);
+            for (String pathSpec : urlPatterns) {
+                final ServletHolder holder = new ServletHolder(servlet);
+                holder.setAsyncSupported(asyncSupported);
+                contextHandler.addServlet(holder, pathSpec);
             }
+            lazyServletList.add(servlet);
+            ResponseCache.getInstance().invalidate();
         }
     }
 
+    /**
+     * Tells if the request was dispatched in-process. Such a request is
+     * answered once the handling returned, so it couldn't be suspended.
+     * 
+     * @param req the request.
+     * @return true if dispatched in-process.
+     */
+    public static boolean isLocalDispatch(ServletRequest req) {
+        return Boolean.TRUE.equals(req
+                .getAttribute(InProcessConnector.ATTRIBUTE));
+    }
+
+    /**
+     * Dispatches a request to the registered servlets in-process, without
+     * any socket involved. The request is handled on the calling thread.
+     * 
+     * @param method the http method.
+     * @param uri the request uri, including the query string.
+     * @param body the request body, null if none.
+     * @return the response.
+     * @throws Exception
+     */
+    public LocalResponse dispatch(String method, String uri, String body)
+            throws Exception {
+        final InProcessConnector connector = localConnector;
+        if (null == connector || !isRunning())
+            throw new IllegalStateException("The httpd isn't running.");
+
+        if (Strings.isNullOrEmpty(method))
+            method = null == body ? "GET" : "POST";
+        if (!method.matches("[A-Za-z]+"))
+            throw new IllegalArgumentException("Illegal request method: "
+                    + method);
+        if (Strings.isNullOrEmpty(uri) || uri.charAt(0) != '/')
+            throw new IllegalArgumentException("Illegal request uri: " + uri);
+
+        final byte[] content = null == body ? new byte[0] : body
+                .getBytes(UTF_8);
+        final StringBuilder head = new StringBuilder();
+        head.append(method.toUpperCase()).append(' ')
+                .append(encodeUri(uri)).append(" HTTP/1.0\r\n");
+        head.append("Host: localhost\r\n");
+        if (null != body) {
+            head.append("Content-Type: text/plain; charset=UTF-8\r\n");
+            head.append("Content-Length: ").append(content.length)
+                    .append("\r\n");
+        }
+        head.append("\r\n");
+
+        final byte[] headBytes = head.toString().getBytes(ISO_8859_1);
+        final byte[] raw = new byte[headBytes.length + content.length];
+        System.arraycopy(headBytes, 0, raw, 0, headBytes.length);
+        System.arraycopy(content, 0, raw, headBytes.length, content.length);
+
+        final ByteArrayBuffer responses = connector.handle(raw);
+        return LocalResponse.parse(null == responses ? new byte[0]
+                : responses.asArray());
+    }
+
+    /**
+     * Escapes the request uri for the request line: the existing escapes are
+     * kept, the non-ascii characters are escaped by their utf-8 bytes.
+     * 
+     * @param uri the request uri.
+     * @return the escaped uri.
+     */
+    static String encodeUri(String uri) {
+        final StringBuilder result = new StringBuilder(uri.length() + 16);
+        for (byte b : uri.getBytes(UTF_8)) {
+            final int c = b & 0xff;
+            if (c > 0x20 && c < 0x7f && UNSAFE_URI_CHARS.indexOf(c) < 0) {
+                result.append((char) c);
+            } else {
+                result.append('%')
+                        .append(Character.toUpperCase(Character.forDigit(
+                                c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(
+                                c & 0xf, 16)));
+            }
+        }
+        return result.toString();
+    }
+
     public List<Class<? extends Servlet>> listServlets() {
         List<Class<? extends Servlet>> list = Lists.newArrayList();
         for (WeakReference<Class<? extends Servlet>> ref : servletList) {
@@ -226,7 +462,112 @@ public class VimideHttpServer {
                 list.add(ref.get());
             }
         }
+        for (LazyServlet servlet : lazyServletList) {
+            try {
+                list.add(servlet.getServletClass());
+            } catch (ClassNotFoundException e) {
+                LOGGER.warn("Unable to load the indexed servlet: {}",
+                        servlet.getClassName());
+            }
+        }
         return list;
     }
 
-}
\ No newline at end of file
+    /**
+     * Response of the in-process dispatched request.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    public static class LocalResponse {
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final String body;
+
+        LocalResponse(int status, Map<String, String> headers, String body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Parses the raw http/1.0 response.
+         */
+        static LocalResponse parse(byte[] raw) {
+            int split = -1;
+            for (int i = 0; i + 3 < raw.length; i++) {
+                if (raw[i] == '\r' && raw[i + 1] == '\n' && raw[i + 2] == '\r'
+                        && raw[i + 3] == '\n') {
+                    split = i;
+                    break;
+                }
+            }
+
+            if (split < 0)
+                return new LocalResponse(500,
+                        Collections.<String, String> emptyMap(), "");
+
+            final String[] lines = new String(raw, 0, split, ISO_8859_1)
+                    .split("\r\n");
+            int status = 500;
+            final String[] statusLine = lines[0].split(" ");
+            if (statusLine.length > 1) {
+                try {
+                    status = Integer.parseInt(statusLine[1]);
+                } catch (final NumberFormatException ignore) {
+                    // keeps 500.
+                }
+            }
+
+            final Map<String, String> headers = Maps.newHashMap();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0)
+                    headers.put(lines[i].substring(0, colon).trim()
+                            .toLowerCase(), lines[i].substring(colon + 1)
+                            .trim());
+            }
+
+            Charset charset = UTF_8;
+            String contentType = headers.get("content-type");
+            if (null != contentType) {
+                int index = contentType.toLowerCase().indexOf("charset=");
+                if (index >= 0) {
+                    try {
+                        charset = Charset.forName(contentType.substring(
+                                index + 8).trim());
+                    } catch (final IllegalArgumentException ignore) {
+                        // keeps utf-8.
+                    }
+                }
+            }
+
+            final String body = new String(raw, split + 4, raw.length
+                    - split - 4, charset);
+            return new LocalResponse(status, headers, body);
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Retrieves the header value by the specific lower-case name.
+         * 
+         * @param name the header name.
+         * @return the header value, null if absent.
+         */
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public String getContentType() {
+            return headers.get("content-type");
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Handle of a long-running operation executed by the
+ * {@link VimideJobManager}.
+ * <p>
+ * The operation reports its progress and polls the cancellation through the
+ * handle, the clients poll or listen its changes by the job id instead of
+ * holding a connection open till the operation finished.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideJob {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideJob.class);
+
+    /**
+     * States of a job.
+     */
+    public static enum State {
+        WAITING, RUNNING, DONE, FAILED, CANCELLED;
+
+        /**
+         * Tells if the state is final.
+         * 
+         * @return true if finished.
+         */
+        public boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * The operation executed by a job.
+     */
+    public static interface Task {
+
+        /**
+         * Runs the operation.
+         * 
+         * @param job the handle to report the progress to.
+         * @return the result, serialized as json.
+         * @throws Exception
+         */
+        Object run(VimideJob job) throws Exception;
+    }
+
+    /**
+     * Listener notified when the state or the progress of a job changed.
+     */
+    public static interface Listener {
+
+        /**
+         * Notified on the thread changing the job.
+         * 
+         * @param job the changed job.
+         */
+        void jobChanged(VimideJob job);
+    }
+
+    private final long id;
+    private final String name;
+    private final long created = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private volatile State state = State.WAITING;
+    private volatile String taskName;
+    private volatile String subTaskName;
+    private volatile int totalWork = -1;
+    private volatile double worked;
+    private volatile boolean canceled;
+    private volatile Object result;
+    private volatile String error;
+    private volatile long finished;
+    private volatile Future<?> future;
+
+    /**
+     * Creates an new VimideJob instance.
+     * 
+     * @param id the job id.
+     * @param name the name of the job.
+     */
+    VimideJob(long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Retrieves the version increased on every notified change, lets a
+     * polling client wait for the changes it hasn't seen.
+     * 
+     * @return the version.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Tells if the job is finished, whether done, failed or cancelled.
+     * 
+     * @return true if finished.
+     */
+    public boolean isFinished() {
+        return state.isFinished();
+    }
+
+    /**
+     * Retrieves the time the job finished at.
+     * 
+     * @return the millis, 0 if unfinished.
+     */
+    public long getFinishedTime() {
+        return finished;
+    }
+
+    /**
+     * Starts a task of the specific amount of work.
+     * 
+     * @param name the task name.
+     * @param totalWork the total work, negative if unknown.
+     */
+    public void beginTask(String name, int totalWork) {
+        this.taskName = name;
+        this.totalWork = totalWork;
+        this.worked = 0;
+        changed();
+    }
+
+    public void setTaskName(String name) {
+        this.taskName = name;
+        changed();
+    }
+
+    public void subTask(String name) {
+        this.subTaskName = name;
+        changed();
+    }
+
+    /**
+     * Reports the amount of work done, the listeners are notified only when
+     * the percent moves.
+     * 
+     * @param work the work done since the last report.
+     */
+    public void worked(double work) {
+        if (work <= 0)
+            return;
+        final int before = getPercent();
+        worked += work;
+        if (getPercent() != before)
+            changed();
+    }
+
+    /**
+     * Retrieves the percent of the work done.
+     * 
+     * @return the percent, -1 if the total work is unknown.
+     */
+    public int getPercent() {
+        final int total = totalWork;
+        if (total <= 0)
+            return -1;
+        return (int) Math.min(100, worked * 100 / total);
+    }
+
+    /**
+     * Tells if the cancellation is requested, the running task is expected
+     * to poll it and stop as soon as possible.
+     * 
+     * @return true if cancel requested.
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Requests to cancel the job, a waiting job is cancelled immediately.
+     */
+    public void cancel() {
+        canceled = true;
+        final Future<?> f = future;
+        if (state == State.WAITING && null != f && f.cancel(false))
+            finish(State.CANCELLED, null, null);
+        else
+            changed();
+    }
+
+    /**
+     * Waits for the job to finish.
+     * 
+     * @param millis the max millis to wait, 0 to wait forever.
+     * @return true if finished.
+     * @throws InterruptedException
+     */
+    public synchronized boolean await(long millis)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + millis;
+        while (!isFinished()) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (millis > 0 && remaining <= 0)
+                return false;
+            wait(millis > 0 ? remaining : 0);
+        }
+        return true;
+    }
+
+    public void addListener(Listener listener) {
+        if (null != listener)
+            listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        if (null != listener)
+            listeners.remove(listener);
+    }
+
+    /**
+     * Takes a snapshot of the job, serialized as json.
+     * 
+     * @return the snapshot.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = Maps.newLinkedHashMap();
+        map.put("id", id);
+        map.put("name", name);
+        map.put("state", state.name().toLowerCase());
+        map.put("version", version.get());
+        if (null != taskName)
+            map.put("task", taskName);
+        if (null != subTaskName)
+            map.put("subTask", subTaskName);
+        map.put("percent", getPercent());
+        map.put("elapsed", (0 == finished ? System.currentTimeMillis()
+                : finished) - created);
+        if (canceled)
+            map.put("canceled", 1);
+        if (state == State.DONE)
+            map.put("result", result);
+        if (null != error)
+            map.put("error", error);
+        return map;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Executes the task on the current thread.
+     */
+    void run(Task task) {
+        if (isFinished())
+            return;
+        state = State.RUNNING;
+        changed();
+        try {
+            final Object value = task.run(this);
+            finish(canceled ? State.CANCELLED : State.DONE, value, null);
+        } catch (final Throwable e) {
+            // an error must not leave the job running forever either.
+            if (canceled) {
+                finish(State.CANCELLED, null, null);
+            } else {
+                LOGGER.error("Job '{}' failed: {}",
+                        new Object[] { name, e.getMessage(), e });
+                finish(State.FAILED, null, null == e.getMessage() ? e
+                        .getClass().getName() : e.getMessage());
+            }
+            if (e instanceof Error)
+                throw (Error) e;
+        }
+    }
+
+    synchronized void finish(State state, Object result, String error) {
+        if (isFinished())
+            return;
+        this.result = result;
+        this.error = error;
+        this.finished = System.currentTimeMillis();
+        this.state = state;
+        notifyAll();
+        changed();
+    }
+
+    void changed() {
+        version.incrementAndGet();
+        for (Listener listener : listeners) {
+            try {
+                listener.jobChanged(this);
+            } catch (final Exception e) {
+                LOGGER.error("Error caught at notifying job '{}': {}",
+                        new Object[] { name, e.getMessage(), e });
+            }
+        }
+    }
+
+}
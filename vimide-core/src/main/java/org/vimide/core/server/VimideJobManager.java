@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executes the long-running operations off the http threads, keeping their
+ * {@link VimideJob} handles till the clients collected the results.
+ * <p>
+ * The latest finished jobs are retained, the older ones are discarded on
+ * submitting.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideJobManager {
+
+    static final int THREADS = Math.max(1,
+            Integer.getInteger("vimide.jobs.threads", 2));
+    static final int RETAINED = Math.max(1,
+            Integer.getInteger("vimide.jobs.retained", 32));
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideJobManager instance = new VimideJobManager();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideJobManager}.
+     * 
+     * @return singleton
+     */
+    public static VimideJobManager getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, VimideJob> jobs = new ConcurrentSkipListMap<Long, VimideJob>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            THREADS, new ThreadFactoryBuilder()
+                    .setNameFormat("vimide-jobs-%d").setDaemon(true)
+                    .setPriority(Thread.NORM_PRIORITY - 1).build());
+
+    /**
+     * Creates an new VimideJobManager instance.
+     */
+    private VimideJobManager() {
+        super();
+    }
+
+    /**
+     * Submits a task to run in background.
+     * 
+     * @param name the job name.
+     * @param task the task.
+     * @return the job handle.
+     */
+    public VimideJob submit(String name, final VimideJob.Task task) {
+        final VimideJob job = new VimideJob(ids.incrementAndGet(), name);
+        jobs.put(job.getId(), job);
+        purge();
+
+        job.setFuture(executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                job.run(task);
+            }
+        }));
+        return job;
+    }
+
+    /**
+     * Retrieves the job of the specific id.
+     * 
+     * @param id the job id.
+     * @return the job, null if unknown or discarded.
+     */
+    public VimideJob getJob(long id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Retrieves the kept jobs.
+     * 
+     * @return list of jobs, oldest first.
+     */
+    public List<VimideJob> getJobs() {
+        return Lists.newArrayList(jobs.values());
+    }
+
+    /**
+     * Requests to cancel the unfinished jobs, e.g. on shutting down.
+     */
+    public void cancelAll() {
+        for (VimideJob job : jobs.values()) {
+            if (!job.isFinished())
+                job.cancel();
+        }
+    }
+
+    void purge() {
+        int finished = 0;
+        for (VimideJob job : jobs.values()) {
+            if (job.isFinished())
+                finished++;
+        }
+
+        final Iterator<VimideJob> it = jobs.values().iterator();
+        while (finished > RETAINED && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.net.URLEncoder;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.vimide.core.server.VimideHttpServer.LocalResponse;
+import org.vimide.core.util.JsonUtil;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Dispatches the json described requests to the servlets of the
+ * {@link VimideHttpServer} in-process.
+ * <p>
+ * A request is either the request uri, e.g. <code>"/ping"</code>, or an
+ * object of:
+ * <ul>
+ * <li>uri: the request uri, the query string included.</li>
+ * <li>method: the http method, GET by default, POST if a body supplied.</li>
+ * <li>params: object of the parameters appended to the query string.</li>
+ * <li>body: the request body.</li>
+ * <li>raw: 1 to answer the response body as a string.</li>
+ * </ul>
+ * A failed request is answered with
+ * <code>{"_error": status, "message": body}</code>, the key isn't one any
+ * servlet answers, e.g. the completions do carry an "error".
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public final class VimideLocalDispatcher {
+
+    /**
+     * Key of the status of a failed request.
+     */
+    public static final String ERROR_KEY = "_error";
+
+    /**
+     * Executes the request described by the specific payload.
+     * 
+     * @param payload the request.
+     * @return the decoded json response, the response body if it isn't a
+     *         json one, or the error.
+     * @throws Exception
+     */
+    public static Object execute(JsonNode payload) throws Exception {
+        String method = null;
+        String body = null;
+        boolean raw = false;
+        final StringBuilder uri = new StringBuilder();
+
+        if (payload.isTextual()) {
+            uri.append(payload.getTextValue());
+        } else if (payload.isObject()) {
+            uri.append(payload.path("uri").asText());
+            if (payload.has("method"))
+                method = payload.get("method").getTextValue();
+            if (payload.has("body"))
+                body = payload.get("body").asText();
+            raw = payload.path("raw").asBoolean();
+
+            final JsonNode params = payload.get("params");
+            if (null != params && params.isObject()) {
+                char sep = uri.indexOf("?") < 0 ? '?' : '&';
+                for (Iterator<Map.Entry<String, JsonNode>> it = params
+                        .getFields(); it.hasNext();) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    JsonNode value = param.getValue();
+                    if (value.isArray()) {
+                        for (JsonNode v : value) {
+                            uri.append(sep).append(encode(param.getKey()))
+                                    .append('=').append(encode(v.asText()));
+                            sep = '&';
+                        }
+                    } else {
+                        uri.append(sep).append(encode(param.getKey()))
+                                .append('=').append(encode(value.asText()));
+                        sep = '&';
+                    }
+                }
+            }
+        }
+
+        if (uri.length() == 0 || uri.charAt(0) != '/')
+            return error(403, "Illegal request uri: " + uri);
+
+        final LocalResponse response = VimideHttpServer.getInstance()
+                .dispatch(method, uri.toString(), body);
+
+        if (response.getStatus() / 100 != 2)
+            return error(response.getStatus(), response.getBody());
+
+        final String contentType = response.getContentType();
+        if (!raw && null != contentType
+                && contentType.startsWith("application/json")
+                && response.getBody().length() > 0)
+            return JsonUtil.getObjectMapper().readTree(response.getBody());
+
+        return response.getBody();
+    }
+
+    /**
+     * Creates the error answer, keyed by {@link #ERROR_KEY}.
+     * 
+     * @param status the http status.
+     * @param message the message.
+     * @return the error.
+     */
+    public static Map<String, Object> error(int status, String message) {
+        final Map<String, Object> error = Maps.newHashMap();
+        error.put(ERROR_KEY, status);
+        error.put("message", message);
+        return error;
+    }
+
+    static String encode(String value) throws Exception {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    private VimideLocalDispatcher() {
+        super();
+    }
+
+}
@@ -24,7 +24,6 @@ package org.vimide.core.server;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -34,9 +33,11 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.mina.core.filterchain.DefaultIoFilterChainBuilder;
 import org.apache.mina.core.service.IoHandlerAdapter;
 import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoEventType;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFilter;
 import org.apache.mina.filter.executor.ExecutorFilter;
+import org.apache.mina.filter.executor.UnorderedThreadPoolExecutor;
 import org.apache.mina.transport.socket.nio.NioSocketAcceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +45,6 @@ import org.vimide.core.server.codec.VimideProtocolCodecFactory;
 import org.vimide.core.server.filter.VimideLoggingFilter;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Maps;
 
 /**
  * Abstract I/O server for vimide.
@@ -60,7 +60,17 @@ public abstract class VimideServer {
             .getLogger(VimideServer.class);
     private static int INSTANCE_ID = 0;
 
+    /**
+     * Seconds of a session idle for reading before it's closed, 0 to keep
+     * the idle sessions.
+     */
+    static final int IDLE_SECONDS = Integer.getInteger(
+            "vimide.session.idleSeconds", 30 * 60);
+
     private int id;
+    private int idleSeconds = IDLE_SECONDS;
+    private final VimideLoggingFilter loggingFilter = new VimideLoggingFilter(
+            getClass());
     private NioSocketAcceptor socketAcceptor;
     private VimideSessionFactory sessionFactory;
 
@@ -96,11 +106,14 @@ public abstract class VimideServer {
         if (Strings.isNullOrEmpty(host))
             host = "*";
 
-        if (!(port > 0 && port < 65536))
+        if (!(port >= 0 && port < 65536))
             throw new IllegalArgumentException(
-                    "Listening port must be (0 - 65535]");
+                    "Listening port must be [0 - 65535], 0 for an ephemeral port.");
 
-        start(new InetSocketAddress(host, port));
+        if ("*".equals(host.trim()))
+            start(new InetSocketAddress(port));
+        else
+            start(new InetSocketAddress(host, port));
     }
 
     /**
@@ -122,18 +135,84 @@ public abstract class VimideServer {
 
         // filter chain building.
         DefaultIoFilterChainBuilder chain = socketAcceptor.getFilterChain();
-        chain.addFirst("Buffer-Logging", new VimideLoggingFilter());
+        // once, next to the socket, logging and capturing the raw frames.
+        chain.addFirst("Logging", loggingFilter);
         chain.addLast("Protocol-Codec", new ProtocolCodecFilter(
                 new VimideProtocolCodecFactory()));
-        chain.addLast("Message-Logging", new VimideLoggingFilter());
-        chain.addLast("Executions", new ExecutorFilter(Runtime.getRuntime()
-                .availableProcessors(), Runtime.getRuntime()
-                .availableProcessors() * 4, 10, TimeUnit.MINUTES));
+        // unordered, so a slow request doesn't block the later ones of the
+        // same session, the responses are matched by the request ids.
+        chain.addLast("Executions", new ExecutorFilter(
+                new UnorderedThreadPoolExecutor(Runtime.getRuntime()
+                        .availableProcessors(), Runtime.getRuntime()
+                        .availableProcessors() * 4, 10, TimeUnit.MINUTES),
+                IoEventType.MESSAGE_RECEIVED));
 
         // handler building.
         socketAcceptor.setHandler(getSessionFactory());
         socketAcceptor.setReuseAddress(true);
+        if (idleSeconds > 0) {
+            // the idle sessions are reaped by the session factory.
+            socketAcceptor.getSessionConfig().setReaderIdleTime(idleSeconds);
+        }
         socketAcceptor.bind(address);
+        loggingFilter.startRefresh();
+
+        LOGGER.info("Vimide server started at {}.", address);
+    }
+
+    /**
+     * Stops the vimide server, closing all the sessions.
+     */
+    public void stop() {
+        if (null != socketAcceptor) {
+            socketAcceptor.unbind();
+            socketAcceptor.dispose(false);
+            socketAcceptor = null;
+            loggingFilter.stopRefresh();
+
+            LOGGER.info("STOPED the vimide server, ID: {}", id);
+        }
+    }
+
+    /**
+     * Retrieves the bound address, useful when started on the ephemeral port.
+     * 
+     * @return the bound address, null if not running.
+     */
+    public InetSocketAddress getLocalAddress() {
+        if (null != socketAcceptor)
+            return socketAcceptor.getLocalAddress();
+        return null;
+    }
+
+    /**
+     * Tells if the vimide server is bound.
+     * 
+     * @return true if running.
+     */
+    public boolean isRunning() {
+        return null != socketAcceptor && socketAcceptor.isActive();
+    }
+
+    /**
+     * Sets the seconds of a session idle for reading before it's closed,
+     * applied on the next start.
+     * 
+     * @param idleSeconds the seconds, 0 to keep the idle sessions.
+     * @return reference of this.
+     */
+    public VimideServer setIdleSeconds(int idleSeconds) {
+        this.idleSeconds = Math.max(0, idleSeconds);
+        return this;
+    }
+
+    /**
+     * Gets the logging filter, which could be reconfigured at runtime.
+     * 
+     * @return the logging filter.
+     */
+    public VimideLoggingFilter getLoggingFilter() {
+        return loggingFilter;
     }
 
     /**
@@ -222,12 +301,16 @@ public abstract class VimideServer {
         /**
          * Session container.
          */
-        protected final Map<Long, VimideSession> sessionMap = Maps
-                .newIdentityHashMap();
+        protected final VimideSessionRegistry sessionRegistry = new VimideSessionRegistry();
 
         @Override
         public Map<Long, VimideSession> getSessionMap() {
-            return Collections.unmodifiableMap(sessionMap);
+            return sessionRegistry.asMap();
+        }
+
+        @Override
+        public VimideSessionRegistry getSessionRegistry() {
+            return sessionRegistry;
         }
 
         /**
@@ -237,7 +320,8 @@ public abstract class VimideServer {
          * @return true if the session existing, false otherwise.
          */
         public boolean containsSession(VimideSession session) {
-            return sessionMap.containsValue(session);
+            return null != session
+                    && session == sessionRegistry.get(session.getIoSession());
         }
 
         /**
@@ -255,7 +339,7 @@ public abstract class VimideServer {
                 super.sessionCreated(session);
 
                 LOGGER.debug("Connected from: {}", session.getRemoteAddress());
-                sessionMap.put(session.getId(), new VimideSession(session));
+                sessionRegistry.register(session);
             }
 
             /**
@@ -280,7 +364,7 @@ public abstract class VimideServer {
                 LOGGER.debug("Session closed from: {}",
                         session.getRemoteAddress());
 
-                sessionMap.remove(session);
+                sessionRegistry.unregister(session);
             }
 
             /**
@@ -296,6 +380,7 @@ public abstract class VimideServer {
 
                 LOGGER.debug("Session Idle as {} from {}", status,
                         session.getRemoteAddress());
+                sessionRegistry.reap(session, status);
             }
 
             /**
@@ -325,13 +410,12 @@ public abstract class VimideServer {
                     throws Exception {
                 super.messageReceived(session, message);
 
-                if (!sessionMap.containsKey(session.getId())) {
+                final VimideSession vimideSession = sessionRegistry
+                        .get(session);
+                if (null == vimideSession) {
                     throw new IllegalStateException(
                             "Illegal message received in a noop-session.");
                 }
-
-                final VimideSession vimideSession = sessionMap.get(session
-                        .getId());
             }
 
             /**
@@ -344,6 +428,7 @@ public abstract class VimideServer {
             public void messageSent(IoSession session, Object message)
                     throws Exception {
                 super.messageSent(session, message);
+                sessionRegistry.messageSent(session);
             }
 
         };
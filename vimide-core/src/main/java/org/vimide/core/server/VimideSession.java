@@ -22,23 +22,77 @@
  */
 package org.vimide.core.server;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
+import java.util.Map;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.mina.core.session.IoSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.codec.VimideProtocolCodecFactory;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
 
 /**
  * Generic implementation of Vimide's server session.
+ * <p>
+ * The writes are bounded by the bytes queued for the end-point: once they
+ * reach the high watermark the session is suspended, the writers wait until
+ * they are drained to the low watermark, and the session is closed if it
+ * doesn't drain in time. The notifications offered meanwhile are deferred,
+ * a later one of the same key supersedes the deferred one.
+ * </p>
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
 public class VimideSession implements Serializable {
 
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideSession.class);
+
+    static final long HIGH_WATER_BYTES = Long.getLong(
+            "vimide.session.highWaterBytes", 4L * 1024 * 1024);
+    static final long LOW_WATER_BYTES = Math.min(HIGH_WATER_BYTES, Long
+            .getLong("vimide.session.lowWaterBytes", 1024 * 1024));
+    static final long WRITE_TIMEOUT_MILLIS = Long.getLong(
+            "vimide.session.writeTimeoutMillis", 10000);
+
+    /**
+     * Notification could be superseded by a later one of the same key while
+     * the session is suspended.
+     */
+    public static interface Notification {
+
+        /**
+         * Creates the message to write.
+         * 
+         * @param superseded the count of the earlier notifications of the
+         *            same key which were dropped.
+         * @return the message.
+         */
+        Object toMessage(int superseded);
+    }
+
+    /**
+     * The deferred notification.
+     */
+    static class Pending {
+        Notification notification;
+        int superseded;
+    }
+
     private static final long serialVersionUID = -4075775407020227073L;
     private IoSession session;
+    private transient boolean suspended;
+    private transient Map<Object, Pending> pending;
+    private transient long superseded;
 
     /**
      * Creates an new VimideSession instance.
@@ -136,15 +190,150 @@ public class VimideSession implements Serializable {
     }
 
     /**
-     * Writes the data object to the end-point of the session.
+     * Writes the data object to the end-point of the session, waits while
+     * the session is suspended.
      * 
      * @param obj the data object.
-     * @throws Exception
+     * @throws Exception if the session was closed or stalled.
      */
     public void write(Object obj) throws Exception {
+        awaitWritable();
         getIoSession().write(obj);
     }
 
+    /**
+     * Offers the notification to the session, it's written at once unless
+     * the session is suspended, deferred otherwise until the session is
+     * drained, superseding the deferred one of the same key.
+     * 
+     * @param key the key of the notification, e.g. the event type.
+     * @param notification the notification.
+     * @return true if written, false if deferred.
+     */
+    public synchronized boolean offer(Object key, Notification notification) {
+        if (!updateSuspended() && (null == pending || pending.isEmpty())) {
+            getIoSession().write(notification.toMessage(0));
+            return true;
+        }
+
+        if (null == pending)
+            pending = Maps.newLinkedHashMap();
+        Pending deferred = pending.get(key);
+        if (null == deferred) {
+            deferred = new Pending();
+            pending.put(key, deferred);
+        } else {
+            deferred.superseded++;
+            superseded++;
+        }
+        deferred.notification = notification;
+        return false;
+    }
+
+    /**
+     * Tells if the queued bytes are below the watermarks.
+     * 
+     * @return true if writable, false if suspended.
+     */
+    public synchronized boolean isWritable() {
+        return !updateSuspended();
+    }
+
+    /**
+     * Retrieves the count of the notifications superseded.
+     * 
+     * @return the count.
+     */
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+
+    /**
+     * Updates the suspension by the queued bytes, suspended at the high
+     * watermark and resumed at the low one.
+     */
+    private boolean updateSuspended() {
+        final long bytes = getIoSession().getScheduledWriteBytes();
+        if (suspended ? bytes <= LOW_WATER_BYTES : bytes >= HIGH_WATER_BYTES)
+            suspended = !suspended;
+        return suspended;
+    }
+
+    /**
+     * Waits until the session is writable, closes the session if it doesn't
+     * drain in <code>vimide.session.writeTimeoutMillis</code>.
+     */
+    void awaitWritable() throws IOException {
+        synchronized (this) {
+            if (!updateSuspended())
+                return;
+
+            final long deadline = System.currentTimeMillis()
+                    + WRITE_TIMEOUT_MILLIS;
+            long remaining = WRITE_TIMEOUT_MILLIS;
+            while (remaining > 0 && updateSuspended()
+                    && !getIoSession().isClosing()) {
+                try {
+                    wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            if (getIoSession().isClosing())
+                throw new IOException("The session was closed.");
+            if (!suspended)
+                return;
+        }
+
+        LOGGER.warn("Closing the stalled session from {}, {} bytes queued.",
+                getIoSession().getRemoteAddress(), getIoSession()
+                        .getScheduledWriteBytes());
+        getIoSession().close(true);
+        throw new IOException("The session was stalled.");
+    }
+
+    /**
+     * Invoked once a message was sent, resumes the writers and flushes the
+     * deferred notifications if drained.
+     */
+    synchronized void onMessageSent() {
+        final boolean wasSuspended = suspended;
+        if (updateSuspended())
+            return;
+
+        if (wasSuspended)
+            notifyAll();
+        if (null != pending && !pending.isEmpty()) {
+            for (Pending deferred : pending.values()) {
+                getIoSession().write(
+                        deferred.notification.toMessage(deferred.superseded));
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Invoked once the session was closed, releases the waiting writers.
+     */
+    synchronized void onClosed() {
+        pending = null;
+        notifyAll();
+    }
+
+    /**
+     * Retrieves the bytes the session holds in memory, which are the bytes
+     * queued for writing and the partially received message.
+     * 
+     * @return the bytes.
+     */
+    public long getRetainedBytes() {
+        return getIoSession().getScheduledWriteBytes()
+                + VimideProtocolCodecFactory.getBufferedBytes(getIoSession());
+    }
+
     /**
      * Gets the I/O session instance.
      * 
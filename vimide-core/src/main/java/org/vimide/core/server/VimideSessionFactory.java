@@ -40,4 +40,11 @@ public interface VimideSessionFactory extends IoHandler {
      */
     public Map<Long, VimideSession> getSessionMap();
 
+    /**
+     * Gets the registry of vimide's server sessions.
+     * 
+     * @return the session registry.
+     */
+    public VimideSessionRegistry getSessionRegistry();
+
 }
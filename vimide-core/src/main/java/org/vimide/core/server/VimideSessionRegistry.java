@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the sessions of a session factory, keyed by the ids of their
+ * I/O sessions.
+ * <p>
+ * The session is attached to its I/O session as well, so the lookups of the
+ * received messages don't touch the map, which is only used to enumerate the
+ * sessions. The sessions idle for reading are closed by {@link #reap}, see
+ * {@link VimideServer#IDLE_SECONDS}.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideSessionRegistry {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideSessionRegistry.class);
+
+    static final String SESSION = VimideSessionRegistry.class.getName()
+            + ".session";
+
+    private final ConcurrentMap<Long, VimideSession> sessions = Maps
+            .newConcurrentMap();
+    private final AtomicLong reaped = new AtomicLong();
+
+    /**
+     * Creates an new VimideSessionRegistry instance.
+     */
+    public VimideSessionRegistry() {
+        super();
+    }
+
+    /**
+     * Registers the session of the created I/O session.
+     * 
+     * @param ioSession the I/O session.
+     * @return the session.
+     */
+    public VimideSession register(IoSession ioSession) {
+        final VimideSession session = new VimideSession(ioSession);
+        ioSession.setAttribute(SESSION, session);
+        sessions.put(ioSession.getId(), session);
+        return session;
+    }
+
+    /**
+     * Unregisters the session of the closed I/O session.
+     * 
+     * @param ioSession the I/O session.
+     * @return the session, null if not registered.
+     */
+    public VimideSession unregister(IoSession ioSession) {
+        ioSession.removeAttribute(SESSION);
+        final VimideSession session = sessions.remove(ioSession.getId());
+        if (null != session)
+            session.onClosed();
+        return session;
+    }
+
+    /**
+     * Notifies the session of the I/O session that a message was sent.
+     * 
+     * @param ioSession the I/O session.
+     */
+    public void messageSent(IoSession ioSession) {
+        final VimideSession session = get(ioSession);
+        if (null != session)
+            session.onMessageSent();
+    }
+
+    /**
+     * Retrieves the session of the I/O session.
+     * 
+     * @param ioSession the I/O session.
+     * @return the session, null if not registered.
+     */
+    public VimideSession get(IoSession ioSession) {
+        return (VimideSession) ioSession.getAttribute(SESSION);
+    }
+
+    /**
+     * Retrieves the session of the specific id.
+     * 
+     * @param id the id of the I/O session.
+     * @return the session, null if not registered.
+     */
+    public VimideSession get(long id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Closes the I/O session if it's idle for reading, the writes alone don't
+     * keep the session alive.
+     * 
+     * @param ioSession the I/O session.
+     * @param status the idle status.
+     * @return true if closed.
+     */
+    public boolean reap(IoSession ioSession, IdleStatus status) {
+        if (status != IdleStatus.READER_IDLE || ioSession.isClosing())
+            return false;
+
+        final VimideSession session = get(ioSession);
+        LOGGER.debug("Reaping the idle session from {}, {} bytes retained.",
+                ioSession.getRemoteAddress(), null == session ? 0 : session
+                        .getRetainedBytes());
+        reaped.incrementAndGet();
+        ioSession.close(true);
+        return true;
+    }
+
+    /**
+     * Retrieves the registered sessions.
+     * 
+     * @return unmodifiable map of the sessions.
+     */
+    public Map<Long, VimideSession> asMap() {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    /**
+     * Retrieves the count of the registered sessions.
+     * 
+     * @return the count.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Retrieves the count of the sessions closed for idle.
+     * 
+     * @return the count.
+     */
+    public long getReaped() {
+        return reaped.get();
+    }
+
+    /**
+     * Retrieves the count of the notifications superseded by the registered
+     * sessions.
+     * 
+     * @return the count.
+     */
+    public long getSuperseded() {
+        long count = 0;
+        for (VimideSession session : sessions.values()) {
+            count += session.getSuperseded();
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the bytes retained by the registered sessions, see
+     * {@link VimideSession#getRetainedBytes()}.
+     * 
+     * @return the bytes.
+     */
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (VimideSession session : sessions.values()) {
+            bytes += session.getRetainedBytes();
+        }
+        return bytes;
+    }
+
+}
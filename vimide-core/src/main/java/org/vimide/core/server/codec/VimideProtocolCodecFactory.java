@@ -22,20 +22,30 @@
  */
 package org.vimide.core.server.codec;
 
+import java.nio.charset.Charset;
+
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
 import org.apache.mina.filter.codec.ProtocolCodecFactory;
 import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
 import org.apache.mina.filter.codec.ProtocolDecoderOutput;
 import org.apache.mina.filter.codec.ProtocolEncoder;
 import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
 import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.util.JsonUtil;
 
 /**
  * Protocol codec implementation of Vimide's server.
+ * <p>
+ * Speaks the json mode of the Vim channel: every message is a complete json
+ * array or object, e.g. <code>[id, payload]</code>. The decoder emits each
+ * message as a String, the encoder writes a String as is or serializes any
+ * other object as json, followed by a newline.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
@@ -47,6 +57,34 @@ public class VimideProtocolCodecFactory implements ProtocolCodecFactory {
     static final Logger LOGGER = LoggerFactory
             .getLogger(VimideProtocolCodecFactory.class);
 
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int MAX_MESSAGE_BYTES = Integer.getInteger(
+            "vimide.channel.maxMessageBytes", 16 * 1024 * 1024);
+
+    static final String DECODER_STATE = VimideProtocolCodecFactory.class
+            .getName() + ".decoderState";
+
+    static final ObjectMapper OBJECT_MAPPER = JsonUtil.getObjectMapper();
+
+    /**
+     * Scanning state of the partially received message, so the cumulated
+     * bytes are scanned only once.
+     */
+    static class DecoderState {
+        int scanned;
+        int depth;
+        boolean inString;
+        boolean escape;
+
+        void reset() {
+            scanned = 0;
+            depth = 0;
+            inString = false;
+            escape = false;
+        }
+    }
+
     /**
      * Encoder
      */
@@ -55,10 +93,18 @@ public class VimideProtocolCodecFactory implements ProtocolCodecFactory {
         @Override
         public void encode(IoSession session, Object message,
                 ProtocolEncoderOutput out) throws Exception {
-            // if the message wasn't the illegal writing data, ignore it.
-            if (message instanceof Object) {
+            if (null == message)
+                return;
 
-            }
+            final byte[] bytes;
+            if (message instanceof String)
+                bytes = ((String) message).getBytes(UTF_8);
+            else
+                bytes = OBJECT_MAPPER.writeValueAsBytes(message);
+
+            final IoBuffer buf = IoBuffer.allocate(bytes.length + 1);
+            buf.put(bytes).put((byte) '\n').flip();
+            out.write(buf);
         }
     };
 
@@ -67,24 +113,77 @@ public class VimideProtocolCodecFactory implements ProtocolCodecFactory {
      */
     private ProtocolDecoder decoder = new CumulativeProtocolDecoder() {
 
-        @SuppressWarnings("unused")
         @Override
         protected boolean doDecode(IoSession session, IoBuffer in,
                 ProtocolDecoderOutput out) throws Exception {
-            while (in.hasRemaining()
-                    && in.remaining() >= in.getInt(in.position())) {
-                // remaining data to decoder.
-                int packetLength = in.getInt();
-                final IoBuffer buf = in.slice().limit(packetLength)
-                        .order(in.order());
-                in.position(packetLength + 4);
-
-                // process the buffer with the sliced buf.
+            DecoderState state = (DecoderState) session
+                    .getAttribute(DECODER_STATE);
+            if (null == state) {
+                state = new DecoderState();
+                session.setAttribute(DECODER_STATE, state);
+            }
+
+            // skips the separators between the messages.
+            if (state.scanned == 0) {
+                while (in.hasRemaining()
+                        && Character.isWhitespace(in.get(in.position())))
+                    in.position(in.position() + 1);
+            }
+
+            final int start = in.position();
+            final int limit = in.limit();
+            for (int i = start + state.scanned; i < limit; i++) {
+                final byte b = in.get(i);
+                if (state.inString) {
+                    if (state.escape)
+                        state.escape = false;
+                    else if (b == '\\')
+                        state.escape = true;
+                    else if (b == '"')
+                        state.inString = false;
+                } else if (b == '"') {
+                    state.inString = true;
+                } else if (b == '[' || b == '{') {
+                    state.depth++;
+                } else if (b == ']' || b == '}') {
+                    if (--state.depth == 0) {
+                        final byte[] bytes = new byte[i + 1 - start];
+                        in.get(bytes);
+                        state.reset();
+                        out.write(new String(bytes, UTF_8));
+                        return true;
+                    }
+                } else if (state.depth == 0) {
+                    state.reset();
+                    throw new ProtocolDecoderException(
+                            "Illegal channel message, expecting json array or object.");
+                }
+            }
+
+            state.scanned = limit - start;
+            if (state.scanned > MAX_MESSAGE_BYTES) {
+                state.reset();
+                throw new ProtocolDecoderException(
+                        "Channel message exceeds the limit: "
+                                + MAX_MESSAGE_BYTES);
             }
             return false;
         }
     };
 
+    /**
+     * Retrieves the bytes of the partially received message of the session,
+     * which are cumulated by the decoder.
+     * 
+     * @param session the I/O session.
+     * @return the bytes.
+     */
+    public static int getBufferedBytes(IoSession session) {
+        final DecoderState state = (DecoderState) session
+                .getAttribute(DECODER_STATE);
+        return null == state ? 0 : state.scanned;
+    }
+
     /**
      * Creates an new VimideProtocolCodecFactory instance.
      */
@@ -22,21 +22,98 @@
  */
 package org.vimide.core.server.filter;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoEventType;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
 import org.apache.mina.filter.logging.LogLevel;
-import org.apache.mina.filter.logging.LoggingFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Logging filter implemetation of Vimide server.
+ * <p>
+ * The enabled events are cached as a bit mask, so a disabled event costs a
+ * volatile read only, the mask is updated on the configuration changes, by
+ * {@link #refresh()} once the level of the logger was changed, and
+ * periodically once {@link #startRefresh()} was called, as the logging
+ * backend notifies nothing of its reconfiguration through slf4j. The
+ * messages could be sampled 1 in N, and the last frames could be captured
+ * in a lock-free ring to be dumped on demand, see {@link #dump()}.
+ * </p>
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
-public class VimideLoggingFilter extends LoggingFilter {
+public class VimideLoggingFilter extends IoFilterAdapter {
+
+    static final int SAMPLING = Integer.getInteger(
+            "vimide.channel.logSampling", 1);
+    static final int CAPTURE_FRAMES = Integer.getInteger(
+            "vimide.channel.captureFrames", 0);
+    static final int CAPTURE_BYTES = Integer.getInteger(
+            "vimide.channel.captureBytes", 256);
+    static final int LOG_BYTES = 64;
+    static final long REFRESH_MILLIS = Long.getLong(
+            "vimide.channel.logRefreshMillis", 10000L);
+
+    /**
+     * The logged events, in the order of the log level identity array.
+     */
+    public static final IoEventType[] EVENTS = { IoEventType.SESSION_CREATED,
+            IoEventType.SESSION_OPENED, IoEventType.SESSION_IDLE,
+            IoEventType.SESSION_CLOSED, IoEventType.EXCEPTION_CAUGHT,
+            IoEventType.MESSAGE_RECEIVED, IoEventType.MESSAGE_SENT };
+
+    /**
+     * The captured frame.
+     */
+    static class Frame {
+        final long seq;
+        final long time;
+        final long sessionId;
+        final String direction;
+        final int length;
+        final byte[] bytes;
+
+        Frame(long seq, long sessionId, String direction, int length,
+                byte[] bytes) {
+            this.seq = seq;
+            this.time = System.currentTimeMillis();
+            this.sessionId = sessionId;
+            this.direction = direction;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Logger logger;
+    private volatile LogLevel[] levels;
+    private volatile int enabled;
+    private volatile int sampling = Math.max(1, SAMPLING);
+    private final AtomicLong sampled = new AtomicLong();
+    private volatile AtomicReferenceArray<Frame> frames;
+    private final AtomicLong cursor = new AtomicLong();
+    private ScheduledExecutorService refresher;
 
     /**
      * Creates an new VimideLoggingFilter instance.
      */
     public VimideLoggingFilter() {
-        super();
+        this(VimideLoggingFilter.class);
     }
 
     /**
@@ -45,7 +122,8 @@ public class VimideLoggingFilter extends LoggingFilter {
      * @param name the name of filter.
      */
     public VimideLoggingFilter(String name) {
-        super(name);
+        this(LoggerFactory.getLogger(null == name ? VimideLoggingFilter.class
+                .getName() : name));
     }
 
     /**
@@ -54,7 +132,7 @@ public class VimideLoggingFilter extends LoggingFilter {
      * @param clazz
      */
     public VimideLoggingFilter(Class<?> clazz) {
-        super(clazz);
+        this(LoggerFactory.getLogger(clazz));
     }
 
     /**
@@ -63,7 +141,7 @@ public class VimideLoggingFilter extends LoggingFilter {
      * @param levels the log level identity array.
      */
     public VimideLoggingFilter(String[] levels) {
-        super();
+        this();
         resolveLevelIdentify(levels);
     }
 
@@ -74,7 +152,7 @@ public class VimideLoggingFilter extends LoggingFilter {
      * @param levels the log level identity array.
      */
     public VimideLoggingFilter(String name, String[] levels) {
-        super(name);
+        this(name);
         resolveLevelIdentify(levels);
     }
 
@@ -85,30 +163,381 @@ public class VimideLoggingFilter extends LoggingFilter {
      * @param levels the log level identity array.
      */
     public VimideLoggingFilter(Class<?> clazz, String[] levels) {
-        super(clazz);
+        this(clazz);
         resolveLevelIdentify(levels);
     }
 
+    private VimideLoggingFilter(Logger logger) {
+        super();
+        this.logger = logger;
+
+        final LogLevel[] defaults = new LogLevel[IoEventType.values().length];
+        for (IoEventType type : EVENTS) {
+            defaults[type.ordinal()] = LogLevel.INFO;
+        }
+        defaults[IoEventType.EXCEPTION_CAUGHT.ordinal()] = LogLevel.WARN;
+        // the messages are chatty, logged only when debugging.
+        defaults[IoEventType.MESSAGE_RECEIVED.ordinal()] = LogLevel.DEBUG;
+        defaults[IoEventType.MESSAGE_SENT.ordinal()] = LogLevel.DEBUG;
+        this.levels = defaults;
+        refresh();
+        setCapture(CAPTURE_FRAMES);
+    }
+
     /**
      * Resolves the identity of the log levels.
      * 
-     * @param levels the log levels.
+     * @param levels the log levels, in the order of {@link #EVENTS}.
      */
     private void resolveLevelIdentify(String[] levels) {
-        if (null != levels && levels.length > 0) {
-            setSessionCreatedLogLevel(LogLevel.valueOf(levels[0]));
-            if (levels.length > 1)
-                setSessionOpenedLogLevel(LogLevel.valueOf(levels[1]));
-            if (levels.length > 2)
-                setSessionIdleLogLevel(LogLevel.valueOf(levels[2]));
-            if (levels.length > 3)
-                setSessionClosedLogLevel(LogLevel.valueOf(levels[3]));
-            if (levels.length > 4)
-                setExceptionCaughtLogLevel(LogLevel.valueOf(levels[4]));
-            if (levels.length > 5)
-                setMessageReceivedLogLevel(LogLevel.valueOf(levels[5]));
-            if (levels.length >= 6)
-                setMessageSentLogLevel(LogLevel.valueOf(levels[6]));
+        if (null != levels) {
+            for (int i = 0; i < levels.length && i < EVENTS.length; i++) {
+                setLogLevel(EVENTS[i], LogLevel.valueOf(levels[i]));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the log level of the event.
+     * 
+     * @param type the event type.
+     * @return the log level, null if the event isn't logged.
+     */
+    public LogLevel getLogLevel(IoEventType type) {
+        return levels[type.ordinal()];
+    }
+
+    /**
+     * Sets the log level of the event.
+     * 
+     * @param type the event type.
+     * @param level the log level.
+     */
+    public synchronized void setLogLevel(IoEventType type, LogLevel level) {
+        final LogLevel[] copy = levels.clone();
+        copy[type.ordinal()] = null == level ? LogLevel.NONE : level;
+        levels = copy;
+        refresh();
+    }
+
+    /**
+     * Updates the cached mask of the enabled events, should be called once
+     * the level of the logger was changed.
+     */
+    public synchronized void refresh() {
+        int mask = 0;
+        for (IoEventType type : EVENTS) {
+            if (isEnabled(levels[type.ordinal()]))
+                mask |= 1 << type.ordinal();
+        }
+        enabled = mask;
+    }
+
+    /**
+     * Starts refreshing the mask every
+     * <code>vimide.channel.logRefreshMillis</code>, so the levels changed by
+     * reconfiguring the logging backend are picked up.
+     */
+    public synchronized void startRefresh() {
+        if (null != refresher || REFRESH_MILLIS <= 0)
+            return;
+
+        refresher = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("vimide-logging-refresh-%d")
+                        .setDaemon(true).build());
+        refresher.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops refreshing the mask periodically.
+     */
+    public synchronized void stopRefresh() {
+        if (null != refresher) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /**
+     * Retrieves the N of the 1 in N messages logged.
+     * 
+     * @return the sampling.
+     */
+    public int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Sets the N of the 1 in N messages logged.
+     * 
+     * @param sampling the sampling, 1 to log all.
+     */
+    public void setSampling(int sampling) {
+        this.sampling = Math.max(1, sampling);
+    }
+
+    /**
+     * Retrieves the count of the frames captured in the ring.
+     * 
+     * @return the count, 0 if not capturing.
+     */
+    public int getCapture() {
+        final AtomicReferenceArray<Frame> ring = frames;
+        return null == ring ? 0 : ring.length();
+    }
+
+    /**
+     * Sets the count of the last frames captured in the ring, the captured
+     * frames are discarded.
+     * 
+     * @param count the count, 0 to stop capturing.
+     */
+    public synchronized void setCapture(int count) {
+        frames = count > 0 ? new AtomicReferenceArray<Frame>(count) : null;
+    }
+
+    /**
+     * Dumps the captured frames, oldest first.
+     * 
+     * @return list of the frames.
+     */
+    public List<Map<String, Object>> dump() {
+        final List<Map<String, Object>> results = Lists.newArrayList();
+        final AtomicReferenceArray<Frame> ring = frames;
+        if (null == ring)
+            return results;
+
+        final long end = cursor.get();
+        for (long seq = Math.max(0, end - ring.length()); seq < end; seq++) {
+            final Frame frame = ring.get((int) (seq % ring.length()));
+            // skips the slots overwritten or not written yet.
+            if (null == frame || frame.seq != seq)
+                continue;
+            final Map<String, Object> map = Maps.newLinkedHashMap();
+            map.put("time", frame.time);
+            map.put("session", frame.sessionId);
+            map.put("direction", frame.direction);
+            map.put("length", frame.length);
+            map.put("hex", hexDump(frame.bytes, frame.bytes.length));
+            results.add(map);
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the configuration of the filter.
+     * 
+     * @return the configuration.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = Maps.newLinkedHashMap();
+        final Map<String, Object> levelMap = Maps.newLinkedHashMap();
+        for (IoEventType type : EVENTS) {
+            levelMap.put(type.name(), String.valueOf(getLogLevel(type)));
+        }
+        map.put("logger", logger.getName());
+        map.put("levels", levelMap);
+        map.put("enabled", Integer.toBinaryString(enabled));
+        map.put("sample", sampling);
+        map.put("capture", getCapture());
+        return map;
+    }
+
+    @Override
+    public void sessionCreated(NextFilter nextFilter, IoSession session)
+            throws Exception {
+        if (isLogged(IoEventType.SESSION_CREATED))
+            log(IoEventType.SESSION_CREATED, "CREATED {}",
+                    session.getRemoteAddress(), null);
+        nextFilter.sessionCreated(session);
+    }
+
+    @Override
+    public void sessionOpened(NextFilter nextFilter, IoSession session)
+            throws Exception {
+        if (isLogged(IoEventType.SESSION_OPENED))
+            log(IoEventType.SESSION_OPENED, "OPENED {}",
+                    session.getRemoteAddress(), null);
+        nextFilter.sessionOpened(session);
+    }
+
+    @Override
+    public void sessionIdle(NextFilter nextFilter, IoSession session,
+            IdleStatus status) throws Exception {
+        if (isLogged(IoEventType.SESSION_IDLE))
+            log(IoEventType.SESSION_IDLE, "IDLE {}", status, null);
+        nextFilter.sessionIdle(session, status);
+    }
+
+    @Override
+    public void sessionClosed(NextFilter nextFilter, IoSession session)
+            throws Exception {
+        if (isLogged(IoEventType.SESSION_CLOSED))
+            log(IoEventType.SESSION_CLOSED, "CLOSED {}",
+                    session.getRemoteAddress(), null);
+        nextFilter.sessionClosed(session);
+    }
+
+    @Override
+    public void exceptionCaught(NextFilter nextFilter, IoSession session,
+            Throwable cause) throws Exception {
+        if (isLogged(IoEventType.EXCEPTION_CAUGHT))
+            log(IoEventType.EXCEPTION_CAUGHT, "EXCEPTION: {}",
+                    cause.getMessage(), cause);
+        nextFilter.exceptionCaught(session, cause);
+    }
+
+    @Override
+    public void messageReceived(NextFilter nextFilter, IoSession session,
+            Object message) throws Exception {
+        if (null != frames)
+            capture(session, "received", message);
+        if (isLogged(IoEventType.MESSAGE_RECEIVED) && isSampled())
+            log(IoEventType.MESSAGE_RECEIVED, "RECEIVED: {}",
+                    describe(message), null);
+        nextFilter.messageReceived(session, message);
+    }
+
+    @Override
+    public void filterWrite(NextFilter nextFilter, IoSession session,
+            WriteRequest writeRequest) throws Exception {
+        // the buffers are intact before flushed, unlike at messageSent.
+        if (null != frames)
+            capture(session, "sent", writeRequest.getMessage());
+        if (isLogged(IoEventType.MESSAGE_SENT) && isSampled())
+            log(IoEventType.MESSAGE_SENT, "SENT: {}",
+                    describe(writeRequest.getMessage()), null);
+        nextFilter.filterWrite(session, writeRequest);
+    }
+
+    private boolean isLogged(IoEventType type) {
+        return 0 != (enabled & (1 << type.ordinal()));
+    }
+
+    private boolean isSampled() {
+        final int n = sampling;
+        return n == 1 || sampled.getAndIncrement() % n == 0;
+    }
+
+    private boolean isEnabled(LogLevel level) {
+        if (null == level)
+            return false;
+        switch (level) {
+            case TRACE:
+                return logger.isTraceEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case ERROR:
+                return logger.isErrorEnabled();
+            default:
+                return false;
+        }
+    }
+
+    private void log(IoEventType type, String format, Object arg,
+            Throwable cause) {
+        final String message = null == cause ? format : format.replace("{}",
+                String.valueOf(arg));
+        switch (getLogLevel(type)) {
+            case TRACE:
+                if (null == cause)
+                    logger.trace(format, arg);
+                else
+                    logger.trace(message, cause);
+                break;
+            case DEBUG:
+                if (null == cause)
+                    logger.debug(format, arg);
+                else
+                    logger.debug(message, cause);
+                break;
+            case INFO:
+                if (null == cause)
+                    logger.info(format, arg);
+                else
+                    logger.info(message, cause);
+                break;
+            case WARN:
+                if (null == cause)
+                    logger.warn(format, arg);
+                else
+                    logger.warn(message, cause);
+                break;
+            case ERROR:
+                if (null == cause)
+                    logger.error(format, arg);
+                else
+                    logger.error(message, cause);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void capture(IoSession session, String direction, Object message) {
+        final AtomicReferenceArray<Frame> ring = frames;
+        if (null == ring || !(message instanceof IoBuffer))
+            return;
+
+        final IoBuffer buf = (IoBuffer) message;
+        final int length = buf.remaining();
+        final byte[] bytes = new byte[Math.min(length, CAPTURE_BYTES)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(buf.position() + i);
+        }
+        final long seq = cursor.getAndIncrement();
+        ring.set((int) (seq % ring.length()), new Frame(seq, session.getId(),
+                direction, length, bytes));
+    }
+
+    private static Object describe(Object message) {
+        if (message instanceof IoBuffer) {
+            final IoBuffer buf = (IoBuffer) message;
+            final byte[] bytes = new byte[Math.min(buf.remaining(), LOG_BYTES)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buf.get(buf.position() + i);
+            }
+            return buf.remaining() + " bytes\n"
+                    + hexDump(bytes, bytes.length);
+        }
+        return message;
+    }
+
+    /**
+     * Formats the bytes as the hexdump of 16 bytes a line.
+     * 
+     * @param bytes the bytes.
+     * @param length the count of bytes to format.
+     * @return the hexdump.
+     */
+    static String hexDump(byte[] bytes, int length) {
+        final StringBuilder sb = new StringBuilder(length * 4 + 16);
+        for (int line = 0; line < length; line += 16) {
+            sb.append(String.format("%04x ", line));
+            for (int i = line; i < line + 16; i++) {
+                if (i < length)
+                    sb.append(String.format(" %02x", bytes[i] & 0xff));
+                else
+                    sb.append("   ");
+            }
+            sb.append("  |");
+            for (int i = line; i < line + 16 && i < length; i++) {
+                final int b = bytes[i] & 0xff;
+                sb.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+            }
+            sb.append("|\n");
         }
+        return sb.toString();
     }
 }
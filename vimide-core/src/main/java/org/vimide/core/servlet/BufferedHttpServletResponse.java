@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.eclipse.jetty.http.HttpFields;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Response keeping the status, the headers and the body in memory, so it
+ * could be replayed to several responses.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class BufferedHttpServletResponse extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final List<String[]> headers = Lists.newArrayList();
+    private int status = SC_OK;
+    private String message;
+    private String contentType;
+    private String characterEncoding;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * Creates an new BufferedHttpServletResponse instance.
+     * 
+     * @param response the response, it's never written.
+     */
+    public BufferedHttpServletResponse(HttpServletResponse response) {
+        super(response);
+        this.characterEncoding = response.getCharacterEncoding();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (null != writer)
+            throw new IllegalStateException("The writer was used.");
+        if (null == outputStream) {
+            outputStream = new ServletOutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    buffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len)
+                        throws IOException {
+                    buffer.write(b, off, len);
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (null != outputStream)
+            throw new IllegalStateException("The output stream was used.");
+        if (null == writer) {
+            writer = new PrintWriter(new OutputStreamWriter(buffer,
+                    getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        this.status = sc;
+        this.message = sm;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Retrieves the status message, null if none.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        this.status = sc;
+        this.message = msg;
+        buffer.reset();
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        setStatus(SC_MOVED_TEMPORARILY);
+        setHeader("Location", location);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        this.characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return null == characterEncoding ? "ISO-8859-1" : characterEncoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // the length is computed by the replay.
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        for (int i = headers.size() - 1; i >= 0; i--) {
+            if (headers.get(i)[0].equalsIgnoreCase(name))
+                headers.remove(i);
+        }
+        addHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.add(new String[] { name, value });
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, HttpFields.formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, HttpFields.formatDate(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        for (String[] header : headers) {
+            if (header[0].equalsIgnoreCase(name))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (null != writer)
+            writer.flush();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        headers.clear();
+        status = SC_OK;
+        message = null;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (null != writer)
+            writer.flush();
+        buffer.reset();
+    }
+
+    /**
+     * Completes the buffering, the response is read-only after.
+     */
+    public void close() {
+        if (null != writer)
+            writer.flush();
+    }
+
+    /**
+     * Retrieves the buffered body.
+     * 
+     * @return the body bytes.
+     */
+    public byte[] getBody() {
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes the buffered response to the specific response.
+     * 
+     * @param response the target response.
+     * @throws IOException
+     */
+    public void replay(HttpServletResponse response) throws IOException {
+        replay(response, status, message, contentType, characterEncoding,
+                headers, getBody());
+    }
+
+    /**
+     * Writes the specific parts of a response to the specific response.
+     */
+    static void replay(HttpServletResponse response, int status,
+            String message, String contentType, String characterEncoding,
+            Iterable<String[]> headers, byte[] body) throws IOException {
+        for (String[] header : headers) {
+            response.addHeader(header[0], header[1]);
+        }
+
+        if (status >= 400) {
+            if (null == message)
+                response.sendError(status);
+            else
+                response.sendError(status, message);
+            return;
+        }
+
+        response.setStatus(status);
+        if (null != contentType)
+            response.setContentType(contentType);
+        if (null != characterEncoding)
+            response.setCharacterEncoding(characterEncoding);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Retrieves the headers, as the pairs of the name and the value.
+     * 
+     * @return the headers.
+     */
+    public List<String[]> getHeaders() {
+        return headers;
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link VimideHttpServlet} whose responses are safe to share: the
+ * concurrent GET requests with the same path, parameters and file stamps
+ * are served by one computation, the others wait and receive its response.
+ * <p>
+ * Only the servlets answering the same for the same request while it's
+ * computed could be marked, the ones with side effects couldn't.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Coalesce {
+
+    /**
+     * The parameters naming the files the response depends on, their
+     * modification stamps and the ones of the
+     * {@link RequestCoalescer.Stamper stampers}, e.g. the versions of the
+     * opened buffers, are part of the request identity.
+     */
+    String[] files() default { "file" };
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the concurrent requests served by a {@link VimideHttpServlet}. The
+ * requests exceeding the limit are rejected with 503 immediately instead of
+ * holding a server thread, unless {@link #waitMillis()} lets them wait. The
+ * waiting is also bounded by {@link #maxQueue()} and the {@link Deadline} of
+ * the request.
+ * <p>
+ * The limit could be overridden by the system property
+ * <code>vimide.concurrency.&lt;SimpleClassName&gt;</code>, 0 for unlimited.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConcurrencyLimit {
+
+    /**
+     * The max concurrent requests.
+     */
+    int value();
+
+    /**
+     * The max milliseconds to wait for a permit before rejecting.
+     */
+    long waitMillis() default 0;
+
+    /**
+     * The max requests waiting for a permit, the ones beyond are rejected
+     * without waiting. Negative for unbounded.
+     */
+    int maxQueue() default -1;
+
+}
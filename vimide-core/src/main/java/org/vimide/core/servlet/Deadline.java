@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.server.Request;
+
+/**
+ * The time a client stops waiting for the request it sent.
+ * <p>
+ * The client sends the millis it would wait by the
+ * <code>X-Vimide-Deadline</code> header or the <code>deadline</code>
+ * parameter, counted from the request arrived at the server. The deadline of
+ * the request being served is bound to the thread, the expensive phases
+ * check it before they start and the eclipse operations are cancelled by it
+ * through their progress monitors.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public final class Deadline {
+
+    public static final String HEADER = "X-Vimide-Deadline";
+    public static final String PARAMETER = "deadline";
+
+    /**
+     * The status answering the requests whose deadline passed, distinct from
+     * the 503 of the exceeded concurrency.
+     */
+    public static final int SC_DEADLINE_EXCEEDED = 504;
+
+    static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    private final long expiresAt;
+
+    /**
+     * Creates an new Deadline instance.
+     * 
+     * @param expiresAt the millis the deadline passes at.
+     */
+    public Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Parses the deadline of the request.
+     * 
+     * @param req the request.
+     * @return the deadline, null if not specified or illegal.
+     */
+    public static Deadline of(HttpServletRequest req) {
+        String value = req.getHeader(HEADER);
+        if (null == value)
+            value = req.getParameter(PARAMETER);
+        if (null == value)
+            return null;
+
+        final long millis;
+        try {
+            millis = Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        if (millis <= 0)
+            return null;
+
+        // counted from the arrival, the time queued is spent already.
+        long arrived = req instanceof Request ? ((Request) req)
+                .getTimeStamp() : 0;
+        if (arrived <= 0)
+            arrived = System.currentTimeMillis();
+        return new Deadline(arrived + millis);
+    }
+
+    /**
+     * Binds the deadline to the current thread.
+     * 
+     * @param deadline the deadline, null to unbind.
+     * @return the deadline bound previously.
+     */
+    public static Deadline bind(Deadline deadline) {
+        final Deadline previous = CURRENT.get();
+        if (null == deadline)
+            CURRENT.remove();
+        else
+            CURRENT.set(deadline);
+        return previous;
+    }
+
+    /**
+     * Retrieves the deadline of the request served by the current thread.
+     * 
+     * @return the deadline, null if none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks the deadline of the current thread, called before starting an
+     * expensive phase.
+     * 
+     * @throws DeadlineExceededException if the deadline passed.
+     */
+    public static void check() throws DeadlineExceededException {
+        final Deadline deadline = CURRENT.get();
+        if (null != deadline && deadline.isExpired())
+            throw new DeadlineExceededException("Deadline exceeded by "
+                    + -deadline.getRemainingMillis() + "ms");
+    }
+
+    /**
+     * Limits the millis to wait by the deadline of the current thread.
+     * 
+     * @param millis the millis to wait.
+     * @return the millis to wait before the deadline passes.
+     */
+    public static long limit(long millis) {
+        final Deadline deadline = CURRENT.get();
+        if (null == deadline)
+            return millis;
+        return Math.max(0L, Math.min(millis, deadline.getRemainingMillis()));
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getRemainingMillis() {
+        return expiresAt - System.currentTimeMillis();
+    }
+
+    public boolean isExpired() {
+        return getRemainingMillis() <= 0;
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.vimide.core.util.JsonUtil;
+
+/**
+ * Json codec, streams the object through the shared mapper.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class JsonResponseCodec implements VimideResponseCodec {
+
+    @Override
+    public String getName() {
+        return VimideResponseCodecs.JSON;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    @Override
+    public void encode(Object object, VimideHttpServletResponse resp)
+            throws IOException {
+        resp.setContentType(getContentType());
+
+        // streams the result, without building the whole text in memory.
+        final ObjectMapper mapper = JsonUtil.getObjectMapper();
+        if (resp.isWriterUsed()) {
+            mapper.writeValue(resp.getWriter(), object);
+        } else {
+            final JsonGenerator generator = mapper.getJsonFactory()
+                    .createJsonGenerator(resp.getOutputStream(),
+                            JsonEncoding.UTF8);
+            try {
+                mapper.writeValue(generator, object);
+            } finally {
+                generator.close();
+            }
+        }
+    }
+
+}
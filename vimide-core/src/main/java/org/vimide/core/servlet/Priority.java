@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the priority class of a {@link VimideHttpServlet}, scheduled by
+ * the {@link RequestScheduler}.
+ * <p>
+ * The lower classes yield to the higher ones in-flight, an interactive
+ * request superseded by a newer one of the same client and buffer is dropped
+ * with 409 if it hasn't started yet.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Priority {
+
+    /**
+     * Priority classes, the highest first.
+     */
+    public static enum Level {
+        /**
+         * Waited by the user typing, e.g. completion and position lookups.
+         */
+        INTERACTIVE,
+        /**
+         * Waited by the user but not while typing, e.g. validating on save
+         * and searching.
+         */
+        NEAR_INTERACTIVE,
+        /**
+         * Nobody waits for, e.g. building, refreshing and importing.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * The priority class.
+     */
+    Level value();
+
+    /**
+     * Whether the interactive request is dropped when superseded, the ones
+     * depending on the previous requests (e.g. the buffer deltas) couldn't.
+     */
+    boolean supersede() default true;
+
+    /**
+     * The parameter naming the buffer the request works on.
+     */
+    String file() default "file";
+
+}
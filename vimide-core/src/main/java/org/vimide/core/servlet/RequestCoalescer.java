@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Shares the computation of the identical concurrent requests of the
+ * servlets marked {@link Coalesce}.
+ * <p>
+ * The first request of an identity computes the response into a buffer,
+ * the ones arriving meanwhile wait for it, then all of them replay the
+ * buffer. The identity is forgotten as soon as the computation is done, so
+ * nothing is cached beyond.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class RequestCoalescer {
+
+    /**
+     * Stamps the state of a file the disk doesn't tell, e.g. the version of
+     * the buffer opened by the editor, as part of the request identity.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    public interface Stamper {
+
+        /**
+         * Gets the stamp of the specific file.
+         * 
+         * @param file the file named by the request.
+         * @return the stamp, null if nothing beyond the disk.
+         */
+        String stampOf(File file);
+    }
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final RequestCoalescer instance = new RequestCoalescer();
+    }
+
+    /**
+     * Gets the singleton of {@link RequestCoalescer}.
+     * 
+     * @return singleton
+     */
+    public static RequestCoalescer getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final ConcurrentMap<String, FutureTask<BufferedHttpServletResponse>> inFlight = //
+    Maps.newConcurrentMap();
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final List<Stamper> stampers = new CopyOnWriteArrayList<Stamper>();
+
+    /**
+     * Creates an new RequestCoalescer instance.
+     */
+    RequestCoalescer() {
+        super();
+    }
+
+    /**
+     * Adds the stamper of the files named by the requests.
+     * 
+     * @param stamper the stamper.
+     */
+    public void addStamper(Stamper stamper) {
+        stampers.add(stamper);
+    }
+
+    /**
+     * Removes the stamper added.
+     * 
+     * @param stamper the stamper.
+     */
+    public void removeStamper(Stamper stamper) {
+        stampers.remove(stamper);
+    }
+
+    /**
+     * Computes the response of the specific identity, or waits for the one
+     * in-flight.
+     * 
+     * @param key the request identity.
+     * @param computation the computation of the response.
+     * @return the response.
+     * @throws ExecutionException if the computation failed.
+     * @throws InterruptedException
+     */
+    public BufferedHttpServletResponse execute(String key,
+            Callable<BufferedHttpServletResponse> computation)
+            throws ExecutionException, InterruptedException {
+        final FutureTask<BufferedHttpServletResponse> task = //
+        new FutureTask<BufferedHttpServletResponse>(computation);
+        final FutureTask<BufferedHttpServletResponse> existing = inFlight
+                .putIfAbsent(key, task);
+        if (null != existing) {
+            shared.incrementAndGet();
+            return existing.get();
+        }
+
+        computations.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            inFlight.remove(key, task);
+        }
+        return task.get();
+    }
+
+    /**
+     * Builds the identity of the specific request: the path, the accepted
+     * types, the sorted parameters and the stamps of the files named by the
+     * parameters, on the disk and by the stampers added.
+     * 
+     * @param req the request.
+     * @param fileParameters the parameters naming the files.
+     * @return the identity.
+     */
+    public String keyOf(HttpServletRequest req, String[] fileParameters) {
+        final StringBuilder key = new StringBuilder();
+        key.append(req.getMethod()).append(' ').append(req.getRequestURI());
+        key.append('\0').append(req.getHeader("Accept"));
+
+        @SuppressWarnings("unchecked")
+        final Map<String, String[]> params = req.getParameterMap();
+        final String[] names = params.keySet().toArray(
+                new String[params.size()]);
+        Arrays.sort(names);
+        for (String name : names) {
+            for (String value : params.get(name)) {
+                key.append('\0').append(name).append('=').append(value);
+            }
+        }
+
+        for (String fileParameter : fileParameters) {
+            final String[] values = params.get(fileParameter);
+            if (null == values)
+                continue;
+            for (String value : values) {
+                final File file = new File(value);
+                key.append('\0').append(file.lastModified()).append(':')
+                        .append(file.length());
+                for (Stamper stamper : stampers) {
+                    final String stamp = stamper.stampOf(file);
+                    if (null != stamp)
+                        key.append(':').append(stamp);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Retrieves the computations run.
+     */
+    public long getComputations() {
+        return computations.get();
+    }
+
+    /**
+     * Retrieves the requests served by the computation of the others.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.vimide.core.servlet.Priority.Level;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Schedules the requests by the {@link Priority} classes of their servlets.
+ * <p>
+ * The interactive requests run at once. The lower ones, and the background
+ * jobs at their progress checkpoints, wait while a higher one is in-flight,
+ * at most <code>vimide.scheduler.yieldMillis</code> each time so they can't
+ * starve or deadlock on a lock the higher one waits for. Every interactive
+ * request takes a generation of its client and buffer, a request whose
+ * generation is taken over before it starts is stale.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class RequestScheduler {
+
+    static final long YIELD_MILLIS = Long.getLong(
+            "vimide.scheduler.yieldMillis", 500L);
+
+    static final String CLIENT_HEADER = "X-Vimide-Client";
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final RequestScheduler instance = new RequestScheduler();
+    }
+
+    /**
+     * Gets the singleton of {@link RequestScheduler}.
+     * 
+     * @return singleton
+     */
+    public static RequestScheduler getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    static final ThreadLocal<Ticket> CURRENT = new ThreadLocal<Ticket>();
+
+    private final AtomicIntegerArray running = new AtomicIntegerArray(
+            Level.values().length);
+    private final Object turn = new Object();
+
+    /**
+     * The latest generations of the clients' buffers, forgotten once idle.
+     */
+    private final LoadingCache<String, AtomicLong> generations = CacheBuilder
+            .newBuilder().expireAfterAccess(10, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, AtomicLong>() {
+
+                @Override
+                public AtomicLong load(String key) throws Exception {
+                    return new AtomicLong();
+                }
+            });
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong yielded = new AtomicLong();
+    private final AtomicLong yieldedMillis = new AtomicLong();
+
+    /**
+     * Creates an new RequestScheduler instance.
+     */
+    RequestScheduler() {
+        super();
+    }
+
+    /**
+     * Admits the request of the specific priority, waiting for the higher
+     * ones first. The ticket must be released once the request is served.
+     * 
+     * @param req the request.
+     * @param priority the priority of the servlet.
+     * @return the ticket.
+     */
+    public Ticket admit(HttpServletRequest req, Priority priority) {
+        final Level level = priority.value();
+        AtomicLong generation = null;
+        long taken = 0;
+        if (level == Level.INTERACTIVE && priority.supersede()) {
+            final String file = req.getParameter(priority.file());
+            if (null != file) {
+                generation = generations.getUnchecked(new StringBuilder()
+                        .append(req.getServletPath()).append('\0')
+                        .append(clientOf(req)).append('\0').append(file)
+                        .toString());
+                taken = generation.incrementAndGet();
+            }
+        } else {
+            yield(level);
+        }
+        return enter(level, generation, taken);
+    }
+
+    /**
+     * Admits the work of the specific priority run by the current thread,
+     * e.g. a job, waiting for the higher ones first.
+     * 
+     * @param level the priority.
+     * @return the ticket.
+     */
+    public Ticket admit(Level level) {
+        yield(level);
+        return enter(level, null, 0);
+    }
+
+    Ticket enter(Level level, AtomicLong generation, long taken) {
+        running.incrementAndGet(level.ordinal());
+        final Ticket ticket = new Ticket(level, generation, taken,
+                CURRENT.get());
+        CURRENT.set(ticket);
+        return ticket;
+    }
+
+    /**
+     * Yields to the higher requests in-flight if the current thread runs a
+     * lower one, called at the progress checkpoints of the long work.
+     */
+    public void checkpoint() {
+        final Ticket ticket = CURRENT.get();
+        if (null != ticket && ticket.level != Level.INTERACTIVE)
+            yield(ticket.level);
+    }
+
+    /**
+     * Releases the ticket of the served request.
+     * 
+     * @param ticket the ticket.
+     */
+    public void release(Ticket ticket) {
+        CURRENT.set(ticket.previous);
+        if (0 == running.decrementAndGet(ticket.level.ordinal())
+                && ticket.level != Level.BACKGROUND) {
+            synchronized (turn) {
+                turn.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits while any request of a higher priority is in-flight, at most
+     * <code>vimide.scheduler.yieldMillis</code>.
+     * 
+     * @param level the priority of the caller.
+     */
+    public void yield(Level level) {
+        if (!isBusy(level))
+            return;
+
+        final long start = System.currentTimeMillis();
+        final long deadline = start + YIELD_MILLIS;
+        synchronized (turn) {
+            long remaining = YIELD_MILLIS;
+            while (remaining > 0 && isBusy(level)) {
+                try {
+                    turn.wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        yielded.incrementAndGet();
+        yieldedMillis.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Tells if any request of a higher priority is in-flight.
+     * 
+     * @param level the priority of the caller.
+     * @return true if busy.
+     */
+    public boolean isBusy(Level level) {
+        for (int i = 0; i < level.ordinal(); i++) {
+            if (running.get(i) > 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the ticket of the request served by the current thread.
+     * 
+     * @return the ticket, null if none.
+     */
+    public static Ticket current() {
+        return CURRENT.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getYielded() {
+        return yielded.get();
+    }
+
+    public long getYieldedMillis() {
+        return yieldedMillis.get();
+    }
+
+    void drop() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Identifies the client by the <code>client</code> parameter or header,
+     * the remote address otherwise.
+     */
+    static String clientOf(HttpServletRequest req) {
+        String client = req.getParameter("client");
+        if (null == client)
+            client = req.getHeader(CLIENT_HEADER);
+        if (null == client)
+            client = req.getRemoteAddr();
+        return null == client ? "" : client;
+    }
+
+    /**
+     * An admitted request.
+     */
+    public static class Ticket {
+
+        final Level level;
+        final AtomicLong generation;
+        final long taken;
+        final Ticket previous;
+
+        Ticket(Level level, AtomicLong generation, long taken, Ticket previous) {
+            this.level = level;
+            this.generation = generation;
+            this.taken = taken;
+            this.previous = previous;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * Tells if a newer request of the same client and buffer arrived.
+         * 
+         * @return true if stale.
+         */
+        public boolean isStale() {
+            return null != generation && generation.get() != taken;
+        }
+    }
+
+}
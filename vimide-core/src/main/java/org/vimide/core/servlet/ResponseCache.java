@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keeps the responses of the {@link Cacheable} servlets by the request
+ * identity.
+ * <p>
+ * An entry is valid while the workspace stamp it was computed at is the
+ * current one, the stamp is bumped by {@link #invalidate()} on any change
+ * of the workspace. The entries are evicted in LRU order beyond the byte
+ * budget <code>vimide.cache.maxBytes</code>.
+ * <p>
+ * The responses carry an ETag of their body, so an unchanged answer costs a
+ * 304 without body, even after it was recomputed.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class ResponseCache {
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final ResponseCache instance = new ResponseCache(MAX_BYTES);
+    }
+
+    /**
+     * Gets the singleton of {@link ResponseCache}.
+     * 
+     * @return singleton
+     */
+    public static ResponseCache getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    static final long MAX_BYTES = Long.getLong("vimide.cache.maxBytes",
+            8L * 1024 * 1024);
+
+    private final AtomicLong stamp = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Cache<String, Entry> cache;
+
+    /**
+     * Creates an new ResponseCache instance.
+     * 
+     * @param maxBytes the byte budget of the entries.
+     */
+    ResponseCache(long maxBytes) {
+        super();
+        cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher(new Weigher<String, Entry>() {
+
+                    @Override
+                    public int weigh(String key, Entry value) {
+                        return key.length() * 2 + value.getWeight();
+                    }
+                }).build();
+    }
+
+    /**
+     * Retrieves the current workspace stamp.
+     * 
+     * @return the stamp.
+     */
+    public long getStamp() {
+        return stamp.get();
+    }
+
+    /**
+     * Invalidates all the kept responses, on any change of the workspace.
+     */
+    public void invalidate() {
+        stamp.incrementAndGet();
+    }
+
+    /**
+     * Retrieves the valid entry of the specific request identity.
+     * 
+     * @param key the request identity.
+     * @return the entry, null if absent or stale.
+     */
+    public Entry get(String key) {
+        final Entry entry = cache.getIfPresent(key);
+        if (null != entry && entry.stamp == stamp.get()) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Keeps the specific response if it's a successful one.
+     * 
+     * @param key the request identity.
+     * @param computedStamp the stamp read before the computation.
+     * @param response the response.
+     * @return the entry of the response.
+     */
+    public Entry put(String key, long computedStamp,
+            BufferedHttpServletResponse response) {
+        return put(key, new Entry(computedStamp, response));
+    }
+
+    Entry put(String key, Entry entry) {
+        if (entry.status == HttpServletResponse.SC_OK
+                && entry.stamp == stamp.get())
+            cache.put(key, entry);
+        return entry;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * A kept response, only its status, headers and body are kept, not the
+     * buffered response wrapping the one of the computing request.
+     */
+    public static class Entry {
+
+        final long stamp;
+        final int status;
+        final String message;
+        final String contentType;
+        final String characterEncoding;
+        final List<String[]> headers;
+        final byte[] body;
+        final String etag;
+
+        Entry(long stamp, BufferedHttpServletResponse response) {
+            this(stamp, response.getStatus(), response.getMessage(), response
+                    .getContentType(), response.getCharacterEncoding(),
+                    response.getHeaders(), response.getBody());
+        }
+
+        Entry(long stamp, int status, String message, String contentType,
+                String characterEncoding, List<String[]> headers, byte[] body) {
+            this.stamp = stamp;
+            this.status = status;
+            this.message = message;
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.headers = Arrays.asList(headers.toArray(new String[headers
+                    .size()][]));
+            this.body = body;
+            this.etag = '"' + Long.toHexString(Hashing.murmur3_128()
+                    .hashBytes(body).asLong()) + '"';
+        }
+
+        /**
+         * Retrieves the bytes kept, chars are two bytes each.
+         */
+        int getWeight() {
+            int weight = body.length + etag.length() * 2;
+            for (String[] header : headers) {
+                weight += (header[0].length() + header[1].length()) * 2;
+            }
+            return weight;
+        }
+
+        /**
+         * Writes the response, or 304 if the request has it already.
+         * 
+         * @param req the request.
+         * @param resp the response.
+         * @throws IOException
+         */
+        public void writeTo(HttpServletRequest req, HttpServletResponse resp)
+                throws IOException {
+            if (status != HttpServletResponse.SC_OK) {
+                replay(resp);
+                return;
+            }
+
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", "no-cache");
+            if (matches(req.getHeader("If-None-Match"))) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            replay(resp);
+        }
+
+        void replay(HttpServletResponse resp) throws IOException {
+            BufferedHttpServletResponse.replay(resp, status, message,
+                    contentType, characterEncoding, headers, body);
+        }
+
+        boolean matches(String ifNoneMatch) {
+            if (null == ifNoneMatch)
+                return false;
+            for (String tag : Splitter.on(',').trimResults()
+                    .omitEmptyStrings().split(ifNoneMatch)) {
+                if ("*".equals(tag) || etag.equals(tag)
+                        || ("W/" + etag).equals(tag))
+                    return true;
+            }
+            return false;
+        }
+
+    }
+
+}
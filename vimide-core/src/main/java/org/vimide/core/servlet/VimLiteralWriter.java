@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Rewrites the json text written through it into the vim literal on the fly,
+ * so the response is streamed as the mapper generates it.
+ * <p>
+ * The json strings, objects and arrays are valid vim already, only the bare
+ * words are translated: the booleans to 1/0, the nulls to empty strings and
+ * the non-numeric numbers to 0.0.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+final class VimLiteralWriter extends Writer {
+
+    private final Writer out;
+    private final StringBuilder word = new StringBuilder(8);
+    private boolean inString;
+    private boolean escaped;
+
+    VimLiteralWriter(Writer out) {
+        super();
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (inString) {
+            if (escaped)
+                escaped = false;
+            else if ('\\' == c)
+                escaped = true;
+            else if ('"' == c)
+                inString = false;
+            out.write(c);
+        } else if (Character.isLetter(c)) {
+            // the word may be split over the writes.
+            word.append((char) c);
+        } else {
+            writeWord();
+            if ('"' == c)
+                inString = true;
+            out.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            write(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            write(str.charAt(i));
+        }
+    }
+
+    private void writeWord() throws IOException {
+        if (word.length() == 0)
+            return;
+
+        final String value = word.toString();
+        word.setLength(0);
+
+        if ("true".equals(value))
+            out.write('1');
+        else if ("false".equals(value))
+            out.write('0');
+        else if ("null".equals(value))
+            out.write("''");
+        else if ("NaN".equals(value) || "Infinity".equals(value))
+            out.write("0.0");
+        else
+            // e.g. the exponent of 1.0E10.
+            out.write(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // keeps the pending word, it may be continued.
+        out.flush();
+    }
+
+    /**
+     * Writes the pending word, leaves the underlying writer open.
+     */
+    @Override
+    public void close() throws IOException {
+        writeWord();
+        out.flush();
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.vimide.core.util.JsonUtil;
+
+/**
+ * Vim codec, writes the object as the literal of vim's dictionaries and
+ * lists, so the client evaluates it with <code>eval()</code> directly.
+ * <p>
+ * The booleans are written as 1/0 and the nulls as empty strings, as the
+ * vim without the v:true/v:null couldn't evaluate them otherwise. The json
+ * generated by the shared mapper is translated while it's written, so the
+ * result is streamed as the json codec does.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimResponseCodec implements VimideResponseCodec {
+
+    @Override
+    public String getName() {
+        return VimideResponseCodecs.VIM;
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/x-vim";
+    }
+
+    @Override
+    public void encode(Object object, VimideHttpServletResponse resp)
+            throws IOException {
+        resp.setContentType(getContentType());
+
+        final Writer writer = resp.getContentWriter();
+        final ObjectMapper mapper = JsonUtil.getObjectMapper();
+        final JsonGenerator generator = mapper.getJsonFactory()
+                .createJsonGenerator(new VimLiteralWriter(writer));
+        try {
+            mapper.writeValue(generator, object);
+        } finally {
+            // writes the pending word, the response writer stays open.
+            generator.close();
+        }
+        writer.flush();
+    }
+
+}
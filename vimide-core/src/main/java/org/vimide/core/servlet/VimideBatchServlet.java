@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.codehaus.jackson.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideLocalDispatcher;
+import org.vimide.core.util.JsonUtil;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs several requests in one round-trip.
+ * <p>
+ * The requests are the json array passed by the <code>requests</code>
+ * parameter, or by the body of a POST, each of them is a request of the
+ * {@link VimideLocalDispatcher}, e.g.
+ * <code>["/project_by_resource?file=...", {"uri": "/problems", "params": {...}}]</code>.
+ * The requests are run in order, but a nested array is a group of the
+ * independent requests run concurrently. The <code>parallel</code> parameter
+ * runs all the requests concurrently, as one group.
+ * <p>
+ * The results are answered in the shape of the requests, a failed request
+ * doesn't stop the later ones.
+ * <p>
+ * The requests are dispatched in-process on the thread running them, no
+ * thread of the httpd is taken by them. A request of a group which hasn't
+ * been taken by a worker yet is run by the request thread itself, so the
+ * batches never wait for the workers busy with the others.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/batch")
+public class VimideBatchServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideBatchServlet.class);
+
+    static final int THREADS = Integer.getInteger("vimide.batch.threads", 4);
+    static final int MAX_REQUESTS = Integer.getInteger(
+            "vimide.batch.maxRequests", 32);
+
+    private transient ExecutorService executor;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#init()
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        executor = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactoryBuilder().setNameFormat("vimide-batch-%d")
+                        .setDaemon(true).build());
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#destroy()
+     */
+    @Override
+    public void destroy() {
+        if (null != executor)
+            executor.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        execute(req.getParameter("requests"), req, resp);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doPost(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doPost(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        String requests = req.getParameter("requests");
+        if (null == requests)
+            requests = req.getContentAsString();
+        execute(requests, req, resp);
+    }
+
+    void execute(String requests, VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws IOException {
+        if (Strings.isNullOrEmpty(requests)) {
+            resp.sendError(403);
+            return;
+        }
+
+        final JsonNode node;
+        try {
+            node = JsonUtil.getObjectMapper().readTree(requests);
+        } catch (final IOException e) {
+            resp.sendError(403);
+            return;
+        }
+
+        if (!node.isArray() || count(node) > MAX_REQUESTS) {
+            resp.sendError(403);
+            return;
+        }
+
+        final boolean parallel = req.getParameter("parallel") != null
+                && !"0".equals(req.getParameter("parallel"));
+
+        final List<Object> results = parallel ? runGroup(node) : Lists
+                .newArrayListWithCapacity(node.size());
+        if (!parallel) {
+            for (JsonNode request : node) {
+                if (request.isArray())
+                    results.add(runGroup(request));
+                else
+                    results.add(run(request));
+            }
+        }
+
+        resp.writeAsJson(results);
+    }
+
+    /**
+     * Runs the independent requests concurrently, the current thread takes
+     * the first one, and the ones not started by the workers after it.
+     */
+    List<Object> runGroup(JsonNode group) {
+        final List<Future<Object>> futures = Lists.newArrayList();
+        final List<AtomicBoolean> started = Lists.newArrayList();
+        final List<Object> results = Lists.newArrayListWithCapacity(group
+                .size());
+
+        for (int i = 1; i < group.size(); i++) {
+            final JsonNode request = group.get(i);
+            final AtomicBoolean claim = new AtomicBoolean();
+            started.add(claim);
+            futures.add(executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    // taken by the request thread already.
+                    if (!claim.compareAndSet(false, true))
+                        return null;
+                    return run(request);
+                }
+            }));
+        }
+
+        if (group.size() > 0)
+            results.add(run(group.get(0)));
+
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<Object> future = futures.get(i);
+            if (started.get(i).compareAndSet(false, true)) {
+                future.cancel(false);
+                results.add(run(group.get(i + 1)));
+                continue;
+            }
+
+            try {
+                results.add(future.get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(VimideLocalDispatcher.error(503, "Interrupted"));
+            } catch (final ExecutionException e) {
+                results.add(VimideLocalDispatcher.error(500,
+                        String.valueOf(e.getCause())));
+            }
+        }
+        return results;
+    }
+
+    Object run(JsonNode request) {
+        // the groups aren't nested, a worker never waits for the others.
+        if (request.isArray())
+            return VimideLocalDispatcher.error(403, "Nested group: "
+                    + request);
+
+        final String uri = request.isTextual() ? request.getTextValue()
+                : request.path("uri").asText();
+        if (uri.equals("/batch") || uri.startsWith("/batch?"))
+            return VimideLocalDispatcher.error(403, "Nested batch: " + uri);
+
+        try {
+            return VimideLocalDispatcher.execute(request);
+        } catch (final Exception e) {
+            LOGGER.error("Error caught at batch request {}: {}", new Object[] {
+                    request, e.getMessage(), e });
+            return VimideLocalDispatcher.error(500,
+                    String.valueOf(e.getMessage()));
+        }
+    }
+
+    static int count(JsonNode node) {
+        int count = 0;
+        for (JsonNode request : node) {
+            count += request.isArray() ? request.size() : 1;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideEvent;
+import org.vimide.core.server.VimideEventHub;
+import org.vimide.core.server.VimideEventListener;
+import org.vimide.core.util.JsonUtil;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Streams the events of the {@link VimideEventHub} as Server-Sent Events.
+ * <p>
+ * The <code>type</code> parameters restrict the streamed event types, the
+ * <code>Last-Event-ID</code> header (or <code>lastEventId</code> parameter)
+ * replays the kept events published after it.
+ * <p>
+ * The events are queued per stream and written by a writer thread, so a slow
+ * client never holds the hub. A stream whose queue exceeds
+ * <code>vimide.events.queueSize</code> frames is closed, the client could
+ * resume from its last event id.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/events", asyncSupported = true)
+public class VimideEventStreamServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideEventStreamServlet.class);
+
+    static final long HEARTBEAT_INTERVAL = Long.getLong(
+            "vimide.events.heartbeat", 15000L);
+
+    static final int QUEUE_SIZE = Math.max(
+            Integer.getInteger("vimide.events.queueSize", 512),
+            VimideEventHub.HISTORY_SIZE + 1);
+
+    private final Set<Subscriber> subscribers = Sets.newSetFromMap(
+            new ConcurrentHashMap<Subscriber, Boolean>());
+    private transient ScheduledExecutorService heartbeat;
+    private transient ExecutorService writers;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#init()
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        writers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("vimide-events-writer-%d").setDaemon(true)
+                .build());
+        heartbeat = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("vimide-events-heartbeat-%d")
+                        .setDaemon(true).build());
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.ping();
+                }
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#destroy()
+     */
+    @Override
+    public void destroy() {
+        if (null != heartbeat)
+            heartbeat.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        if (null != writers)
+            writers.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        String lastEventId = req.getHeader("Last-Event-ID");
+        if (null == lastEventId)
+            lastEventId = req.getParameter("lastEventId");
+
+        long lastId = -1;
+        if (null != lastEventId) {
+            try {
+                lastId = Long.parseLong(lastEventId.trim());
+            } catch (final NumberFormatException e) {
+                resp.sendError(403);
+                return;
+            }
+        }
+
+        final String[] types = req.getParameterValues("type");
+
+        resp.setContentType("text/event-stream");
+        resp.setHeader("Cache-Control", "no-cache");
+
+        final AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0);
+
+        final Subscriber subscriber = new Subscriber(asyncContext,
+                resp.getWriter(), null == types ? null
+                        : ImmutableSet.copyOf(types));
+        asyncContext.addListener(subscriber);
+        subscribers.add(subscriber);
+        subscriber.open(lastId);
+    }
+
+    /**
+     * A connected event stream.
+     */
+    class Subscriber implements VimideEventListener, AsyncListener, Runnable {
+
+        final AsyncContext asyncContext;
+        final PrintWriter writer;
+        final Set<String> types;
+        final Deque<String> queue = new ArrayDeque<String>();
+        long lastId;
+        boolean closed;
+        boolean draining;
+
+        Subscriber(AsyncContext asyncContext, PrintWriter writer,
+                Set<String> types) {
+            this.asyncContext = asyncContext;
+            this.writer = writer;
+            this.types = types;
+        }
+
+        /**
+         * Registers to the hub and queues the events after the specific id,
+         * or after the latest one read before the registration. The lock is
+         * held meanwhile, so the live events wait for the replay and the
+         * replayed ones are skipped.
+         */
+        synchronized void open(long lastEventId) {
+            final VimideEventHub hub = VimideEventHub.getInstance();
+            lastId = lastEventId < 0 ? hub.getLastEventId() : lastEventId;
+            hub.addListener(this);
+
+            if (lastEventId < 0) {
+                // opening comment, lets the client know it's connected.
+                enqueue(": connected\n\n");
+            }
+            // the events published till registered are replayed as well.
+            for (VimideEvent event : hub.getEventsAfter(lastId)) {
+                send(event);
+            }
+        }
+
+        @Override
+        public synchronized void onEvent(VimideEvent event) {
+            send(event);
+        }
+
+        synchronized void ping() {
+            enqueue(": ping\n\n");
+        }
+
+        void send(VimideEvent event) {
+            if (closed || event.getId() <= lastId)
+                return;
+            lastId = event.getId();
+
+            if (null != types && !types.contains(event.getType()))
+                return;
+
+            final String data;
+            try {
+                data = JsonUtil.getObjectMapper().writeValueAsString(event.getData());
+            } catch (final IOException e) {
+                LOGGER.error("Unable to serialize the event {}: {}",
+                        new Object[] { event.getType(), e.getMessage(), e });
+                return;
+            }
+
+            enqueue(new StringBuilder().append("id: ").append(event.getId())
+                    .append("\nevent: ").append(event.getType())
+                    .append("\ndata: ").append(data).append("\n\n")
+                    .toString());
+        }
+
+        /**
+         * Queues the frame and schedules the writing, the lock is held.
+         */
+        void enqueue(String frame) {
+            if (closed)
+                return;
+            if (queue.size() >= QUEUE_SIZE) {
+                LOGGER.warn("Event stream is too slow, {} frames queued,"
+                        + " closing it.", queue.size());
+                close();
+                return;
+            }
+
+            queue.add(frame);
+            if (!draining) {
+                draining = true;
+                writers.execute(this);
+            }
+        }
+
+        /**
+         * Writes the queued frames on the writer thread.
+         */
+        @Override
+        public void run() {
+            final StringBuilder frames = new StringBuilder();
+            while (true) {
+                synchronized (this) {
+                    if (closed || queue.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    while (!queue.isEmpty())
+                        frames.append(queue.poll());
+                }
+
+                writer.write(frames.toString());
+                writer.flush();
+                frames.setLength(0);
+                if (writer.checkError()) {
+                    LOGGER.debug("Event stream disconnected.");
+                    close();
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            queue.clear();
+            VimideEventHub.getInstance().removeListener(this);
+            subscribers.remove(this);
+            try {
+                asyncContext.complete();
+            } catch (final IllegalStateException ignore) {
+                // already completed by the container.
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // NOOP
+        }
+    }
+
+}
@@ -24,12 +24,35 @@ package org.vimide.core.servlet;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.server.Response;
+import org.vimide.core.metrics.EndpointMetrics;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.metrics.VimideTracer;
+import org.vimide.core.metrics.VimideTracer.Trace;
+import org.vimide.core.server.VimideHttpServer;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.server.VimideJobManager;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+
 /**
  * An implementation of HttpServlet for Vimide.
  * 
@@ -39,6 +62,88 @@ public abstract class VimideHttpServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The permits of the servlet classes declared {@link ConcurrencyLimit},
+     * shared by the instances mapped to the different paths.
+     */
+    static final LoadingCache<Class<?>, Optional<Semaphore>> PERMITS = CacheBuilder
+            .newBuilder().weakKeys()
+            .build(new CacheLoader<Class<?>, Optional<Semaphore>>() {
+
+                @Override
+                public Optional<Semaphore> load(Class<?> key)
+                        throws Exception {
+                    final ConcurrencyLimit limit = key
+                            .getAnnotation(ConcurrencyLimit.class);
+                    if (null == limit)
+                        return Optional.absent();
+
+                    final int permits = Integer.getInteger(
+                            "vimide.concurrency." + key.getSimpleName(),
+                            limit.value());
+                    if (permits <= 0)
+                        return Optional.absent();
+                    return Optional.of(new Semaphore(permits, true));
+                }
+            });
+
+    static final String[] NO_FILES = new String[0];
+
+    static final String COMPLETION = VimideHttpServlet.class.getName()
+            + ".completion";
+
+    /**
+     * The actions run once the request and the jobs it submitted are done,
+     * i.e. releasing the permit and recording the metrics and the trace.
+     */
+    static class Completion {
+
+        private final List<Runnable> actions = Lists.newArrayList();
+        private int holds = 1;
+
+        static Completion of(ServletRequest req) {
+            final Object completion = req.getAttribute(COMPLETION);
+            return completion instanceof Completion ? (Completion) completion
+                    : null;
+        }
+
+        /**
+         * Adds the action, it's run at once if the completion is done.
+         */
+        void add(Runnable action) {
+            synchronized (this) {
+                if (holds > 0) {
+                    actions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        synchronized void hold() {
+            holds++;
+        }
+
+        /**
+         * Releases a hold, the actions are run in the order added by the
+         * last one.
+         */
+        void release() {
+            final List<Runnable> ready;
+            synchronized (this) {
+                if (--holds > 0)
+                    return;
+                ready = Lists.newArrayList(actions);
+                actions.clear();
+            }
+            for (Runnable action : ready) {
+                action.run();
+            }
+        }
+    }
+
+    private transient volatile EndpointMetrics metrics;
+
     /**
      * {@inheritDoc}
      * 
@@ -215,13 +320,379 @@ public abstract class VimideHttpServlet extends HttpServlet {
      *      javax.servlet.http.HttpServletResponse)
      */
     @Override
-    protected void service(HttpServletRequest req, HttpServletResponse resp)
+    protected void service(final HttpServletRequest req,
+            final HttpServletResponse resp) throws ServletException,
+            IOException {
+        final EndpointMetrics endpoint = getMetrics(req);
+        final EndpointMetrics previous = VimideMetrics.bind(endpoint);
+        final Trace previousTrace = VimideTracer.begin(endpoint.getName(),
+                null == req.getQueryString() ? req.getRequestURI() : req
+                        .getRequestURI() + '?' + req.getQueryString());
+        final Deadline previousDeadline = Deadline.bind(Deadline.of(req));
+        final long start = endpoint.begin();
+        final Completion completion = new Completion();
+        req.setAttribute(COMPLETION, completion);
+        boolean failed = true;
+        try {
+            service(req, resp, PERMITS.getUnchecked(getClass()).orNull());
+            failed = false;
+        } finally {
+            Deadline.bind(previousDeadline);
+            VimideMetrics.bind(previous);
+            final Trace trace = VimideTracer.detach(previousTrace);
+            final boolean failure = failed;
+            // recorded once the jobs submitted by the request finished too.
+            completion.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    final int status = failure ? 500 : resp.getStatus();
+                    VimideTracer.finish(trace, status);
+                    endpoint.end(start, status, req.getContentLength(),
+                            resp instanceof Response ? ((Response) resp)
+                                    .getContentCount() : -1);
+                }
+            });
+            completion.release();
+        }
+    }
+
+    /**
+     * Serves the request, the GET requests of a {@link Cacheable} servlet
+     * are answered by the {@link ResponseCache} while the workspace doesn't
+     * change, and the identical concurrent ones of a {@link Coalesce}
+     * servlet share one computation.
+     */
+    void service(final HttpServletRequest req,
+            final HttpServletResponse resp, final Semaphore permits)
+            throws ServletException, IOException {
+        final Coalesce coalesce = getClass().getAnnotation(Coalesce.class);
+        final Cacheable cacheable = getClass().getAnnotation(Cacheable.class);
+        if ((null == coalesce && null == cacheable)
+                || !"GET".equals(req.getMethod())) {
+            serve(req, resp, permits);
+            return;
+        }
+
+        final String key = RequestCoalescer.getInstance().keyOf(req,
+                null == coalesce ? NO_FILES : coalesce.files());
+        final ResponseCache cache = ResponseCache.getInstance();
+        if (null != cacheable) {
+            final ResponseCache.Entry entry = cache.get(key);
+            if (null != entry) {
+                entry.writeTo(req, resp);
+                return;
+            }
+        }
+
+        final long stamp = cache.getStamp();
+        final BufferedHttpServletResponse buffered = null == coalesce ? buffer(
+                req, resp, permits) : coalesce(key, req, resp, permits);
+        if (null != cacheable)
+            cache.put(key, stamp, buffered).writeTo(req, resp);
+        else
+            buffered.replay(resp);
+    }
+
+    BufferedHttpServletResponse buffer(HttpServletRequest req,
+            HttpServletResponse resp, Semaphore permits)
             throws ServletException, IOException {
-        req.setCharacterEncoding(getDefaultCharacterEncoding());
-        resp.setCharacterEncoding(getDefaultCharacterEncoding());
+        final BufferedHttpServletResponse buffered = //
+        new BufferedHttpServletResponse(resp);
+        serve(req, buffered, permits);
+        buffered.close();
+        return buffered;
+    }
+
+    BufferedHttpServletResponse coalesce(String key,
+            final HttpServletRequest req, final HttpServletResponse resp,
+            final Semaphore permits) throws ServletException, IOException {
+        try {
+            return RequestCoalescer.getInstance().execute(key,
+                    new Callable<BufferedHttpServletResponse>() {
+
+                        @Override
+                        public BufferedHttpServletResponse call()
+                                throws Exception {
+                            return buffer(req, resp, permits);
+                        }
+                    });
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof ServletException)
+                throw (ServletException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new ServletException(cause);
+        }
+    }
+
+    void serve(HttpServletRequest req, HttpServletResponse resp,
+            Semaphore permits) throws ServletException, IOException {
+        if (isLate(resp))
+            return;
+
+        final Priority priority = getClass().getAnnotation(Priority.class);
+        final RequestScheduler scheduler = RequestScheduler.getInstance();
+        final RequestScheduler.Ticket ticket = null == priority ? null
+                : scheduler.admit(req, priority);
+        try {
+            serve(req, resp, permits, ticket);
+        } finally {
+            if (null != ticket)
+                scheduler.release(ticket);
+        }
+    }
+
+    void serve(HttpServletRequest req, HttpServletResponse resp,
+            Semaphore permits, RequestScheduler.Ticket ticket)
+            throws ServletException, IOException {
+        if (null != permits && !acquire(permits)) {
+            // rejects fast, the client could retry later.
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        try {
+            if (null != ticket && ticket.isStale()) {
+                // a newer request of the same buffer has arrived.
+                RequestScheduler.getInstance().drop();
+                resp.sendError(HttpServletResponse.SC_CONFLICT, "Superseded");
+                return;
+            }
+            if (isLate(resp))
+                return;
+
+            req.setCharacterEncoding(getDefaultCharacterEncoding());
+            resp.setCharacterEncoding(getDefaultCharacterEncoding());
+
+            try {
+                super.service(new VimideHttpServletRequest(req),
+                        new VimideHttpServletResponse(resp, req));
+            } catch (final RuntimeException e) {
+                // the operations cancelled by the deadline or a newer
+                // request throw their own exceptions, e.g. the eclipse's
+                // OperationCanceledException.
+                if (resp.isCommitted())
+                    throw e;
+                if (null != ticket && ticket.isStale()) {
+                    RequestScheduler.getInstance().drop();
+                    resp.sendError(HttpServletResponse.SC_CONFLICT,
+                            "Superseded");
+                } else if (e instanceof DeadlineExceededException) {
+                    resp.sendError(Deadline.SC_DEADLINE_EXCEEDED,
+                            e.getMessage());
+                } else if (!isLate(resp)) {
+                    throw e;
+                }
+            }
+        } finally {
+            if (null != permits)
+                release(req, permits);
+        }
+    }
+
+    /**
+     * Releases the permit once the request and the jobs it submitted are
+     * done.
+     */
+    void release(HttpServletRequest req, final Semaphore permits) {
+        final Completion completion = Completion.of(req);
+        if (null == completion) {
+            permits.release();
+            return;
+        }
+
+        completion.add(new Runnable() {
+
+            @Override
+            public void run() {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Holds the completion of the request till the job finished, so the
+     * permit, the metrics and the trace of the request cover the job.
+     */
+    void holdUntilFinished(HttpServletRequest req, VimideJob job) {
+        final Completion completion = Completion.of(req);
+        if (null == completion)
+            return;
+
+        completion.hold();
+        final VimideJob.Listener listener = new VimideJob.Listener() {
+
+            final AtomicBoolean released = new AtomicBoolean();
+
+            @Override
+            public void jobChanged(VimideJob job) {
+                if (!job.isFinished() || !released.compareAndSet(false, true))
+                    return;
+                job.removeListener(this);
+                completion.release();
+            }
+        };
+        job.addListener(listener);
+        // the job might have finished before listened.
+        listener.jobChanged(job);
+    }
+
+    /**
+     * Retrieves the metrics of this servlet, named after the servlet path
+     * it's mapped to.
+     */
+    EndpointMetrics getMetrics(HttpServletRequest req) {
+        EndpointMetrics result = metrics;
+        if (null == result) {
+            String name = req.getServletPath();
+            if (null == name || name.length() == 0)
+                name = getClass().getSimpleName();
+            metrics = result = VimideMetrics.getInstance().getEndpoint(name);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the long-running operation as a {@link VimideJob}.
+     * <p>
+     * The job is answered right away if the request asks for
+     * <code>async</code>, the client follows it through the
+     * <code>/job</code> servlet. Otherwise the request is suspended till the
+     * job finished and answered with its result, the http thread is released
+     * meanwhile unless the servlet doesn't support async or the request is
+     * dispatched in-process. The job keeps the {@link Priority} of the
+     * servlet.
+     * 
+     * @param req the request.
+     * @param resp the response.
+     * @param name the job name.
+     * @param task the operation.
+     * @throws ServletException
+     * @throws IOException
+     */
+    protected void submitJob(VimideHttpServletRequest req,
+            final VimideHttpServletResponse resp, String name,
+            final VimideJob.Task task) throws ServletException, IOException {
+        final Priority priority = getClass().getAnnotation(Priority.class);
+        final VimideJob job = VimideJobManager.getInstance().submit(name,
+                null == priority ? task : new VimideJob.Task() {
+
+                    @Override
+                    public Object run(VimideJob job) throws Exception {
+                        // keeps the priority, the job yields at checkpoints.
+                        final RequestScheduler scheduler = RequestScheduler
+                                .getInstance();
+                        final RequestScheduler.Ticket ticket = scheduler
+                                .admit(priority.value());
+                        try {
+                            return task.run(job);
+                        } finally {
+                            scheduler.release(ticket);
+                        }
+                    }
+                });
+
+        if (0 != req.getIntParameter("async", 0)) {
+            holdUntilFinished(req, job);
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.writeAsJson(job.toMap());
+            return;
+        }
+
+        final boolean local = VimideHttpServer.isLocalDispatch(req);
+        if (local || !req.isAsyncSupported()) {
+            try {
+                job.await(0);
+            } catch (final InterruptedException e) {
+                job.cancel();
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            }
+            writeJobResult(job, resp);
+            return;
+        }
+
+        final AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0);
+
+        final VimideJob.Listener listener = new VimideJob.Listener() {
+
+            final AtomicBoolean answered = new AtomicBoolean();
+
+            @Override
+            public void jobChanged(VimideJob job) {
+                if (!job.isFinished() || !answered.compareAndSet(false, true))
+                    return;
+                job.removeListener(this);
+                try {
+                    writeJobResult(job, resp);
+                } catch (final IOException ignore) {
+                    // the client's gone, the result is kept by the job.
+                } finally {
+                    asyncContext.complete();
+                }
+            }
+        };
+        job.addListener(listener);
+        // the job might have finished before listened.
+        listener.jobChanged(job);
+        // listened after the answering one, so the answer is recorded.
+        holdUntilFinished(req, job);
+    }
+
+    void writeJobResult(VimideJob job, VimideHttpServletResponse resp)
+            throws IOException {
+        switch (job.getState()) {
+        case DONE:
+            resp.writeAsJson(job.getResult());
+            break;
+        case CANCELLED:
+            resp.sendError(HttpServletResponse.SC_GONE, "Cancelled");
+            break;
+        default:
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    job.getError());
+            break;
+        }
+    }
+
+    /**
+     * Rejects the request quickly if its {@link Deadline} passed.
+     * 
+     * @return true if rejected.
+     */
+    boolean isLate(HttpServletResponse resp) throws IOException {
+        final Deadline deadline = Deadline.current();
+        if (null == deadline || !deadline.isExpired())
+            return false;
+        resp.sendError(Deadline.SC_DEADLINE_EXCEEDED, "Deadline exceeded");
+        return true;
+    }
 
-        super.service(new VimideHttpServletRequest(req),
-                new VimideHttpServletResponse(resp));
+    boolean acquire(Semaphore permits) {
+        final ConcurrencyLimit limit = getClass().getAnnotation(
+                ConcurrencyLimit.class);
+        try {
+            if (null == limit || limit.waitMillis() <= 0)
+                return permits.tryAcquire();
+            // bounds the requests queued, the overload isn't deferred.
+            if (limit.maxQueue() >= 0
+                    && permits.getQueueLength() >= limit.maxQueue())
+                return false;
+            return permits.tryAcquire(Deadline.limit(limit.waitMillis()),
+                    TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     protected String getDefaultCharacterEncoding() {
@@ -23,6 +23,7 @@
 package org.vimide.core.servlet;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -31,6 +32,7 @@ import java.util.Date;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -340,4 +342,16 @@ public class VimideHttpServletRequest extends HttpServletRequestWrapper {
         }
         return null;
     }
+
+    /**
+     * Gets the body of the request as string, it was decoded by the character
+     * encoding of the request.
+     * 
+     * @return the body contents, never be null.
+     * @throws IOException
+     */
+    public String getContentAsString() throws IOException {
+        final String contents = IOUtils.toString(getReader());
+        return null == contents ? EMPTY_STRING : contents;
+    }
 }
@@ -23,16 +23,19 @@
 package org.vimide.core.servlet;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 
-import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.metrics.VimideTracer;
 
 /**
  * An implementation of HttpServletResponse for Vimide.
@@ -46,7 +49,11 @@ public class VimideHttpServletResponse extends HttpServletResponseWrapper {
      */
     static final Logger LOGGER = LoggerFactory
             .getLogger(VimideHttpServletResponse.class);
-    final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServletRequest request;
+    private boolean writerUsed;
+    private boolean outputStreamUsed;
+    private Writer contentWriter;
 
     /**
      * Creates an new VimideHttpServletResponse instance.
@@ -54,11 +61,70 @@ public class VimideHttpServletResponse extends HttpServletResponseWrapper {
      * @param response
      */
     public VimideHttpServletResponse(HttpServletResponse response) {
+        this(response, null);
+    }
+
+    /**
+     * Creates an new VimideHttpServletResponse instance, negotiating the
+     * codecs with the specific request.
+     * 
+     * @param response
+     * @param request
+     */
+    public VimideHttpServletResponse(HttpServletResponse response,
+            HttpServletRequest request) {
         super(response);
+        this.request = request;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.ServletResponseWrapper#getWriter()
+     */
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        final PrintWriter writer = super.getWriter();
+        writerUsed = true;
+        return writer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.ServletResponseWrapper#getOutputStream()
+     */
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        final ServletOutputStream outputStream = super.getOutputStream();
+        outputStreamUsed = true;
+        return outputStream;
+    }
+
+    boolean isWriterUsed() {
+        return writerUsed;
+    }
+
+    /**
+     * Retrieves the writer for the character content, wrapping the output
+     * stream when it's used already. The same writer is kept for the whole
+     * response, the codecs flush it once written.
+     */
+    Writer getContentWriter() throws IOException {
+        if (null == contentWriter) {
+            contentWriter = outputStreamUsed ? new OutputStreamWriter(
+                    getOutputStream(), "UTF-8") : getWriter();
+        }
+        return contentWriter;
     }
 
     public void flush() throws IOException {
-        getWriter().flush();
+        if (null != contentWriter)
+            contentWriter.flush();
+        if (outputStreamUsed)
+            getOutputStream().flush();
+        else
+            getWriter().flush();
     }
 
     public VimideHttpServletResponse writeAsPlainText(Object object)
@@ -72,41 +138,72 @@ public class VimideHttpServletResponse extends HttpServletResponseWrapper {
         return this;
     }
 
+    /**
+     * Writes the object by the codec the request negotiated.
+     * 
+     * @param object the object to write.
+     * @return this response.
+     * @throws IOException
+     */
+    public VimideHttpServletResponse write(Object object) throws IOException {
+        return write(object, VimideResponseCodecs.JSON,
+                VimideResponseCodecs.VIM, VimideResponseCodecs.XML,
+                VimideResponseCodecs.HTML);
+    }
+
+    /**
+     * Writes the object as json, or as vim literal when the request asked
+     * for it.
+     */
     public VimideHttpServletResponse writeAsJson(Object object)
             throws IOException {
-        setContentType("application/json");
-        getWriter().write(objectMapper.writeValueAsString(object));
-        return this;
+        return write(object, VimideResponseCodecs.JSON,
+                VimideResponseCodecs.VIM);
     }
 
     public VimideHttpServletResponse writeAsXml(Object object)
             throws IOException {
-        return writeAsXDocument("text/xml", object);
+        return writeAsXDocument(VimideResponseCodecs.XML, object);
     }
 
     public VimideHttpServletResponse writeAsHtml(Object object)
             throws IOException {
-        return writeAsXDocument("text/html", object);
+        return writeAsXDocument(VimideResponseCodecs.HTML, object);
     }
 
-    protected VimideHttpServletResponse writeAsXDocument(String contentType,
+    /**
+     * Writes the object by the registered document codec.
+     * 
+     * @param name the name of the codec, xml or html.
+     * @param object the object to write.
+     * @return this response.
+     * @throws IOException
+     */
+    protected VimideHttpServletResponse writeAsXDocument(String name,
             Object object) throws IOException {
-        setContentType(contentType);
-        if (object instanceof String)
-            getWriter().write((String) object);
-        else if (null != object) {
-            try {
-                final JAXBContext context = JAXBContext.newInstance(object
-                        .getClass());
-                Marshaller marshaller = context.createMarshaller();
-                marshaller.marshal(object, getWriter());
-            } catch (JAXBException e) {
-                LOGGER.error(
-                        "Error caught at writing ({}) document response: {}",
-                        new Object[] { contentType, e.getMessage() }, e);
-            }
+        final long start = System.nanoTime();
+        final int span = VimideTracer.enter("serialize");
+        try {
+            VimideResponseCodecs.getInstance().get(name).encode(object, this);
+        } finally {
+            VimideTracer.exit(span);
         }
+        VimideMetrics.recordPhase("serialize", start);
+        return this;
+    }
 
+    protected VimideHttpServletResponse write(Object object,
+            String... candidates) throws IOException {
+        final VimideResponseCodec codec = VimideResponseCodecs.getInstance()
+                .negotiate(request, candidates);
+        final long start = System.nanoTime();
+        final int span = VimideTracer.enter("serialize");
+        try {
+            codec.encode(object, this);
+        } finally {
+            VimideTracer.exit(span);
+        }
+        VimideMetrics.recordPhase("serialize", start);
         return this;
     }
 }
@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideHttpServer;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.server.VimideJobManager;
+import org.vimide.core.util.JsonUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Follows the jobs submitted by the long-running servlets.
+ * <p>
+ * Without the <code>id</code> parameter the kept jobs are listed. With it,
+ * the <code>cancel</code> parameter requests to cancel the job, the
+ * <code>wait</code> parameter long-polls for the millis till the job changed
+ * after the <code>version</code> the client has seen, and the
+ * <code>stream</code> parameter streams the progress as server-sent events
+ * till the job finished. The suspended requests don't hold any http thread,
+ * the in-process dispatched ones are answered right away instead.
+ * <p>
+ * The progress is queued per stream and written by a writer thread, so a slow
+ * client never holds the job. A stream whose queue exceeds
+ * <code>vimide.jobs.queueSize</code> frames is closed, the client could
+ * follow the job again by polling.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/job", asyncSupported = true)
+public class VimideJobServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(VimideJobServlet.class);
+
+    static final long MAX_WAIT_MILLIS = 60000L;
+
+    static final int QUEUE_SIZE = Integer.getInteger("vimide.jobs.queueSize",
+            512);
+
+    private final Set<Stream> streams = Sets
+            .newSetFromMap(new ConcurrentHashMap<Stream, Boolean>());
+    private transient ExecutorService writers;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#init()
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        writers = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("vimide-jobs-writer-%d").setDaemon(true)
+                .build());
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see javax.servlet.GenericServlet#destroy()
+     */
+    @Override
+    public void destroy() {
+        for (Stream stream : streams) {
+            stream.close();
+        }
+        if (null != writers)
+            writers.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final VimideJobManager manager = VimideJobManager.getInstance();
+        if (null == req.getParameter("id")) {
+            final List<Map<String, Object>> results = Lists.newArrayList();
+            for (VimideJob job : manager.getJobs()) {
+                results.add(job.toMap());
+            }
+            resp.writeAsJson(results);
+            return;
+        }
+
+        final VimideJob job = manager.getJob(req.getLongParameter("id", 0));
+        if (null == job) {
+            resp.sendError(404);
+            return;
+        }
+
+        if (0 != req.getIntParameter("cancel", 0)) {
+            job.cancel();
+            resp.writeAsJson(job.toMap());
+            return;
+        }
+
+        final boolean local = VimideHttpServer.isLocalDispatch(req);
+
+        if (0 != req.getIntParameter("stream", 0)) {
+            if (local) {
+                resp.sendError(403);
+                return;
+            }
+
+            resp.setContentType("text/event-stream");
+            resp.setHeader("Cache-Control", "no-cache");
+
+            final AsyncContext asyncContext = req.startAsync();
+            asyncContext.setTimeout(0);
+            final Stream stream = new Stream(asyncContext, resp.getWriter(),
+                    job);
+            streams.add(stream);
+            stream.open();
+            return;
+        }
+
+        final long wait = Math.min(MAX_WAIT_MILLIS,
+                req.getLongParameter("wait", 0));
+        final long version = req.getLongParameter("version", -1);
+        if (local || wait <= 0 || job.isFinished()
+                || job.getVersion() > version) {
+            resp.writeAsJson(job.toMap());
+            return;
+        }
+
+        final AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(wait);
+        new Poll(asyncContext, resp, job, version).open();
+    }
+
+    /**
+     * A suspended request answered on the job's next change or timeout.
+     */
+    static class Poll implements VimideJob.Listener, AsyncListener {
+
+        final AsyncContext asyncContext;
+        final VimideHttpServletResponse resp;
+        final VimideJob job;
+        final long version;
+        boolean answered;
+
+        Poll(AsyncContext asyncContext, VimideHttpServletResponse resp,
+                VimideJob job, long version) {
+            this.asyncContext = asyncContext;
+            this.resp = resp;
+            this.job = job;
+            this.version = version;
+        }
+
+        void open() {
+            asyncContext.addListener(this);
+            job.addListener(this);
+            // the job might have changed before listened.
+            jobChanged(job);
+        }
+
+        @Override
+        public void jobChanged(VimideJob job) {
+            if (job.isFinished() || job.getVersion() > version)
+                answer();
+        }
+
+        synchronized void answer() {
+            if (answered)
+                return;
+            answered = true;
+            job.removeListener(this);
+            try {
+                resp.writeAsJson(job.toMap());
+            } catch (final IOException e) {
+                LOGGER.debug("Unable to answer the job {}: {}", job.getId(),
+                        e.getMessage());
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            answer();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            job.removeListener(this);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            job.removeListener(this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // NOOP
+        }
+    }
+
+    /**
+     * A connected progress stream, closed once the job finished.
+     */
+    class Stream implements VimideJob.Listener, AsyncListener, Runnable {
+
+        final AsyncContext asyncContext;
+        final PrintWriter writer;
+        final VimideJob job;
+        final Deque<String> queue = new ArrayDeque<String>();
+        long lastVersion = -1;
+        boolean closed;
+        boolean draining;
+        boolean finishing;
+
+        Stream(AsyncContext asyncContext, PrintWriter writer, VimideJob job) {
+            this.asyncContext = asyncContext;
+            this.writer = writer;
+            this.job = job;
+        }
+
+        void open() {
+            asyncContext.addListener(this);
+            job.addListener(this);
+            jobChanged(job);
+        }
+
+        @Override
+        public synchronized void jobChanged(VimideJob job) {
+            if (closed || finishing)
+                return;
+
+            final Map<String, Object> snapshot = job.toMap();
+            final long version = (Long) snapshot.get("version");
+            final boolean finished = job.isFinished();
+            if (version <= lastVersion && !finished)
+                return;
+            lastVersion = version;
+
+            try {
+                enqueue(new StringBuilder().append("event: ")
+                        .append(finished ? "done" : "progress")
+                        .append("\ndata: ")
+                        .append(JsonUtil.getObjectMapper()
+                                .writeValueAsString(snapshot)).append("\n\n")
+                        .toString());
+            } catch (final IOException e) {
+                LOGGER.error("Unable to serialize the job {}: {}",
+                        new Object[] { job.getId(), e.getMessage(), e });
+            }
+
+            if (finished) {
+                // closed by the writer once the queued frames were written.
+                finishing = true;
+                if (!draining)
+                    close();
+            }
+        }
+
+        /**
+         * Queues the frame and schedules the writing, the lock is held.
+         */
+        void enqueue(String frame) {
+            if (closed)
+                return;
+            if (queue.size() >= QUEUE_SIZE) {
+                LOGGER.warn("Job stream is too slow, {} frames queued,"
+                        + " closing it.", queue.size());
+                close();
+                return;
+            }
+
+            queue.add(frame);
+            if (!draining) {
+                draining = true;
+                writers.execute(this);
+            }
+        }
+
+        /**
+         * Writes the queued frames on the writer thread.
+         */
+        @Override
+        public void run() {
+            final StringBuilder frames = new StringBuilder();
+            while (true) {
+                synchronized (this) {
+                    if (closed || queue.isEmpty()) {
+                        draining = false;
+                        if (finishing)
+                            close();
+                        return;
+                    }
+                    while (!queue.isEmpty())
+                        frames.append(queue.poll());
+                }
+
+                writer.write(frames.toString());
+                writer.flush();
+                frames.setLength(0);
+                if (writer.checkError()) {
+                    LOGGER.debug("Job stream disconnected.");
+                    close();
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            queue.clear();
+            job.removeListener(this);
+            streams.remove(this);
+            try {
+                asyncContext.complete();
+            } catch (final IllegalStateException ignore) {
+                // already completed by the container.
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // NOOP
+        }
+    }
+
+}
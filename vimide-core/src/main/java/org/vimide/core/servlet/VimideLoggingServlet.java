@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.apache.mina.core.session.IoEventType;
+import org.apache.mina.filter.logging.LogLevel;
+import org.vimide.core.server.VimideChannelServer;
+import org.vimide.core.server.filter.VimideLoggingFilter;
+
+import com.google.common.base.Strings;
+
+/**
+ * Reconfigures the logging filter of the vim channel at runtime and dumps
+ * the frames it captured.
+ * <p>
+ * The event parameters, e.g. <code>MESSAGE_RECEIVED=DEBUG</code>, set the
+ * log levels of the events, <code>sample</code> logs 1 in N messages,
+ * <code>capture</code> keeps the last N frames, <code>refresh=1</code>
+ * applies the level of the logger changed elsewhere at once, rather than
+ * at the next periodic refresh, and <code>dump=1</code> appends the
+ * captured frames as hexdumps.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/logging")
+public class VimideLoggingServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final VimideLoggingFilter filter = VimideChannelServer.getInstance()
+                .getLoggingFilter();
+
+        for (IoEventType type : VimideLoggingFilter.EVENTS) {
+            final String level = req.getParameter(type.name());
+            if (Strings.isNullOrEmpty(level))
+                continue;
+            try {
+                filter.setLogLevel(type,
+                        LogLevel.valueOf(level.trim().toUpperCase()));
+            } catch (final IllegalArgumentException e) {
+                resp.sendError(400, "Unknown log level: " + level);
+                return;
+            }
+        }
+
+        if (null != req.getParameter("sample"))
+            filter.setSampling(req.getIntParameter("sample", 1));
+        if (null != req.getParameter("capture"))
+            filter.setCapture(req.getIntParameter("capture", 0));
+        if (req.getIntParameter("refresh", 0) == 1)
+            filter.refresh();
+
+        final Map<String, Object> result = filter.toMap();
+        if (req.getIntParameter("dump", 0) == 1)
+            result.put("frames", filter.dump());
+
+        resp.writeAsJson(result);
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.vimide.core.metrics.EndpointMetrics;
+import org.vimide.core.metrics.LatencyHistogram;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.server.VimideChannelServer;
+import org.vimide.core.server.VimideSessionRegistry;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Exposes the {@link VimideMetrics} in the Prometheus text format, or as
+ * json with <code>format=json</code>.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/metrics")
+public class VimideMetricsServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final Map<String, EndpointMetrics> endpoints = VimideMetrics
+                .getInstance().getEndpoints();
+
+        final String format = req.getParameter("format");
+        if (VimideResponseCodecs.JSON.equals(format)
+                || VimideResponseCodecs.VIM.equals(format)) {
+            final List<Map<String, Object>> results = Lists.newArrayList();
+            for (EndpointMetrics endpoint : endpoints.values()) {
+                results.add(toMap(endpoint));
+            }
+            resp.writeAsJson(results);
+            return;
+        }
+
+        resp.setContentType("text/plain; version=0.0.4");
+        final PrintWriter writer = new PrintWriter(resp.getWriter()) {
+
+            /**
+             * The text format requires '\n', not the platform separator.
+             */
+            @Override
+            public void println() {
+                write('\n');
+            }
+        };
+
+        writer.println("# TYPE vimide_request_duration_seconds summary");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            writeSummary(writer, "vimide_request_duration_seconds",
+                    "endpoint=\"" + escape(endpoint.getName()) + "\"",
+                    endpoint.getLatency());
+        }
+
+        writer.println("# TYPE vimide_phase_duration_seconds summary");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            for (Map.Entry<String, LatencyHistogram> phase : endpoint
+                    .getPhases().entrySet()) {
+                writeSummary(writer, "vimide_phase_duration_seconds",
+                        "endpoint=\"" + escape(endpoint.getName())
+                                + "\",phase=\"" + escape(phase.getKey())
+                                + "\"", phase.getValue());
+            }
+        }
+
+        writer.println("# TYPE vimide_requests_in_flight gauge");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            writeSample(writer, "vimide_requests_in_flight", endpoint,
+                    endpoint.getInFlight());
+        }
+
+        writer.println("# TYPE vimide_request_errors_total counter");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            writeSample(writer, "vimide_request_errors_total", endpoint,
+                    endpoint.getErrors());
+        }
+
+        writer.println("# TYPE vimide_request_bytes_total counter");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            writeSample(writer, "vimide_request_bytes_total", endpoint,
+                    endpoint.getRequestBytes());
+        }
+
+        writer.println("# TYPE vimide_response_bytes_total counter");
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            writeSample(writer, "vimide_response_bytes_total", endpoint,
+                    endpoint.getResponseBytes());
+        }
+
+        final RequestCoalescer coalescer = RequestCoalescer.getInstance();
+        writer.println("# TYPE vimide_coalesced_computations_total counter");
+        writer.append("vimide_coalesced_computations_total ").println(
+                coalescer.getComputations());
+        writer.println("# TYPE vimide_coalesced_shared_total counter");
+        writer.append("vimide_coalesced_shared_total ").println(
+                coalescer.getShared());
+
+        final ResponseCache cache = ResponseCache.getInstance();
+        writer.println("# TYPE vimide_response_cache_hits_total counter");
+        writer.append("vimide_response_cache_hits_total ").println(
+                cache.getHits());
+        writer.println("# TYPE vimide_response_cache_misses_total counter");
+        writer.append("vimide_response_cache_misses_total ").println(
+                cache.getMisses());
+
+        final VimideSessionRegistry sessions = VimideChannelServer
+                .getInstance().getSessionFactory().getSessionRegistry();
+        writer.println("# TYPE vimide_channel_sessions gauge");
+        writer.append("vimide_channel_sessions ").println(sessions.size());
+        writer.println("# TYPE vimide_channel_sessions_reaped_total counter");
+        writer.append("vimide_channel_sessions_reaped_total ").println(
+                sessions.getReaped());
+        writer.println("# TYPE vimide_channel_retained_bytes gauge");
+        writer.append("vimide_channel_retained_bytes ").println(
+                sessions.getRetainedBytes());
+        writer.println("# TYPE vimide_channel_superseded gauge");
+        writer.append("vimide_channel_superseded ").println(
+                sessions.getSuperseded());
+
+        final RequestScheduler scheduler = RequestScheduler.getInstance();
+        writer.println("# TYPE vimide_scheduler_dropped_total counter");
+        writer.append("vimide_scheduler_dropped_total ").println(
+                scheduler.getDropped());
+        writer.println("# TYPE vimide_scheduler_yielded_total counter");
+        writer.append("vimide_scheduler_yielded_total ").println(
+                scheduler.getYielded());
+        writer.println("# TYPE vimide_scheduler_yielded_seconds_total counter");
+        writer.append("vimide_scheduler_yielded_seconds_total ").println(
+                scheduler.getYieldedMillis() / 1000.0);
+        writer.flush();
+    }
+
+    static void writeSummary(PrintWriter writer, String name, String labels,
+            LatencyHistogram histogram) {
+        for (double percentile : PERCENTILES) {
+            writer.append(name).append('{').append(labels)
+                    .append(",quantile=\"").append(
+                            String.valueOf(percentile / 100.0)).append("\"} ")
+                    .println(toSeconds(histogram
+                            .getValueAtPercentile(percentile)));
+        }
+        writer.append(name).append("_sum{").append(labels).append("} ")
+                .println(toSeconds(histogram.getSum()));
+        writer.append(name).append("_count{").append(labels).append("} ")
+                .println(histogram.getCount());
+    }
+
+    static void writeSample(PrintWriter writer, String name,
+            EndpointMetrics endpoint, long value) {
+        writer.append(name).append("{endpoint=\"")
+                .append(escape(endpoint.getName())).append("\"} ")
+                .println(value);
+    }
+
+    static Map<String, Object> toMap(EndpointMetrics endpoint) {
+        final Map<String, Object> result = Maps.newLinkedHashMap();
+        result.put("endpoint", endpoint.getName());
+        result.put("latency", toMap(endpoint.getLatency()));
+        result.put("inFlight", endpoint.getInFlight());
+        result.put("errors", endpoint.getErrors());
+        result.put("requestBytes", endpoint.getRequestBytes());
+        result.put("responseBytes", endpoint.getResponseBytes());
+
+        final Map<String, Object> phases = Maps.newLinkedHashMap();
+        for (Map.Entry<String, LatencyHistogram> phase : endpoint.getPhases()
+                .entrySet()) {
+            phases.put(phase.getKey(), toMap(phase.getValue()));
+        }
+        result.put("phases", phases);
+        return result;
+    }
+
+    /**
+     * The histogram in microseconds.
+     */
+    static Map<String, Object> toMap(LatencyHistogram histogram) {
+        final Map<String, Object> result = Maps.newLinkedHashMap();
+        result.put("count", histogram.getCount());
+        result.put("sum", histogram.getSum());
+        result.put("max", histogram.getMax());
+        for (double percentile : PERCENTILES) {
+            result.put("p" + String.valueOf(percentile).replace(".0", ""),
+                    histogram.getValueAtPercentile(percentile));
+        }
+        return result;
+    }
+
+    static double toSeconds(long micros) {
+        return micros / 1000000.0;
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+
+}
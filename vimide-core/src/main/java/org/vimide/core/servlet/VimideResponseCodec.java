@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+
+/**
+ * Encodes the result object of a servlet into the response, registered to
+ * the {@link VimideResponseCodecs}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public interface VimideResponseCodec {
+
+    /**
+     * Retrieves the name, selected by the <code>format</code> parameter.
+     * 
+     * @return the name.
+     */
+    String getName();
+
+    /**
+     * Retrieves the content type, matched against the Accept header.
+     * 
+     * @return the content type.
+     */
+    String getContentType();
+
+    /**
+     * Encodes the object into the response.
+     * 
+     * @param object the object.
+     * @param resp the response.
+     * @throws IOException
+     */
+    void encode(Object object, VimideHttpServletResponse resp)
+            throws IOException;
+
+}
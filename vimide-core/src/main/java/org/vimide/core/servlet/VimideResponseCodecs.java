@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the {@link VimideResponseCodec}s.
+ * <p>
+ * The codec of a response is selected by the <code>format</code> parameter
+ * first, by the Accept header then, falling back to the first candidate.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideResponseCodecs {
+
+    public static final String JSON = "json";
+    public static final String VIM = "vim";
+    public static final String XML = "xml";
+    public static final String HTML = "html";
+
+    /**
+     * A singleton holder.
+     */
+    private static class SingletonHolder {
+        static final VimideResponseCodecs instance = new VimideResponseCodecs();
+    }
+
+    /**
+     * Gets the singleton of {@link VimideResponseCodecs}.
+     * 
+     * @return singleton
+     */
+    public static VimideResponseCodecs getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final Map<String, VimideResponseCodec> codecs = Maps
+            .newConcurrentMap();
+
+    /**
+     * Creates an new VimideResponseCodecs instance.
+     */
+    private VimideResponseCodecs() {
+        super();
+
+        register(new JsonResponseCodec());
+        register(new VimResponseCodec());
+        register(new XmlResponseCodec(XML, "text/xml"));
+        register(new XmlResponseCodec(HTML, "text/html"));
+    }
+
+    /**
+     * Registers the codec, replacing the one of the same name.
+     * 
+     * @param codec the codec.
+     */
+    public void register(VimideResponseCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    /**
+     * Retrieves the codec by the specific name.
+     * 
+     * @param name the name.
+     * @return the codec, null if not registered.
+     */
+    public VimideResponseCodec get(String name) {
+        return null == name ? null : codecs.get(name);
+    }
+
+    /**
+     * Selects the codec for the specific request among the candidates.
+     * 
+     * @param req the request, could be null.
+     * @param candidates the names of the candidate codecs, the first one is
+     *            the default.
+     * @return the codec.
+     */
+    public VimideResponseCodec negotiate(HttpServletRequest req,
+            String... candidates) {
+        if (null != req) {
+            final String format = req.getParameter("format");
+            if (!Strings.isNullOrEmpty(format)) {
+                for (String candidate : candidates) {
+                    if (candidate.equals(format) && null != get(candidate))
+                        return get(candidate);
+                }
+            }
+
+            final String accept = req.getHeader("Accept");
+            if (!Strings.isNullOrEmpty(accept)) {
+                for (String range : accept.split(",")) {
+                    int index = range.indexOf(';');
+                    String type = (index < 0 ? range : range.substring(0,
+                            index)).trim();
+                    for (String candidate : candidates) {
+                        VimideResponseCodec codec = get(candidate);
+                        if (null != codec
+                                && codec.getContentType().equalsIgnoreCase(
+                                        type))
+                            return codec;
+                    }
+                }
+            }
+        }
+
+        return get(candidates[0]);
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.vimide.core.metrics.VimideTracer;
+import org.vimide.core.metrics.VimideTracer.Trace;
+
+import com.google.common.base.Strings;
+
+/**
+ * Downloads the kept traces as the Chrome trace-event json.
+ * <p>
+ * The <code>endpoint</code> parameter keeps the traces of the endpoint only,
+ * the <code>minMillis</code> parameter keeps the ones took longer only and
+ * the <code>last</code> parameter keeps the most recent ones only.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@WebServlet(urlPatterns = "/traces")
+public class VimideTraceServlet extends VimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final String endpoint = req.getParameter("endpoint");
+        final long minMicros = req.getLongParameter("minMillis", 0) * 1000L;
+        final int last = req.getIntParameter("last", 0);
+
+        final List<Trace> traces = VimideTracer.getInstance().getTraces();
+        for (Iterator<Trace> it = traces.iterator(); it.hasNext();) {
+            final Trace trace = it.next();
+            if ((!Strings.isNullOrEmpty(endpoint) && !endpoint.equals(trace
+                    .getName())) || trace.getDurationMicros() < minMicros)
+                it.remove();
+        }
+
+        resp.setHeader("Content-Disposition",
+                "inline; filename=\"vimide-trace.json\"");
+        resp.writeAsJson(VimideTracer.toTraceEvents(last > 0
+                && last < traces.size() ? traces.subList(traces.size() - last,
+                traces.size()) : traces));
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Xml document codec, writes the strings as is and marshals the other
+ * objects by JAXB. The contexts are cached per class and the marshallers,
+ * which aren't thread-safe, are pooled per class.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class XmlResponseCodec implements VimideResponseCodec {
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(XmlResponseCodec.class);
+
+    static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = Maps
+            .newConcurrentMap();
+    static final ConcurrentMap<Class<?>, Queue<Marshaller>> MARSHALLERS = Maps
+            .newConcurrentMap();
+
+    private final String name;
+    private final String contentType;
+
+    /**
+     * Creates an new XmlResponseCodec instance.
+     * 
+     * @param name the codec name.
+     * @param contentType the content type.
+     */
+    public XmlResponseCodec(String name, String contentType) {
+        this.name = name;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void encode(Object object, VimideHttpServletResponse resp)
+            throws IOException {
+        resp.setContentType(contentType);
+        final Writer writer = resp.getContentWriter();
+        if (object instanceof String)
+            writer.write((String) object);
+        else if (null != object) {
+            final Class<?> clazz = object.getClass();
+            Marshaller marshaller = null;
+            try {
+                marshaller = borrow(clazz);
+                marshaller.marshal(object, writer);
+            } catch (JAXBException e) {
+                LOGGER.error(
+                        "Error caught at writing ({}) document response: {}",
+                        new Object[] { contentType, e.getMessage() }, e);
+            } finally {
+                if (null != marshaller)
+                    MARSHALLERS.get(clazz).offer(marshaller);
+            }
+        }
+        writer.flush();
+    }
+
+    static Marshaller borrow(Class<?> clazz) throws JAXBException {
+        Queue<Marshaller> pool = MARSHALLERS.get(clazz);
+        if (null == pool) {
+            MARSHALLERS.putIfAbsent(clazz,
+                    new ConcurrentLinkedQueue<Marshaller>());
+            pool = MARSHALLERS.get(clazz);
+        }
+
+        final Marshaller marshaller = pool.poll();
+        if (null != marshaller)
+            return marshaller;
+
+        JAXBContext context = CONTEXTS.get(clazz);
+        if (null == context) {
+            CONTEXTS.putIfAbsent(clazz, JAXBContext.newInstance(clazz));
+            context = CONTEXTS.get(clazz);
+        }
+        return context.createMarshaller();
+    }
+
+}
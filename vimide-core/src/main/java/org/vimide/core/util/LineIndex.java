@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Line index of a text, which converts between the byte offset, the char
+ * offset and the line/column.
+ * <p>
+ * The line starts are kept in the primitive arrays, so every conversion is a
+ * binary search. The indexes of files are shared by a cache keyed by the path,
+ * validated by the modification time and the size, limited by
+ * <code>vimide.lineIndex.maxBytes</code>. Since an edit could keep both, the
+ * workspace invalidates the changed files by {@link #invalidate(File)}.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class LineIndex {
+
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final Cache<String, LineIndex> CACHE = CacheBuilder
+            .newBuilder()
+            .maximumWeight(
+                    Long.getLong("vimide.lineIndex.maxBytes",
+                            DEFAULT_MAX_BYTES))
+            .weigher(new Weigher<String, LineIndex>() {
+
+                @Override
+                public int weigh(String key, LineIndex value) {
+                    return value.weight();
+                }
+            }).build();
+
+    /**
+     * Gets the shared line index of the supplied file, the file was read again
+     * only if it was changed.
+     * 
+     * @param file the file.
+     * @return the line index.
+     * @throws IOException
+     */
+    public static LineIndex forFile(final File file) throws IOException {
+        final String key = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+
+        LineIndex index = CACHE.getIfPresent(key);
+        if (null != index && index.lastModified == lastModified
+                && index.size == length)
+            return index;
+
+        CACHE.invalidate(key);
+        try {
+            index = CACHE.get(key, new Callable<LineIndex>() {
+
+                @Override
+                public LineIndex call() throws Exception {
+                    return new LineIndex(readFile(file),
+                            Charset.defaultCharset(), lastModified, length);
+                }
+            });
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        return index;
+    }
+
+    /**
+     * Invalidates the shared line index of the supplied file.
+     * 
+     * @param file the file.
+     */
+    public static void invalidate(File file) {
+        CACHE.invalidate(file.getAbsolutePath());
+    }
+
+    /**
+     * Invalidates all the shared line indexes.
+     */
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Creates the line index of the supplied stream, the index isn't shared.
+     * 
+     * @param stream the input stream, it was closed after read.
+     * @return the line index.
+     * @throws IOException
+     */
+    public static LineIndex forStream(InputStream stream) throws IOException {
+        try {
+            return new LineIndex(IOUtils.toByteArray(stream),
+                    Charset.defaultCharset(), 0, -1);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Creates the line index of the supplied text.
+     * 
+     * @param contents the text.
+     * @return the line index.
+     */
+    public static LineIndex forString(String contents) {
+        return new LineIndex(contents, Charset.defaultCharset());
+    }
+
+    /**
+     * Reads the bytes of the file into the heap.
+     * <p>
+     * The whole file is decoded anyway, a memory mapping wouldn't save the
+     * copy but would pin the file until collected.
+     * </p>
+     * 
+     * @param file the file.
+     * @return the bytes.
+     * @throws IOException
+     */
+    static byte[] readFile(File file) throws IOException {
+        final FileInputStream fis = new FileInputStream(file);
+        try {
+            return IOUtils.toByteArray(fis);
+        } finally {
+            IOUtils.closeQuietly(fis);
+        }
+    }
+
+    private final String contents;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean singleByte;
+    private final int[] charStarts;
+    private final int[] byteStarts;
+    private final long lastModified;
+    private final long size;
+    private CharsetEncoder encoder;
+    private ByteBuffer encoded;
+
+    LineIndex(byte[] bytes, Charset charset, long lastModified, long size) {
+        this(ByteBuffer.wrap(bytes), charset, lastModified, size);
+    }
+
+    LineIndex(ByteBuffer bytes, Charset charset, long lastModified, long size) {
+        this(charset.decode(bytes).toString(), charset, lastModified, size);
+    }
+
+    LineIndex(String contents, Charset charset) {
+        this(contents, charset, 0, -1);
+    }
+
+    LineIndex(String contents, Charset charset, long lastModified, long size) {
+        this.contents = contents;
+        this.charset = charset;
+        this.utf8 = "UTF-8".equals(charset.name());
+        this.lastModified = lastModified;
+        this.size = size;
+
+        boolean ascii = true;
+        int lines = 1;
+        for (int i = 0; i < contents.length(); i++) {
+            final char c = contents.charAt(i);
+            ascii &= c < 0x80;
+            if ('\n' == c)
+                lines++;
+        }
+
+        charStarts = new int[lines];
+        byteStarts = new int[lines];
+        singleByte = ascii;
+
+        // every line is encoded once.
+        int line = 1;
+        int bytes = 0;
+        for (int i = 0; i < contents.length(); i++) {
+            if ('\n' == contents.charAt(i)) {
+                charStarts[line] = i + 1;
+                bytes += ascii ? charStarts[line] - charStarts[line - 1]
+                        : byteLength(charStarts[line - 1], charStarts[line]);
+                byteStarts[line] = bytes;
+                line++;
+            }
+        }
+    }
+
+    /**
+     * Gets the text contents.
+     * 
+     * @return the contents.
+     */
+    public String getContents() {
+        return contents;
+    }
+
+    /**
+     * Gets the count of the lines.
+     * 
+     * @return the line count.
+     */
+    public int getLineCount() {
+        return charStarts.length;
+    }
+
+    /**
+     * Converts the byte offset to the char offset.
+     * 
+     * @param byteOffset the byte offset.
+     * @return the char offset.
+     */
+    public int toCharOffset(int byteOffset) {
+        if (byteOffset <= 0)
+            return 0;
+        if (singleByte)
+            return Math.min(byteOffset, contents.length());
+
+        final int line = lineOf(byteStarts, byteOffset);
+        int bytes = byteStarts[line];
+        int offset = charStarts[line];
+        while (offset < contents.length() && bytes < byteOffset) {
+            final int next = offset
+                    + Character.charCount(contents.codePointAt(offset));
+            bytes += contents.charAt(offset) < 0x80 ? 1 : byteLength(offset,
+                    next);
+            offset = next;
+        }
+        return offset;
+    }
+
+    /**
+     * Converts the char offset to the byte offset.
+     * 
+     * @param charOffset the char offset.
+     * @return the byte offset.
+     */
+    public int toByteOffset(int charOffset) {
+        if (charOffset <= 0)
+            return 0;
+        charOffset = Math.min(charOffset, contents.length());
+        if (singleByte)
+            return charOffset;
+
+        final int line = lineOf(charStarts, charOffset);
+        return byteStarts[line]
+                + byteLength(charStarts[line], charOffset);
+    }
+
+    /**
+     * Gets the 1-based line and the 1-based byte column of the char offset.
+     * 
+     * @param charOffset the char offset.
+     * @return the line/column as int array.
+     */
+    public int[] getLineColumn(int charOffset) {
+        if (charOffset <= 0)
+            return new int[] { 1, 1 };
+        charOffset = Math.min(charOffset, contents.length());
+
+        final int line = lineOf(charStarts, charOffset);
+        final int column = singleByte ? charOffset - charStarts[line]
+                : byteLength(charStarts[line], charOffset);
+        return new int[] { line + 1, column + 1 };
+    }
+
+    /**
+     * Gets the char offset of the 1-based line and the 1-based byte column.
+     * 
+     * @param line the line.
+     * @param column the byte column.
+     * @return the char offset, or -1 if the line was illegal.
+     */
+    public int getOffset(int line, int column) {
+        if (line < 1 || line > charStarts.length)
+            return -1;
+
+        final int lineStart = byteStarts[line - 1];
+        final int lineEnd = line < byteStarts.length ? byteStarts[line]
+                : Integer.MAX_VALUE;
+        return toCharOffset(Math.min(lineStart + Math.max(0, column - 1),
+                lineEnd));
+    }
+
+    /**
+     * Finds the 0-based line of the offset by binary search.
+     * 
+     * @param starts the line starts.
+     * @param offset the offset.
+     * @return the line.
+     */
+    static int lineOf(int[] starts, int offset) {
+        final int i = Arrays.binarySearch(starts, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Gets the encoded length of the chars in the range.
+     */
+    private int byteLength(int start, int end) {
+        if (!utf8)
+            return encodedLength(start, end);
+
+        int bytes = 0;
+        for (int i = start; i < end; i++) {
+            final char c = contents.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(contents.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isHighSurrogate(c)
+                    || Character.isLowSurrogate(c)) {
+                // an unpaired surrogate is replaced as the encoder does.
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the encoded length of the chars in the range by the encoder of the
+     * charset, which is reused by every conversion.
+     */
+    private synchronized int encodedLength(int start, int end) {
+        if (null == encoder) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoded = ByteBuffer.allocate(1024);
+        }
+
+        final CharBuffer in = CharBuffer.wrap(contents, start, end);
+        int bytes = 0;
+        CoderResult result;
+        encoder.reset();
+        do {
+            result = encoder.encode(in, encoded, true);
+            bytes += encoded.position();
+            encoded.clear();
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(encoded);
+            bytes += encoded.position();
+            encoded.clear();
+        } while (result.isOverflow());
+        return bytes;
+    }
+
+    /**
+     * Weighs the memory of this index in bytes.
+     */
+    int weight() {
+        return contents.length() * 2 + charStarts.length * 8;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.apt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the servlet index written by {@link ServletIndexProcessor} and
+ * read back by {@link ServletIndexProcessor#readIndex(java.io.InputStream)}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class ServletIndexProcessorTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("vimide-index", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    private boolean compile(String... sources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (null == compiler)
+            return false;
+
+        final File out = new File(dir, "classes");
+        out.mkdirs();
+        final String[] args = new String[sources.length / 2 + 6];
+        args[0] = "-d";
+        args[1] = out.getPath();
+        args[2] = "-classpath";
+        args[3] = out.getPath() + File.pathSeparator
+                + System.getProperty("java.class.path");
+        args[4] = "-processor";
+        args[5] = ServletIndexProcessor.class.getName();
+        for (int i = 0; i < sources.length; i += 2) {
+            final File source = new File(dir, "src/" + sources[i]);
+            FileUtils.writeStringToFile(source, sources[i + 1], "UTF-8");
+            args[6 + i / 2] = source.getPath();
+        }
+        assertEquals(0, compiler.run(null, null, null, args));
+        return true;
+    }
+
+    private List<ServletIndexProcessor.Entry> readIndex() throws IOException {
+        return ServletIndexProcessor.readIndex(new FileInputStream(new File(
+                dir, "classes/" + ServletIndexProcessor.INDEX)));
+    }
+
+    @Test
+    public void testParse() {
+        assertNull(ServletIndexProcessor.Entry.parse("# Generated"));
+        assertNull(ServletIndexProcessor.Entry.parse("p.A\ttrue"));
+
+        final ServletIndexProcessor.Entry entry = ServletIndexProcessor.Entry
+                .parse("p.A$In\ttrue\t/a /b/*");
+        assertEquals("p.A$In", entry.getClassName());
+        assertTrue(entry.isAsyncSupported());
+        assertArrayEquals(new String[] { "/a", "/b/*" },
+                entry.getUrlPatterns());
+        assertEquals("p.A$In\ttrue\t/a /b/*", entry.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        if (!compile("p/A.java", "package p;\n"
+                + "@javax.servlet.annotation.WebServlet(urlPatterns = {"
+                + " \"/a\", \"/b\" }, asyncSupported = true)\n"
+                + "public class A {\n"
+                + "  @javax.servlet.annotation.WebServlet(\"/inner\")\n"
+                + "  public static class In {}\n"
+                + "  @javax.servlet.annotation.WebServlet(\"/abstract\")\n"
+                + "  public static abstract class Abstract {}\n" + "}\n"))
+            return;
+
+        final List<ServletIndexProcessor.Entry> entries = readIndex();
+        assertEquals(2, entries.size());
+        assertEquals("p.A", entries.get(0).getClassName());
+        assertTrue(entries.get(0).isAsyncSupported());
+        assertArrayEquals(new String[] { "/a", "/b" }, entries.get(0)
+                .getUrlPatterns());
+        assertEquals("p.A$In", entries.get(1).getClassName());
+        assertFalse(entries.get(1).isAsyncSupported());
+        assertArrayEquals(new String[] { "/inner" }, entries.get(1)
+                .getUrlPatterns());
+
+        // an incremental build keeps the entries of the classes untouched.
+        assertTrue(compile("p/B.java", "package p;\n"
+                + "@javax.servlet.annotation.WebServlet(\"/b\")\n"
+                + "public class B {}\n"));
+        final List<ServletIndexProcessor.Entry> merged = readIndex();
+        assertEquals(3, merged.size());
+        assertEquals("p.A", merged.get(0).getClassName());
+        assertEquals("p.A$In", merged.get(1).getClassName());
+        assertEquals("p.B", merged.get(2).getClassName());
+    }
+
+}
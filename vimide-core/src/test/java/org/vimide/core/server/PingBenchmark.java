@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.vimide.core.servlet.VimideHttpServlet;
+import org.vimide.core.servlet.VimideHttpServletRequest;
+import org.vimide.core.servlet.VimideHttpServletResponse;
+
+/**
+ * Compares the round-trip latency of <code>/ping</code> through the
+ * transports of the vimide server:
+ * <ul>
+ * <li>http over loopback tcp, a new connection per request as libxget does.</li>
+ * <li>the persistent vim channel.</li>
+ * <li>the in-process dispatching, i.e. the cost without any transport.</li>
+ * </ul>
+ * Runs as a plain java application, the iterations could be supplied as the
+ * first argument.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class PingBenchmark {
+
+    /**
+     * A trivial ping servlet, so only the transport is measured.
+     */
+    @WebServlet(urlPatterns = "/ping")
+    public static class PingServlet extends VimideHttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(VimideHttpServletRequest req,
+                VimideHttpServletResponse resp) throws ServletException,
+                IOException {
+            resp.writeAsJson(Arrays.asList("pong"));
+        }
+    }
+
+    interface Probe {
+        void ping(int id) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0])
+                : 2000;
+
+        final VimideHttpServer httpd = VimideHttpServer.getInstance();
+        httpd.start("localhost", 0);
+        httpd.registerServlet(PingServlet.class);
+
+        final VimideChannelServer channel = VimideChannelServer.getInstance();
+        channel.start("localhost", 0);
+
+        try {
+            final URL url = new URL("http://localhost:" + httpd.getLocalPort()
+                    + "/ping");
+            run("http (tcp)", iterations, new Probe() {
+
+                @Override
+                public void ping(int id) throws Exception {
+                    HttpURLConnection conn = (HttpURLConnection) url
+                            .openConnection();
+                    conn.setRequestProperty("Connection", "close");
+                    InputStream in = conn.getInputStream();
+                    try {
+                        final byte[] buf = new byte[512];
+                        int read;
+                        do {
+                            read = in.read(buf);
+                        } while (read != -1);
+                    } finally {
+                        in.close();
+                        conn.disconnect();
+                    }
+                }
+            });
+
+            final InetSocketAddress address = channel.getLocalAddress();
+            final Socket socket = new Socket("localhost", address.getPort());
+            socket.setTcpNoDelay(true);
+            final OutputStream out = socket.getOutputStream();
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            try {
+                run("vim channel", iterations, new Probe() {
+
+                    @Override
+                    public void ping(int id) throws Exception {
+                        out.write(("[" + id + ",\"/ping\"]").getBytes("UTF-8"));
+                        out.flush();
+                        if (null == reader.readLine())
+                            throw new IOException("Channel closed.");
+                    }
+                });
+            } finally {
+                socket.close();
+            }
+
+            run("in-process", iterations, new Probe() {
+
+                @Override
+                public void ping(int id) throws Exception {
+                    httpd.dispatch("GET", "/ping", null);
+                }
+            });
+        } finally {
+            channel.stop();
+            httpd.stop();
+        }
+    }
+
+    static void run(String name, int iterations, Probe probe)
+            throws Exception {
+        // warm up.
+        for (int i = 1; i <= Math.min(iterations, 500); i++)
+            probe.ping(i);
+
+        final long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            probe.ping(i + 1);
+            samples[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(samples);
+        long total = 0;
+        for (long sample : samples)
+            total += sample;
+
+        System.out.println(String.format(
+                "%-12s avg %8.1fus  p50 %8.1fus  p99 %8.1fus", name, total
+                        / (double) iterations / 1000d,
+                samples[iterations / 2] / 1000d,
+                samples[Math.min(iterations - 1, iterations * 99 / 100)] / 1000d));
+    }
+
+}
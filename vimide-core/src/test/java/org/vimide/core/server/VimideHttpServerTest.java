@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import org.vimide.core.server.VimideHttpServer.LocalResponse;
+
+/**
+ * Tests of the in-process dispatching helpers of {@link VimideHttpServer}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideHttpServerTest {
+
+    @Test
+    public void testEncodeUri() {
+        assertEquals("/ping", VimideHttpServer.encodeUri("/ping"));
+        assertEquals("/search?pattern=a%20b&file=%22x%22%23",
+                VimideHttpServer.encodeUri("/search?pattern=a b&file=\"x\"#"));
+        // the existing escapes are kept.
+        assertEquals("/search?pattern=a%20b",
+                VimideHttpServer.encodeUri("/search?pattern=a%20b"));
+        assertEquals("/complete?file=%E4%B8%AD.java%0A",
+                VimideHttpServer.encodeUri("/complete?file=\u4e2d.java\n"));
+    }
+
+    @Test
+    public void testParseResponse() {
+        final LocalResponse response = LocalResponse.parse(("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json; charset=UTF-8\r\n"
+                + "Content-Length: 7\r\n\r\n[\"\u4e2d\"]").getBytes(Charset
+                .forName("UTF-8")));
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json; charset=UTF-8",
+                response.getContentType());
+        assertEquals("7", response.getHeader("content-length"));
+        assertEquals("[\"\u4e2d\"]", response.getBody());
+    }
+
+    @Test
+    public void testParseTruncatedResponse() {
+        final LocalResponse response = LocalResponse
+                .parse("HTTP/1.1 200 OK\r\nContent-Ty".getBytes());
+        assertEquals(500, response.getStatus());
+        assertEquals("", response.getBody());
+    }
+
+}
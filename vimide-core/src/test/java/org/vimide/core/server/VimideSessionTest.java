@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.session.DummySession;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the suspension and resumption of {@link VimideSession} by its
+ * queued bytes.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideSessionTest {
+
+    private DummySession ioSession;
+    private VimideSession session;
+    private List<String> written;
+
+    @Before
+    public void setUp() {
+        ioSession = new DummySession();
+        session = new VimideSession(ioSession);
+        written = new CopyOnWriteArrayList<String>();
+    }
+
+    private VimideSession.Notification notification(final String name) {
+        return new VimideSession.Notification() {
+
+            @Override
+            public Object toMessage(int superseded) {
+                final String message = name + ":" + superseded;
+                written.add(message);
+                return message;
+            }
+        };
+    }
+
+    private void queue(long bytes) {
+        ioSession.increaseScheduledWriteBytes((int) bytes);
+    }
+
+    @Test
+    public void testWatermarks() {
+        assertTrue(session.isWritable());
+        queue(VimideSession.HIGH_WATER_BYTES - 1);
+        assertTrue(session.isWritable());
+        queue(1);
+        assertFalse(session.isWritable());
+
+        // resumed at the low watermark only.
+        queue(VimideSession.LOW_WATER_BYTES - VimideSession.HIGH_WATER_BYTES
+                + 1);
+        assertFalse(session.isWritable());
+        queue(-1);
+        assertTrue(session.isWritable());
+    }
+
+    @Test
+    public void testOfferDefersWhileSuspended() {
+        assertTrue(session.offer("problems", notification("a")));
+        queue(VimideSession.HIGH_WATER_BYTES);
+
+        assertFalse(session.offer("problems", notification("b")));
+        assertFalse(session.offer("build", notification("c")));
+        assertFalse(session.offer("problems", notification("d")));
+        assertEquals(1, session.getSuperseded());
+
+        // still suspended, nothing flushed.
+        session.onMessageSent();
+        assertEquals(1, written.size());
+
+        queue(-VimideSession.HIGH_WATER_BYTES);
+        session.onMessageSent();
+        assertEquals("a:0", written.get(0));
+        assertEquals("d:1", written.get(1));
+        assertEquals("c:0", written.get(2));
+        assertEquals(3, written.size());
+
+        assertTrue(session.offer("problems", notification("e")));
+        assertEquals("e:0", written.get(3));
+    }
+
+    @Test
+    public void testWriteWaitsUntilDrained() throws Exception {
+        queue(VimideSession.HIGH_WATER_BYTES);
+        assertFalse(session.isWritable());
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    session.write("message");
+                    done.countDown();
+                } catch (final Exception e) {
+                    // not counted down.
+                }
+            }
+        };
+        writer.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+        queue(-VimideSession.HIGH_WATER_BYTES);
+        session.onMessageSent();
+        assertTrue(done.await(VimideSession.WRITE_TIMEOUT_MILLIS,
+                TimeUnit.MILLISECONDS));
+        writer.join();
+    }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.server.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.SocketAddress;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.service.DefaultTransportMetadata;
+import org.apache.mina.core.session.IoSessionConfig;
+import org.apache.mina.filter.codec.ProtocolCodecSession;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderException;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the channel framing of {@link VimideProtocolCodecFactory}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideProtocolCodecFactoryTest {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ProtocolCodecSession session;
+    private ProtocolDecoder decoder;
+    private ProtocolEncoder encoder;
+
+    @Before
+    public void setUp() throws Exception {
+        session = new ProtocolCodecSession();
+        // a stream transport, the decoder cumulates the fragments.
+        session.setTransportMetadata(new DefaultTransportMetadata("vimide",
+                "test", false, true, SocketAddress.class,
+                IoSessionConfig.class, Object.class));
+
+        final VimideProtocolCodecFactory factory = new VimideProtocolCodecFactory();
+        decoder = factory.getDecoder(session);
+        encoder = factory.getEncoder(session);
+    }
+
+    void decode(byte[] bytes) throws Exception {
+        decoder.decode(session, IoBuffer.wrap(bytes), session
+                .getDecoderOutput());
+    }
+
+    void decode(String text) throws Exception {
+        decode(text.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testMessagesInOneFragment() throws Exception {
+        decode("[1,\"/ping\"]\n  [2,{\"uri\":\"/problems\"}]\n");
+
+        final Queue<Object> messages = session.getDecoderOutputQueue();
+        assertEquals(2, messages.size());
+        assertEquals("[1,\"/ping\"]", messages.poll());
+        assertEquals("[2,{\"uri\":\"/problems\"}]", messages.poll());
+        assertEquals(0, VimideProtocolCodecFactory.getBufferedBytes(session));
+    }
+
+    @Test
+    public void testMessageAcrossFragments() throws Exception {
+        decode("[3,{\"uri\":\"/pi");
+        assertTrue(session.getDecoderOutputQueue().isEmpty());
+        assertEquals(14, VimideProtocolCodecFactory.getBufferedBytes(session));
+
+        decode("ng\"}][4,");
+        assertEquals("[3,{\"uri\":\"/ping\"}]", session
+                .getDecoderOutputQueue().poll());
+
+        decode("\"/ping\"]");
+        assertEquals("[4,\"/ping\"]", session.getDecoderOutputQueue().poll());
+    }
+
+    @Test
+    public void testBracketsInStrings() throws Exception {
+        decode("[5,{\"body\":\"]} \\\"[{\\\\\"}]");
+        assertEquals("[5,{\"body\":\"]} \\\"[{\\\\\"}]", session
+                .getDecoderOutputQueue().poll());
+    }
+
+    @Test
+    public void testMultiByteCharacterAcrossFragments() throws Exception {
+        final byte[] bytes = "[6,\"\u4e2d\"]".getBytes(UTF_8);
+        decode(Arrays.copyOfRange(bytes, 0, 5));
+        decode(Arrays.copyOfRange(bytes, 5, bytes.length));
+        assertEquals("[6,\"\u4e2d\"]", session.getDecoderOutputQueue().poll());
+    }
+
+    @Test(expected = ProtocolDecoderException.class)
+    public void testIllegalMessage() throws Exception {
+        decode("ping\n");
+    }
+
+    @Test
+    public void testEncoderTerminatesWithNewline() throws Exception {
+        encoder.encode(session, "[1,\"pong\"]", session.getEncoderOutput());
+        encoder.encode(session, Arrays.asList(2, "\u4e2d"), session
+                .getEncoderOutput());
+
+        final Queue<Object> frames = session.getEncoderOutputQueue();
+        assertEquals("[1,\"pong\"]\n", ((IoBuffer) frames.poll())
+                .getString(UTF_8.newDecoder()));
+        assertEquals("[2,\"\u4e2d\"]\n", ((IoBuffer) frames.poll())
+                .getString(UTF_8.newDecoder()));
+    }
+
+}
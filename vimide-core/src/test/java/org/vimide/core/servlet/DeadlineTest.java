@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests of the parsing and the binding of {@link Deadline}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class DeadlineTest {
+
+    private static HttpServletRequest request(final String header,
+            final String parameter) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                DeadlineTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        final String name = method.getName();
+                        if ("getHeader".equals(name)
+                                && Deadline.HEADER.equals(args[0]))
+                            return header;
+                        if ("getParameter".equals(name)
+                                && Deadline.PARAMETER.equals(args[0]))
+                            return parameter;
+                        return null;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        Deadline.bind(null);
+    }
+
+    @Test
+    public void testParse() {
+        final long before = System.currentTimeMillis();
+        final Deadline deadline = Deadline.of(request(" 3000 ", null));
+        final long after = System.currentTimeMillis();
+        assertTrue(deadline.getExpiresAt() >= before + 3000);
+        assertTrue(deadline.getExpiresAt() <= after + 3000);
+        assertFalse(deadline.isExpired());
+
+        // the header is preferred to the parameter.
+        final Deadline header = Deadline.of(request("100", "100000"));
+        final Deadline parameter = Deadline.of(request(null, "100000"));
+        assertTrue(header.getExpiresAt() < parameter.getExpiresAt());
+    }
+
+    @Test
+    public void testParseIllegal() {
+        assertNull(Deadline.of(request(null, null)));
+        assertNull(Deadline.of(request("soon", null)));
+        assertNull(Deadline.of(request("0", null)));
+        assertNull(Deadline.of(request(null, "-5")));
+    }
+
+    @Test
+    public void testBind() {
+        final Deadline outer = new Deadline(Long.MAX_VALUE);
+        assertNull(Deadline.bind(outer));
+        final Deadline inner = new Deadline(0);
+        assertSame(outer, Deadline.bind(inner));
+        assertSame(inner, Deadline.current());
+        assertSame(inner, Deadline.bind(outer));
+        assertSame(outer, Deadline.bind(null));
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void testCheckAndLimit() {
+        // nothing bound.
+        Deadline.check();
+        assertEquals(1000, Deadline.limit(1000));
+
+        Deadline.bind(new Deadline(System.currentTimeMillis() + 60000));
+        Deadline.check();
+        assertEquals(1000, Deadline.limit(1000));
+        assertTrue(Deadline.limit(Long.MAX_VALUE) <= 60000);
+
+        Deadline.bind(new Deadline(System.currentTimeMillis() - 1));
+        assertEquals(0, Deadline.limit(1000));
+        try {
+            Deadline.check();
+            fail("the deadline passed");
+        } catch (final DeadlineExceededException e) {
+            // expected.
+        }
+    }
+
+}
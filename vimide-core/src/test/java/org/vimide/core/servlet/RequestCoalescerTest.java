@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+/**
+ * Tests of the request identity and the sharing of {@link RequestCoalescer}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class RequestCoalescerTest {
+
+    private static HttpServletRequest request(final String uri,
+            final String... params) {
+        final Map<String, String[]> map = new LinkedHashMap<String, String[]>();
+        for (int i = 0; i < params.length; i += 2) {
+            map.put(params[i], new String[] { params[i + 1] });
+        }
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                RequestCoalescerTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        final String name = method.getName();
+                        if ("getMethod".equals(name))
+                            return "GET";
+                        if ("getRequestURI".equals(name))
+                            return uri;
+                        if ("getParameterMap".equals(name))
+                            return map;
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testKeyOfSortsParameters() {
+        final RequestCoalescer coalescer = new RequestCoalescer();
+        final String[] files = { "file" };
+        assertEquals(
+                coalescer.keyOf(request("/a", "x", "1", "y", "2"), files),
+                coalescer.keyOf(request("/a", "y", "2", "x", "1"), files));
+        assertFalse(coalescer.keyOf(request("/a", "x", "1"), files).equals(
+                coalescer.keyOf(request("/b", "x", "1"), files)));
+    }
+
+    @Test
+    public void testKeyOfStampers() {
+        final RequestCoalescer coalescer = new RequestCoalescer();
+        final String[] files = { "file" };
+        final HttpServletRequest req = request("/complete", "file",
+                "Foo.java", "offset", "10");
+        final String unstamped = coalescer.keyOf(req, files);
+        final String unnamed = coalescer.keyOf(req, new String[0]);
+
+        // the buffer edited while the file on disk stays the same.
+        final AtomicReference<String> version = new AtomicReference<String>(
+                "1.1");
+        final RequestCoalescer.Stamper stamper = new RequestCoalescer.Stamper() {
+
+            @Override
+            public String stampOf(File file) {
+                return "Foo.java".equals(file.getPath()) ? version.get()
+                        : null;
+            }
+        };
+        coalescer.addStamper(stamper);
+        final String first = coalescer.keyOf(req, files);
+        assertEquals(first, coalescer.keyOf(req, files));
+        version.set("1.2");
+        final String second = coalescer.keyOf(req, files);
+        assertFalse(first.equals(second));
+        assertFalse(unstamped.equals(second));
+
+        // only the files named by the parameters are stamped.
+        assertEquals(unnamed, coalescer.keyOf(req, new String[0]));
+
+        coalescer.removeStamper(stamper);
+        assertEquals(unstamped, coalescer.keyOf(req, files));
+    }
+
+    @Test
+    public void testExecuteShares() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        final Thread first = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    coalescer.execute("k",
+                            new Callable<BufferedHttpServletResponse>() {
+
+                                @Override
+                                public BufferedHttpServletResponse call()
+                                        throws Exception {
+                                    entered.countDown();
+                                    release.await();
+                                    return null;
+                                }
+                            });
+                } catch (final Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        first.start();
+        entered.await();
+
+        final Thread second = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    coalescer.execute("k",
+                            new Callable<BufferedHttpServletResponse>() {
+
+                                @Override
+                                public BufferedHttpServletResponse call() {
+                                    throw new AssertionError("not shared");
+                                }
+                            });
+                } catch (final Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        second.start();
+        while (coalescer.getShared() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertNull(failure.get());
+        assertEquals(1, coalescer.getComputations());
+        assertEquals(1, coalescer.getShared());
+
+        // forgotten once done.
+        assertNull(coalescer.execute("k",
+                new Callable<BufferedHttpServletResponse>() {
+
+                    @Override
+                    public BufferedHttpServletResponse call() {
+                        return null;
+                    }
+                }));
+        assertEquals(2, coalescer.getComputations());
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.vimide.core.servlet.Priority.Level;
+
+/**
+ * Tests of the stale and yielding logic of {@link RequestScheduler}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class RequestSchedulerTest {
+
+    @Priority(Level.INTERACTIVE)
+    static class Interactive {
+    }
+
+    @Priority(value = Level.INTERACTIVE, supersede = false)
+    static class Sequential {
+    }
+
+    private static Priority priorityOf(Class<?> type) {
+        return type.getAnnotation(Priority.class);
+    }
+
+    private static HttpServletRequest request(final String client,
+            final String file) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                RequestSchedulerTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        final String name = method.getName();
+                        if ("getServletPath".equals(name))
+                            return "/javaComplete";
+                        if ("getParameter".equals(name))
+                            return "client".equals(args[0]) ? client
+                                    : "file".equals(args[0]) ? file : null;
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testStale() {
+        final RequestScheduler scheduler = new RequestScheduler();
+        final RequestScheduler.Ticket first = scheduler.admit(
+                request("1", "A.java"), priorityOf(Interactive.class));
+        final RequestScheduler.Ticket other = scheduler.admit(
+                request("2", "A.java"), priorityOf(Interactive.class));
+        assertFalse(first.isStale());
+
+        final RequestScheduler.Ticket second = scheduler.admit(
+                request("1", "A.java"), priorityOf(Interactive.class));
+        assertTrue(first.isStale());
+        assertFalse(second.isStale());
+        // other clients and buffers aren't superseded.
+        assertFalse(other.isStale());
+
+        // the ones depending on each other never are.
+        final RequestScheduler.Ticket sequential = scheduler.admit(
+                request("1", "A.java"), priorityOf(Sequential.class));
+        final RequestScheduler.Ticket next = scheduler.admit(
+                request("1", "A.java"), priorityOf(Sequential.class));
+        assertFalse(sequential.isStale());
+        assertSame(Level.INTERACTIVE, sequential.getLevel());
+
+        for (RequestScheduler.Ticket ticket : new RequestScheduler.Ticket[] {
+                next, sequential, second, other, first }) {
+            scheduler.release(ticket);
+        }
+        assertNull(RequestScheduler.current());
+    }
+
+    @Test
+    public void testReleaseRestoresCurrent() {
+        final RequestScheduler scheduler = new RequestScheduler();
+        final RequestScheduler.Ticket outer = scheduler
+                .admit(Level.BACKGROUND);
+        final RequestScheduler.Ticket inner = scheduler
+                .admit(Level.INTERACTIVE);
+        assertSame(inner, RequestScheduler.current());
+        assertTrue(scheduler.isBusy(Level.BACKGROUND));
+        assertFalse(scheduler.isBusy(Level.INTERACTIVE));
+
+        scheduler.release(inner);
+        assertSame(outer, RequestScheduler.current());
+        assertFalse(scheduler.isBusy(Level.BACKGROUND));
+        scheduler.release(outer);
+        assertNull(RequestScheduler.current());
+    }
+
+    @Test
+    public void testYieldIsBounded() {
+        final RequestScheduler scheduler = new RequestScheduler();
+        final RequestScheduler.Ticket ticket = scheduler
+                .admit(Level.NEAR_INTERACTIVE);
+        try {
+            final long start = System.currentTimeMillis();
+            scheduler.yield(Level.BACKGROUND);
+            final long waited = System.currentTimeMillis() - start;
+            assertTrue(waited >= RequestScheduler.YIELD_MILLIS - 50);
+            assertEquals(1, scheduler.getYielded());
+
+            // the interactive ones never wait.
+            scheduler.yield(Level.INTERACTIVE);
+            assertEquals(1, scheduler.getYielded());
+        } finally {
+            scheduler.release(ticket);
+        }
+    }
+
+    @Test
+    public void testYieldEndsOnRelease() throws Exception {
+        final RequestScheduler scheduler = new RequestScheduler();
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final Thread higher = new Thread() {
+
+            @Override
+            public void run() {
+                final RequestScheduler.Ticket ticket = scheduler
+                        .admit(Level.INTERACTIVE);
+                admitted.countDown();
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                    // released at once.
+                }
+                scheduler.release(ticket);
+            }
+        };
+        higher.start();
+        admitted.await();
+
+        final long start = System.currentTimeMillis();
+        scheduler.yield(Level.NEAR_INTERACTIVE);
+        final long waited = System.currentTimeMillis() - start;
+        assertTrue(waited < RequestScheduler.YIELD_MILLIS);
+        assertFalse(scheduler.isBusy(Level.BACKGROUND));
+        higher.join();
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests of the stamps and the ETags of {@link ResponseCache}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class ResponseCacheTest {
+
+    private static final List<String[]> NO_HEADERS = Collections.emptyList();
+
+    private static ResponseCache.Entry entry(long stamp, int status,
+            String body) {
+        return new ResponseCache.Entry(stamp, status, null,
+                "application/json", "UTF-8", NO_HEADERS,
+                body.getBytes(Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void testStamp() {
+        final ResponseCache cache = new ResponseCache(1024);
+        final ResponseCache.Entry entry = entry(cache.getStamp(), 200, "[1]");
+        assertSame(entry, cache.put("k", entry));
+        assertSame(entry, cache.get("k"));
+
+        // stale once the workspace changed.
+        cache.invalidate();
+        assertNull(cache.get("k"));
+
+        // the ones computed before the change aren't kept.
+        cache.put("k", entry(cache.getStamp() - 1, 200, "[1]"));
+        assertNull(cache.get("k"));
+
+        // neither the unsuccessful ones.
+        cache.put("e", entry(cache.getStamp(), 500, ""));
+        assertNull(cache.get("e"));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testWeight() {
+        final ResponseCache cache = new ResponseCache(1024);
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2048; i++) {
+            body.append('x');
+        }
+        cache.put("k", entry(cache.getStamp(), 200, body.toString()));
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    public void testETag() {
+        final ResponseCache.Entry entry = entry(0, 200, "[1]");
+        assertEquals(entry.etag, entry(1, 200, "[1]").etag);
+        assertFalse(entry.etag.equals(entry(0, 200, "[2]").etag));
+
+        assertFalse(entry.matches(null));
+        assertFalse(entry.matches("\"0\""));
+        assertTrue(entry.matches(entry.etag));
+        assertTrue(entry.matches("W/" + entry.etag));
+        assertTrue(entry.matches("\"0\", " + entry.etag));
+        assertTrue(entry.matches("*"));
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        final ResponseCache.Entry entry = entry(0, 200, "[1]");
+        final Map<String, Object> written = Maps.newHashMap();
+        final HttpServletResponse resp = (HttpServletResponse) Proxy
+                .newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { HttpServletResponse.class },
+                        new InvocationHandler() {
+
+                            @Override
+                            public Object invoke(Object proxy, Method method,
+                                    Object[] args) {
+                                if ("setHeader".equals(method.getName()))
+                                    written.put((String) args[0], args[1]);
+                                else if ("setStatus".equals(method.getName()))
+                                    written.put("status", args[0]);
+                                else
+                                    throw new AssertionError(method.getName());
+                                return null;
+                            }
+                        });
+        final HttpServletRequest req = (HttpServletRequest) Proxy
+                .newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { HttpServletRequest.class },
+                        new InvocationHandler() {
+
+                            @Override
+                            public Object invoke(Object proxy, Method method,
+                                    Object[] args) {
+                                final String name = (String) args[0];
+                                return "If-None-Match".equals(name) ? entry.etag
+                                        : null;
+                            }
+                        });
+
+        entry.writeTo(req, resp);
+        assertEquals(304, written.get("status"));
+        assertEquals(entry.etag, written.get("ETag"));
+        assertEquals("no-cache", written.get("Cache-Control"));
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.servlet;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests of the json to vim translation of {@link VimLiteralWriter}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimLiteralWriterTest {
+
+    private static String translate(String... chunks) throws IOException {
+        final StringWriter out = new StringWriter();
+        final VimLiteralWriter writer = new VimLiteralWriter(out);
+        for (String chunk : chunks) {
+            writer.write(chunk);
+        }
+        writer.close();
+        return out.toString();
+    }
+
+    @Test
+    public void testBareWords() throws IOException {
+        assertEquals("{\"a\":1,\"b\":0,\"c\":'',\"d\":[1.0E10,-0.0]}",
+                translate("{\"a\":true,\"b\":false,\"c\":null,"
+                        + "\"d\":[1.0E10,-Infinity]}"));
+    }
+
+    @Test
+    public void testStringsUntouched() throws IOException {
+        assertEquals("[\"true\",\"a\\\"null\\\\\",\"\\u0001\"]",
+                translate("[\"true\",\"a\\\"null\\\\\",\"\\u0001\"]"));
+    }
+
+    @Test
+    public void testSplitWrites() throws IOException {
+        assertEquals("[1,0,'']", translate("[tr", "ue,f", "alse,nu", "ll]"));
+        assertEquals("0", translate("fal", "se"));
+        assertEquals("[\"a\\\"\",1]", translate("[\"a\\", "\"\",", "true]"));
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.core.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link LineIndex}.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class LineIndexTest {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testAsciiOffsets() {
+        final LineIndex index = new LineIndex("ab\ncd\n\nef", UTF8);
+        assertEquals(4, index.getLineCount());
+        assertEquals(4, index.toCharOffset(4));
+        assertEquals(4, index.toByteOffset(4));
+        assertArrayEquals(new int[] { 1, 1 }, index.getLineColumn(0));
+        assertArrayEquals(new int[] { 2, 2 }, index.getLineColumn(4));
+        assertArrayEquals(new int[] { 3, 1 }, index.getLineColumn(6));
+        assertArrayEquals(new int[] { 4, 2 }, index.getLineColumn(8));
+        assertEquals(4, index.getOffset(2, 2));
+        assertEquals(-1, index.getOffset(5, 1));
+    }
+
+    @Test
+    public void testMultiByteOffsets() {
+        // U+00E9 is two bytes, U+4E2D three, the surrogate pair four.
+        final String text = "a\u00e9\n\u4e2d\ud83d\ude00b\nc";
+        final LineIndex index = new LineIndex(text, UTF8);
+
+        assertEquals(2, index.toCharOffset(3));
+        assertEquals(3, index.toByteOffset(2));
+        assertEquals(4, index.toCharOffset(7));
+        assertEquals(7, index.toByteOffset(4));
+        assertEquals(6, index.toCharOffset(11));
+        assertEquals(11, index.toByteOffset(6));
+
+        assertArrayEquals(new int[] { 2, 4 }, index.getLineColumn(4));
+        assertArrayEquals(new int[] { 2, 8 }, index.getLineColumn(6));
+        assertArrayEquals(new int[] { 3, 1 }, index.getLineColumn(8));
+        assertEquals(6, index.getOffset(2, 8));
+        assertEquals(8, index.getOffset(3, 1));
+    }
+
+    @Test
+    public void testLegacyCharsetOffsets() {
+        // U+4E2D is two bytes in GBK, the first line overflows the buffer.
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            text.append('\u4e2d');
+        text.append("\na\u4e2db");
+        final LineIndex index = new LineIndex(text.toString(),
+                Charset.forName("GBK"));
+
+        assertEquals(1001, index.toCharOffset(2001));
+        assertEquals(2001, index.toByteOffset(1001));
+        assertEquals(1003, index.toCharOffset(2004));
+        assertEquals(2004, index.toByteOffset(1003));
+        assertArrayEquals(new int[] { 1, 3 }, index.getLineColumn(1));
+        assertArrayEquals(new int[] { 2, 4 }, index.getLineColumn(1003));
+        assertEquals(1003, index.getOffset(2, 4));
+    }
+
+    @Test
+    public void testOffsetsAreClamped() {
+        final LineIndex index = new LineIndex("ab\nc", UTF8);
+        assertEquals(0, index.toCharOffset(-1));
+        assertEquals(4, index.toCharOffset(100));
+        assertEquals(4, index.toByteOffset(100));
+        assertArrayEquals(new int[] { 2, 2 }, index.getLineColumn(100));
+    }
+
+    @Test
+    public void testFileIndexIsSharedUntilInvalidated() throws IOException {
+        final File file = File.createTempFile("lineIndex", ".txt");
+        try {
+            write(file, "one\ntwo\n");
+            final LineIndex index = LineIndex.forFile(file);
+            assertSame(index, LineIndex.forFile(file));
+
+            // an edit keeping the size and the modification time.
+            final long lastModified = file.lastModified();
+            write(file, "ONE\ntwo\n");
+            file.setLastModified(lastModified);
+            assertSame(index, LineIndex.forFile(file));
+
+            LineIndex.invalidate(file);
+            final LineIndex reloaded = LineIndex.forFile(file);
+            assertNotSame(index, reloaded);
+            assertEquals("ONE\ntwo\n", reloaded.getContents());
+        } finally {
+            LineIndex.invalidate(file);
+            file.delete();
+        }
+    }
+
+    static void write(File file, String contents) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes(Charset.defaultCharset()));
+        } finally {
+            out.close();
+        }
+    }
+
+}
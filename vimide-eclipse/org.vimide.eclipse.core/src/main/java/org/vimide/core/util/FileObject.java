@@ -22,31 +22,28 @@
  */
 package org.vimide.core.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
-import java.util.StringTokenizer;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
-import com.google.common.collect.Lists;
-
 /**
  * File object to provide the interface of utilities.
+ * <p>
+ * The conversions are backed by the {@link LineIndex}, which is shared
+ * between the file objects of the same unchanged file.
+ * </p>
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
 public class FileObject {
 
+    private File file;
     private InputStream stream;
-    private Integer[] offsets;
-    private String[] multiByteLines;
-    private String contents;
+    private LineIndex index;
 
     /**
      * Creates an new FileObject instance.
@@ -74,7 +71,10 @@ public class FileObject {
      * @throws FileNotFoundException
      */
     public FileObject(File file) throws FileNotFoundException {
-        this(new FileInputStream(file));
+        super();
+        if (null == file || !file.isFile())
+            throw new FileNotFoundException(String.valueOf(file));
+        this.file = file;
     }
 
     /**
@@ -97,63 +97,35 @@ public class FileObject {
      */
     public String getContents() {
         try {
-            if (null == contents && null != stream)
-                return IOUtils.toString(stream);
+            return getLineIndex().getContents();
         } catch (final IOException e) {
             e.printStackTrace();
-        } finally {
-            if (null != stream)
-                IOUtils.closeQuietly(stream);
         }
         return StringUtils.EMPTY;
     }
 
+    /**
+     * Gets the line index of the file object.
+     * 
+     * @return the line index.
+     * @throws IOException
+     */
+    public LineIndex getLineIndex() throws IOException {
+        if (null == index)
+            compileOffsets();
+        return index;
+    }
+
     /**
      * Parses the offsets list.
      * 
      * @throws IOException
      */
     protected void compileOffsets() throws IOException {
-        List<Integer> lines = Lists.newArrayList(0);
-        List<String> byteLines = Lists.newArrayList(StringUtils.EMPTY);
-        String content = getContents();
-        String lineDelimiter = "\n";
-
-        int offset = 0;
-        String line = null;
-        String cacheLine = null;
-        StringTokenizer tokenizer = new StringTokenizer(content, lineDelimiter,
-                true);
-        boolean newLine = false;
-        while (tokenizer.hasMoreTokens()) {
-            line = tokenizer.nextToken();
-
-            if (null != cacheLine && !cacheLine.equals(lineDelimiter)
-                    && line.equals(lineDelimiter)) {
-                // the new line end with previous line.
-                newLine = true;
-            } else if (null != cacheLine && cacheLine.equals(lineDelimiter)
-                    && line.equals(lineDelimiter)) {
-                newLine = true;
-            } else {
-                newLine = false;
-            }
-
-            cacheLine = line;
-            offset += line.length();
-
-            if (newLine) {
-                lines.add(new Integer(offset));
-                if (line.length() != line.getBytes().length) {
-                    byteLines.add(line);
-                } else {
-                    byteLines.add(null);
-                }
-            }
-        }
-
-        offsets = lines.toArray(new Integer[lines.size()]);
-        multiByteLines = byteLines.toArray(new String[byteLines.size()]);
+        if (null != file)
+            index = LineIndex.forFile(file);
+        else
+            index = LineIndex.forStream(stream);
     }
 
     /**
@@ -163,41 +135,11 @@ public class FileObject {
      * @return the line/column as int array
      */
     public int[] getLineColumn(int offset) {
-        // performs the lazy compile.
-        if (null == offsets) {
-            try {
-                compileOffsets();
-            } catch (IOException e) {
-            }
-        }
-
-        // return the minimize value if the offset was illegal.
-        if (offset <= 0)
+        try {
+            return getLineIndex().getLineColumn(offset);
+        } catch (final IOException e) {
             return new int[] { 1, 1 };
-
-        // r/b filtering the offset index in the compile offsets.
-        int bot = -1;
-        int top = offsets.length;
-
-        while (top - bot > 1) {
-            int mid = (top + bot) / 2;
-            if (offsets[mid].intValue() < offset) {
-                bot = mid;
-            } else {
-                top = mid;
-            }
         }
-
-        // resolves the line and column.
-        int line = top;
-        int column = 1 + offset - offsets[top - 1].intValue();
-        String value = multiByteLines.length > line ? multiByteLines[line]
-                : null;
-        if (value != null) {
-            column = value.substring(0, column).getBytes().length;
-        }
-
-        return new int[] { line, column };
     }
 
     /**
@@ -208,27 +150,10 @@ public class FileObject {
      */
     public int getOffset(int[] linecol) {
         if (null != linecol && linecol.length == 2) {
-            int line = linecol[0];
-            int column = linecol[1];
-
-            if (null == offsets) {
-                try {
-                    compileOffsets();
-                } catch (IOException e) {
-                }
-            }
-
-            if (line < 0 || line > offsets.length) {
-                return -1;
-            } else if (line == offsets.length) {
-                if (multiByteLines[line - 1].getBytes().length > column)
-                    return -1;
+            try {
+                return getLineIndex().getOffset(linecol[0], linecol[1]);
+            } catch (final IOException e) {
             }
-
-            int offset = offsets[line - 1].intValue();
-            offset += multiByteLines[line - 1].getBytes().length;
-
-            return offset;
         }
         return -1;
     }
@@ -267,17 +192,10 @@ public class FileObject {
      */
     public int getCharLength(int bytes) {
         if (bytes > 0) {
-            byte[] buffer = getContents().getBytes();
-            ByteArrayOutputStream outStream = null;
-
             try {
-                outStream = new ByteArrayOutputStream();
-                outStream.write(buffer, 0, bytes);
-
-                return outStream.toString().length();
-            } finally {
-                if (null != outStream)
-                    IOUtils.closeQuietly(outStream);
+                return getLineIndex().toCharOffset(bytes);
+            } catch (final IOException e) {
+                e.printStackTrace();
             }
         }
         return 0;
@@ -285,8 +203,6 @@ public class FileObject {
 
     @Override
     public String toString() {
-        String content = getContents();
-        content = content.substring(0, 20) + "...";
-        return content;
+        return StringUtils.abbreviate(getContents(), 23);
     }
 }
@@ -23,16 +23,27 @@
 package org.vimide.core.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
+import org.vimide.core.metrics.VimideTracer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Represents a position within a file as denoted by an offset and length.
@@ -43,50 +54,151 @@ public class Position implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Result sets bigger than this are resolved by file in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private static final ExecutorService EXECUTOR = Executors
+            .newFixedThreadPool(Math.max(2, Runtime.getRuntime()
+                    .availableProcessors()), new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("vimide-position-%d")
+                    .build());
+
     public static Position fromOffset(String fileName, String message,
             int offset, int length) {
         int line = 1;
         int column = 1;
 
+        final int span = VimideTracer.enter("Position.fromOffset");
         try {
-            File file = new File(fileName);
-            URL fileUrl = null;
-            InputStream stream = null;
-            
-            if (!file.exists()) {
-                if (0 < file.getAbsolutePath().indexOf('!')) {
-                    // URL ?
-                    try {
-                        fileUrl = new URL(fileName);
-                    } catch (MalformedURLException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-            
-            if (null != fileUrl) {
-                try {
-                    stream = fileUrl.openStream();
-                } catch (IOException e) {
-                }
-            }
-            
-            if (null == stream) {
-                stream = new FileInputStream(file);
-            }
-            
-            int[] pos = new FileObject(stream)
-                    .getLineColumn(offset);
+            int[] pos = getLineIndex(fileName).getLineColumn(offset);
             if (null != pos) {
                 line = pos[0];
                 column = pos[1];
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            VimideTracer.exit(span);
         }
         return new Position(fileName, message, offset, length, line, column);
     }
 
+    /**
+     * Resolves the positions of the supplied requests in batch, each file is
+     * read only once. The positions are returned in the order of the
+     * requests, a position of the unreadable file is located at 1:1.
+     * 
+     * @param requests the requests.
+     * @return the positions.
+     */
+    public static List<Position> fromOffsets(List<Request> requests) {
+        final int span = VimideTracer.enter("Position.fromOffsets");
+        try {
+            return resolveOffsets(requests);
+        } finally {
+            VimideTracer.exit(span);
+        }
+    }
+
+    static List<Position> resolveOffsets(final List<Request> requests) {
+        final Position[] results = new Position[requests.size()];
+
+        // groups the requests by file.
+        final Map<String, List<Integer>> groups = Maps.newLinkedHashMap();
+        for (int i = 0; i < requests.size(); i++) {
+            final String fileName = requests.get(i).fileName;
+            List<Integer> group = groups.get(fileName);
+            if (null == group) {
+                group = Lists.newArrayList();
+                groups.put(fileName, group);
+            }
+            group.add(i);
+        }
+
+        if (groups.size() > 1 && requests.size() >= PARALLEL_THRESHOLD) {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (final Map.Entry<String, List<Integer>> group : groups
+                    .entrySet()) {
+                futures.add(EXECUTOR.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        resolve(group.getKey(), group.getValue(), requests,
+                                results);
+                    }
+                }));
+            }
+
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (final ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        } else {
+            for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+                resolve(group.getKey(), group.getValue(), requests, results);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Resolves the positions of the same file.
+     */
+    static void resolve(String fileName, List<Integer> group,
+            List<Request> requests, Position[] results) {
+        LineIndex index = null;
+        try {
+            index = getLineIndex(fileName);
+        } catch (final IOException ignore) {
+        }
+
+        for (int i : group) {
+            final Request request = requests.get(i);
+            final int[] pos = null != index ? index
+                    .getLineColumn(request.offset) : new int[] { 1, 1 };
+            results[i] = new Position(fileName, request.message,
+                    request.offset, request.length, pos[0], pos[1]);
+        }
+    }
+
+    /**
+     * Gets the line index of the supplied file name, which may be an url of
+     * the jar/zip entry.
+     * 
+     * @param fileName the file name.
+     * @return the line index.
+     * @throws IOException
+     */
+    static LineIndex getLineIndex(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists() && 0 < file.getAbsolutePath().indexOf('!')) {
+            // URL ?
+            InputStream stream = null;
+            try {
+                stream = new URL(fileName).openStream();
+            } catch (MalformedURLException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+            }
+
+            if (null != stream)
+                return LineIndex.forStream(stream);
+        }
+
+        if (!file.isFile())
+            throw new FileNotFoundException(fileName);
+        return LineIndex.forFile(file);
+    }
+
     public static Position fromLineColumn(String fileName, String message,
             int line, int column) {
         return new Position(fileName, message, 0, 0, line, column);
@@ -104,6 +216,7 @@ public class Position implements Serializable {
         this.filename = filename;
         this.message = null != message ? message : StringUtils.EMPTY;
         this.offset = offset;
+        this.length = length;
         this.line = line;
         this.column = column;
     }
@@ -171,6 +284,35 @@ public class Position implements Serializable {
         return message;
     }
 
+    /**
+     * Request of the position resolving in batch.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    public static class Request {
+
+        final String fileName;
+        final String message;
+        final int offset;
+        final int length;
+
+        /**
+         * Creates an new Request instance.
+         * 
+         * @param fileName the file name or url.
+         * @param message the message.
+         * @param offset the char offset.
+         * @param length the length.
+         */
+        public Request(String fileName, String message, int offset,
+                int length) {
+            this.fileName = fileName;
+            this.message = message;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
     /**
      * {@inheritDoc}
      * 
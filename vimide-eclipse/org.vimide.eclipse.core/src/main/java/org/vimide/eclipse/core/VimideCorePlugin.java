@@ -22,28 +22,26 @@
  */
 package org.vimide.eclipse.core;
 
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideChannelServer;
 import org.vimide.core.server.VimideHttpServer;
-import org.vimide.eclipse.core.servlet.JobsServlet;
-import org.vimide.eclipse.core.servlet.PingServlet;
-import org.vimide.eclipse.core.servlet.ShellServlet;
-import org.vimide.eclipse.core.servlet.TestServlet;
-import org.vimide.eclipse.core.servlet.WorkspaceDirServlet;
-import org.vimide.eclipse.core.servlet.problem.ProblemListServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectBuildServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectByResourceServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectCloseServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectDeleteServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectImportServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectInfoServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectListServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectNamesServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectOpenServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectRefreshFileServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectRefreshServlet;
-import org.vimide.eclipse.core.servlet.project.ProjectsServlet;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.server.VimideJobManager;
+import org.vimide.core.servlet.VimideBatchServlet;
+import org.vimide.core.servlet.VimideEventStreamServlet;
+import org.vimide.core.servlet.VimideJobServlet;
+import org.vimide.core.servlet.VimideLoggingServlet;
+import org.vimide.core.servlet.VimideMetricsServlet;
+import org.vimide.core.servlet.VimideTraceServlet;
+import org.vimide.eclipse.core.service.LineIndexInvalidator;
+import org.vimide.eclipse.core.service.ProblemMarkerIndex;
+import org.vimide.eclipse.core.service.WarmUpService;
+import org.vimide.eclipse.core.service.WorkspaceEventPublisher;
 
 /**
  * Core Plugin.
@@ -58,6 +56,13 @@ public class VimideCorePlugin extends VimidePlugin {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(VimideCorePlugin.class.getName());
 
+    /**
+     * The binding host of the servers, the clients are expected on the same
+     * machine by default, '*' to listen on all the interfaces.
+     */
+    static final String HOST = System.getProperty("vimide.http.host",
+            "localhost");
+
     /**
      * {@inheritDoc}
      * 
@@ -66,6 +71,11 @@ public class VimideCorePlugin extends VimidePlugin {
     @Override
     public void stop(BundleContext context) throws Exception {
         super.stop(context);
+        WorkspaceEventPublisher.getInstance().uninstall();
+        ProblemMarkerIndex.getInstance().uninstall();
+        LineIndexInvalidator.getInstance().uninstall();
+        VimideJobManager.getInstance().cancelAll();
+        VimideChannelServer.getInstance().stop();
         VimideHttpServer.getInstance().stop();
     }
 
@@ -78,44 +88,77 @@ public class VimideCorePlugin extends VimidePlugin {
     protected void activate(BundleContext bundleContext) {
         try {
             // startup the httpd first.
-            VimideHttpServer.getInstance().start(3333);
+            VimideHttpServer.getInstance().start(HOST,
+                    Integer.getInteger("vimide.http.port", 3333));
 
             super.activate(bundleContext);
         } catch (Exception e) {
             LOGGER.error("Exception caught: {}", e.getMessage(), e);
         }
 
-        VimideHttpServer.getInstance().registerServlet(PingServlet.class);
-        VimideHttpServer.getInstance().registerServlet(ShellServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JobsServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                WorkspaceDirServlet.class);
-        VimideHttpServer.getInstance()
-                .registerServlet(ProjectListServlet.class);
-        VimideHttpServer.getInstance()
-                .registerServlet(ProjectInfoServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                ProjectImportServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                ProjectBuildServlet.class);
-        VimideHttpServer.getInstance().registerServlet(ProjectsServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                ProjectByResourceServlet.class);
+        try {
+            // the vim channel, dispatching to the httpd's servlets.
+            VimideChannelServer.getInstance().start(HOST,
+                    Integer.getInteger("vimide.channel.port", 3334));
+        } catch (Exception e) {
+            LOGGER.error("Unable to start the vim channel: {}",
+                    e.getMessage(), e);
+        }
+
+        // the bundle's servlets are indexed, the built-ins of vimide-core
+        // are registered here since its jar isn't processed.
         VimideHttpServer.getInstance().registerServlet(
-                ProjectCloseServlet.class);
-        VimideHttpServer.getInstance()
-                .registerServlet(ProjectOpenServlet.class);
+                VimideEventStreamServlet.class);
         VimideHttpServer.getInstance().registerServlet(
-                ProjectRefreshServlet.class);
+                VimideBatchServlet.class);
         VimideHttpServer.getInstance().registerServlet(
-                ProjectRefreshFileServlet.class);
+                VimideMetricsServlet.class);
         VimideHttpServer.getInstance().registerServlet(
-                ProjectDeleteServlet.class);
+                VimideTraceServlet.class);
+        VimideHttpServer.getInstance().registerServlet(VimideJobServlet.class);
         VimideHttpServer.getInstance().registerServlet(
-                ProjectNamesServlet.class);
-        VimideHttpServer.getInstance().registerServlet(TestServlet.class);
-        VimideHttpServer.getInstance()
-                .registerServlet(ProblemListServlet.class);
+                VimideLoggingServlet.class);
+
+        LineIndexInvalidator.getInstance().install();
+        ProblemMarkerIndex.getInstance().install();
+        WorkspaceEventPublisher.getInstance().install();
+
+        registerWarmUp();
+        if (VimideHttpServer.getInstance().isRunning())
+            WarmUpService.getInstance().start();
+    }
+
+    /**
+     * Registers the warm-up stages of the core.
+     */
+    private void registerWarmUp() {
+        // jetty's request handling, the servlet loading and the json writer.
+        WarmUpService.getInstance().register("http", new VimideJob.Task() {
+
+            @Override
+            public Object run(VimideJob job) throws Exception {
+                VimideHttpServer.getInstance().dispatch("GET", "/ping", null);
+                return null;
+            }
+        });
+
+        // loads the problems of the open projects into the index.
+        WarmUpService.getInstance().register("problems",
+                new VimideJob.Task() {
+
+                    @Override
+                    public Object run(VimideJob job) throws Exception {
+                        for (IProject project : ResourcesPlugin
+                                .getWorkspace().getRoot().getProjects()) {
+                            if (job.isCanceled())
+                                break;
+                            if (project.isOpen())
+                                ProblemMarkerIndex.getInstance().getProblems(
+                                        project, IMarker.SEVERITY_INFO);
+                        }
+                        return null;
+                    }
+                });
     }
 
 }
@@ -142,11 +142,35 @@ public class VimidePlugin extends Plugin implements BundleListener {
      * 
      * @param context the bundle context.
      */
-    @SuppressWarnings("unchecked")
     protected void activate(BundleContext context) {
-        // resolves the bundle's classes and find the servlets.
+        // registers the servlets indexed at compile time, loaded lazily.
         final String name = context.getBundle().getSymbolicName();
 
+        try {
+            final int count = VimideHttpServer.getInstance().registerServlets(
+                    this.getClass());
+            if (count < 0) {
+                LOGGER.warn("{}: no servlet index, was the bundle compiled "
+                        + "with annotation processing? Scanning the "
+                        + "classes instead.", name);
+                scanServlets(name);
+            } else {
+                LOGGER.debug("{}: {} servlet(s) indexed.", name, count);
+            }
+        } catch (final Exception e) {
+            LOGGER.error("Unable to read the servlet index: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves the bundle's classes and registers the servlets found, the
+     * fallback of the bundles built without the servlet index.
+     * 
+     * @param name the symbolic name of the bundle.
+     */
+    @SuppressWarnings("unchecked")
+    protected void scanServlets(String name) {
         try {
             final Class<? extends VimidePlugin> pluginClass = this.getClass();
             final ClassLoader classLoader = pluginClass.getClassLoader();
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.service;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.util.LineIndex;
+
+/**
+ * Invalidates the shared {@link LineIndex} of the files changed or removed in
+ * the workspace, since the modification time and the size alone miss the
+ * edits which keep both.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class LineIndexInvalidator implements IResourceChangeListener,
+        IResourceDeltaVisitor {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LineIndexInvalidator.class);
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final LineIndexInvalidator INSTANCE = new LineIndexInvalidator();
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static LineIndexInvalidator getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private boolean installed;
+
+    /**
+     * Creates an new LineIndexInvalidator instance.
+     */
+    private LineIndexInvalidator() {
+        super();
+    }
+
+    /**
+     * Registers the invalidator to the workspace.
+     */
+    public synchronized void install() {
+        if (!installed) {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(this,
+                    IResourceChangeEvent.POST_CHANGE);
+            installed = true;
+        }
+    }
+
+    /**
+     * Unregisters the invalidator and drops the shared indexes.
+     */
+    public synchronized void uninstall() {
+        if (installed) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+            LineIndex.invalidateAll();
+            installed = false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        if (null == event.getDelta())
+            return;
+
+        try {
+            event.getDelta().accept(this);
+        } catch (final CoreException e) {
+            LOGGER.warn("{}", e.getMessage(), e);
+            LineIndex.invalidateAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.resources.IResourceDeltaVisitor#visit(org.eclipse.core.resources.IResourceDelta)
+     */
+    @Override
+    public boolean visit(IResourceDelta delta) throws CoreException {
+        final IResource resource = delta.getResource();
+        if (IResource.FILE != resource.getType())
+            return true;
+
+        final int flags = IResourceDelta.CONTENT | IResourceDelta.REPLACED;
+        if (IResourceDelta.REMOVED == delta.getKind()
+                || 0 != (delta.getFlags() & flags)) {
+            final IPath location = resource.getLocation();
+            if (null != location)
+                LineIndex.invalidate(location.toFile());
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,531 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.service;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideEventHub;
+import org.vimide.eclipse.core.util.EclipseResourceUtil;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory index of the workspace problem markers.
+ * <p>
+ * Projects are loaded lazily on their first query, after that they are kept
+ * up to date by the marker deltas of the POST_CHANGE events, so the line and
+ * column of each problem is only computed when its marker changes. Every
+ * change bumps a version which could be handed back to the index to only
+ * retrieve the files changed since. The version reported is below the
+ * oldest change still being applied, so a change is never skipped by the
+ * next incremental request. The changes are published to the
+ * {@link VimideEventHub} as "problems" events too.
+ * <p>
+ * The files of a closed or deleted project are kept without problems for
+ * <code>vimide.problems.removedMillis</code>, the incremental requests of
+ * the versions before the ones dropped since are answered in full.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class ProblemMarkerIndex implements IResourceChangeListener {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ProblemMarkerIndex.class);
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final ProblemMarkerIndex INSTANCE = new ProblemMarkerIndex();
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static ProblemMarkerIndex getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    static final long REMOVED_MILLIS = Long.getLong(
+            "vimide.problems.removedMillis", 10L * 60 * 1000);
+
+    /**
+     * The problems of one file, stamped with the version they changed at.
+     */
+    static class FileProblems {
+        final String fileName;
+        final long version;
+        final List<Map<String, Object>> problems;
+
+        FileProblems(String fileName, long version,
+                List<Map<String, Object>> problems) {
+            this.fileName = fileName;
+            this.version = version;
+            this.problems = problems;
+        }
+    }
+
+    /**
+     * The files of a closed or deleted project.
+     */
+    static class Removal {
+        final long version;
+        final long time;
+        final Map<String, FileProblems> files;
+
+        Removal(long version, Map<String, FileProblems> files) {
+            this.version = version;
+            this.time = System.currentTimeMillis();
+            this.files = files;
+        }
+    }
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The versions of the changes being applied, guarded by itself.
+     */
+    private final SortedSet<Long> inFlight = Sets.newTreeSet();
+
+    /**
+     * The incremental requests before the version are answered in full, as
+     * the removals they haven't seen were dropped.
+     */
+    private volatile long horizon;
+
+    /**
+     * Project name =&gt; (resource full path =&gt; problems).
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, FileProblems>> projects = Maps
+            .newConcurrentMap();
+
+    /**
+     * Project name =&gt; changes arrived while the project is being loaded.
+     */
+    private final Map<String, Map<String, FileProblems>> pending = Maps
+            .newHashMap();
+
+    /**
+     * Project name =&gt; empty problems of the files of a closed or deleted
+     * project, reported to the incremental requests once it is loaded again.
+     */
+    private final Map<String, Removal> removed = Maps.newHashMap();
+
+    private volatile boolean installed;
+
+    /**
+     * Creates an new ProblemMarkerIndex instance.
+     */
+    private ProblemMarkerIndex() {
+        super();
+    }
+
+    /**
+     * Registers the index to the workspace as a resource change listener.
+     */
+    public synchronized void install() {
+        if (!installed) {
+            getWorkspace().addResourceChangeListener(
+                    this,
+                    IResourceChangeEvent.POST_CHANGE
+                            | IResourceChangeEvent.PRE_CLOSE
+                            | IResourceChangeEvent.PRE_DELETE);
+            installed = true;
+        }
+    }
+
+    /**
+     * Unregisters the index and drops all the indexed problems.
+     */
+    public synchronized void uninstall() {
+        if (installed) {
+            getWorkspace().removeResourceChangeListener(this);
+            installed = false;
+        }
+        synchronized (pending) {
+            projects.clear();
+            pending.clear();
+            removed.clear();
+        }
+    }
+
+    /**
+     * Retrieves the current version of the index, all the changes up to it
+     * are applied.
+     * 
+     * @return the version.
+     */
+    public long getVersion() {
+        synchronized (inFlight) {
+            return inFlight.isEmpty() ? version.get() : inFlight.first() - 1;
+        }
+    }
+
+    /**
+     * Validates the version handed back by an incremental request.
+     * 
+     * @param since the version the caller had seen.
+     * @return the version, 0 if the caller must reload all the problems.
+     */
+    public long getValidSince(long since) {
+        // tokens from another session, or before the removals dropped.
+        if (since > version.get() || since < horizon)
+            return 0;
+        return since;
+    }
+
+    /**
+     * Takes the version of a change being applied, the change must be ended
+     * by {@link #end(long)}.
+     */
+    long begin() {
+        synchronized (inFlight) {
+            final long next = version.incrementAndGet();
+            inFlight.add(next);
+            return next;
+        }
+    }
+
+    /**
+     * Ends the change of the version, once it's visible in the index.
+     */
+    void end(long stamp) {
+        synchronized (inFlight) {
+            inFlight.remove(stamp);
+        }
+    }
+
+    /**
+     * Retrieves the problems of the specific project.
+     * 
+     * @param project the project.
+     * @param severityLevel the max severity level to include.
+     * @return list of problems.
+     */
+    public List<Map<String, Object>> getProblems(IProject project,
+            int severityLevel) {
+        return getProblems(project, severityLevel, 0, null);
+    }
+
+    /**
+     * Retrieves the problems of the files of the specific project which were
+     * changed after the specific version.
+     * 
+     * @param project the project.
+     * @param severityLevel the max severity level to include.
+     * @param since the version the caller had seen, 0 for all.
+     * @param changedFiles optional collection which receives the file names
+     *            changed after the version, including the ones which don't
+     *            have problems anymore.
+     * @return list of problems.
+     */
+    public List<Map<String, Object>> getProblems(IProject project,
+            int severityLevel, long since, Collection<String> changedFiles) {
+        final List<Map<String, Object>> results = Lists.newArrayList();
+        final ConcurrentMap<String, FileProblems> files = getProjectProblems(project);
+        if (null == files)
+            return results;
+
+        since = getValidSince(since);
+
+        for (FileProblems entry : files.values()) {
+            if (entry.version <= since)
+                continue;
+
+            if (null != changedFiles && null != entry.fileName)
+                changedFiles.add(entry.fileName);
+
+            for (Map<String, Object> problem : entry.problems) {
+                Object severity = problem.get("severity");
+                if (!(severity instanceof Integer)
+                        || ((Integer) severity).intValue() <= severityLevel)
+                    results.add(problem);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        switch (event.getType()) {
+            case IResourceChangeEvent.PRE_CLOSE:
+            case IResourceChangeEvent.PRE_DELETE:
+                if (null != event.getResource())
+                    removeProject(event.getResource().getName());
+                break;
+            case IResourceChangeEvent.POST_CHANGE:
+                IMarkerDelta[] deltas = event.findMarkerDeltas(
+                        IMarker.PROBLEM, true);
+                if (null == deltas || deltas.length == 0)
+                    break;
+
+                final Set<IResource> resources = Sets.newLinkedHashSet();
+                for (IMarkerDelta delta : deltas) {
+                    IResource resource = delta.getResource();
+                    if (null != resource && null != resource.getProject())
+                        resources.add(resource);
+                }
+
+                if (resources.isEmpty())
+                    break;
+
+                final long next = begin();
+                final List<String> changedFiles = Lists.newArrayList();
+                final List<Map<String, Object>> changedProblems = Lists
+                        .newArrayList();
+
+                try {
+                    for (IResource resource : resources) {
+                        FileProblems entry = createFileProblems(resource,
+                                next);
+                        put(resource.getProject().getName(), resource
+                                .getFullPath().toString(), entry);
+
+                        if (null != entry.fileName) {
+                            changedFiles.add(entry.fileName);
+                            changedProblems.addAll(entry.problems);
+                        }
+                    }
+                } finally {
+                    end(next);
+                }
+
+                // pushes the same shape as the incremental /problems.
+                final Map<String, Object> data = Maps.newHashMap();
+                data.put("version", getVersion());
+                data.put("files", changedFiles);
+                data.put("problems", changedProblems);
+                VimideEventHub.getInstance().publish("problems", data);
+                break;
+        }
+    }
+
+    /**
+     * Puts the problems of the file to its project, if the project is indexed
+     * or being loaded.
+     */
+    void put(String projectName, String path, FileProblems entry) {
+        synchronized (pending) {
+            Map<String, FileProblems> files = projects.get(projectName);
+            if (null == files)
+                files = pending.get(projectName);
+            if (null != files)
+                files.put(path, entry);
+        }
+    }
+
+    /**
+     * Drops the closed or deleted project, its files are reported without
+     * problems to the event subscribers now and to the incremental requests
+     * once the project is loaded again.
+     */
+    void removeProject(String projectName) {
+        final long next = begin();
+        final Map<String, FileProblems> files;
+        final Map<String, FileProblems> cleared = Maps.newHashMap();
+        try {
+            synchronized (pending) {
+                pruneRemoved();
+                files = projects.remove(projectName);
+                if (null == files)
+                    return;
+
+                for (Map.Entry<String, FileProblems> entry : files
+                        .entrySet()) {
+                    cleared.put(entry.getKey(), new FileProblems(entry
+                            .getValue().fileName, next, ImmutableList
+                            .<Map<String, Object>> of()));
+                }
+                removed.put(projectName, new Removal(next, cleared));
+            }
+        } finally {
+            end(next);
+        }
+
+        final List<String> changedFiles = Lists.newArrayList();
+        for (FileProblems entry : cleared.values()) {
+            if (null != entry.fileName)
+                changedFiles.add(entry.fileName);
+        }
+
+        final Map<String, Object> data = Maps.newHashMap();
+        data.put("version", getVersion());
+        data.put("files", changedFiles);
+        data.put("problems", ImmutableList.of());
+        VimideEventHub.getInstance().publish("problems", data);
+    }
+
+    /**
+     * Drops the removals kept longer than
+     * <code>vimide.problems.removedMillis</code>, the readers are expected
+     * past them by then, the ones which aren't reload all the problems.
+     * Called with the pending lock held.
+     */
+    private void pruneRemoved() {
+        final long expired = System.currentTimeMillis() - REMOVED_MILLIS;
+        for (Iterator<Removal> it = removed.values().iterator(); it
+                .hasNext();) {
+            final Removal removal = it.next();
+            if (removal.time <= expired) {
+                horizon = Math.max(horizon, removal.version);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the indexed problems of the specific project, loading them
+     * when the project wasn't indexed yet.
+     */
+    ConcurrentMap<String, FileProblems> getProjectProblems(IProject project) {
+        if (null == project || !project.isAccessible())
+            return null;
+
+        final String name = project.getName();
+        ConcurrentMap<String, FileProblems> files = projects.get(name);
+        if (null != files)
+            return files;
+
+        synchronized (this) {
+            files = projects.get(name);
+            if (null != files)
+                return files;
+
+            // the changes happened while loading are buffered, and applied
+            // over the loaded problems before the map is published.
+            synchronized (pending) {
+                pending.put(name, Maps.<String, FileProblems> newHashMap());
+            }
+
+            files = Maps.newConcurrentMap();
+            final long current = begin();
+            try {
+                IMarker[] markers = project.findMarkers(IMarker.PROBLEM, true,
+                        IResource.DEPTH_INFINITE);
+                final Map<IResource, List<IMarker>> grouped = Maps
+                        .newLinkedHashMap();
+                for (IMarker marker : markers) {
+                    List<IMarker> list = grouped.get(marker.getResource());
+                    if (null == list) {
+                        list = Lists.newArrayList();
+                        grouped.put(marker.getResource(), list);
+                    }
+                    list.add(marker);
+                }
+
+                for (Map.Entry<IResource, List<IMarker>> entry : grouped
+                        .entrySet()) {
+                    IResource resource = entry.getKey();
+                    files.put(resource.getFullPath().toString(),
+                            createFileProblems(resource, entry.getValue()
+                                    .toArray(new IMarker[0]), current));
+                }
+            } catch (CoreException e) {
+                LOGGER.error("{}", e.getMessage(), e);
+            } finally {
+                synchronized (pending) {
+                    final Removal removal = removed.remove(name);
+                    if (null != removal) {
+                        for (Map.Entry<String, FileProblems> entry : //
+                        removal.files.entrySet())
+                            files.putIfAbsent(entry.getKey(),
+                                    entry.getValue());
+                    }
+                    final Map<String, FileProblems> changes = pending
+                            .remove(name);
+                    if (null != changes)
+                        files.putAll(changes);
+                    projects.put(name, files);
+                    pruneRemoved();
+                }
+                end(current);
+            }
+        }
+
+        return files;
+    }
+
+    FileProblems createFileProblems(IResource resource, long version) {
+        IMarker[] markers = null;
+        if (resource.exists()) {
+            try {
+                markers = resource.findMarkers(IMarker.PROBLEM, true,
+                        IResource.DEPTH_ZERO);
+            } catch (CoreException e) {
+                LOGGER.debug("{}", e.getMessage(), e);
+            }
+        }
+        return createFileProblems(resource, markers, version);
+    }
+
+    FileProblems createFileProblems(IResource resource, IMarker[] markers,
+            long version) {
+        String fileName = null;
+        if (null != resource.getLocation())
+            fileName = resource.getLocation().toOSString().replace("\\", "/");
+
+        // severity filtering happens on query, keep all of them here.
+        List<Map<String, Object>> problems = EclipseResourceUtil.getProblems(
+                markers, Integer.MAX_VALUE);
+        return new FileProblems(fileName, version,
+                null == problems ? ImmutableList.<Map<String, Object>> of()
+                        : ImmutableList.copyOf(problems));
+    }
+
+    IWorkspace getWorkspace() {
+        return ResourcesPlugin.getWorkspace();
+    }
+
+}
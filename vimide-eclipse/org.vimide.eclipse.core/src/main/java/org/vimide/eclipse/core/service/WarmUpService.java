@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.server.VimideJobManager;
+import org.vimide.core.servlet.Priority.Level;
+import org.vimide.core.servlet.RequestScheduler;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs the warm-up stages in background once the http server is bound, so
+ * the first requests needn't pay for the class loading, the index readiness
+ * and the other one-time initialization.
+ * <p>
+ * The stages are run in their registration order by one job at background
+ * priority, a stage registered after the start is run as well. The
+ * readiness is reported through <code>/ping</code>. Disabled by
+ * <code>-Dvimide.warmup=false</code>.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class WarmUpService {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(WarmUpService.class);
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(
+            "vimide.warmup", "true"));
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final WarmUpService INSTANCE = new WarmUpService();
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static WarmUpService getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * States of the stage.
+     */
+    public static enum State {
+        PENDING, RUNNING, READY, SKIPPED, FAILED
+    }
+
+    /**
+     * The registered stage.
+     */
+    static class Stage {
+        final String name;
+        final VimideJob.Task task;
+        State state = State.PENDING;
+        long elapsed;
+        String error;
+
+        Stage(String name, VimideJob.Task task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+
+    private final List<Stage> stages = Lists.newArrayList();
+    private boolean started;
+    private boolean running;
+
+    /**
+     * Creates an new WarmUpService instance.
+     */
+    private WarmUpService() {
+        super();
+    }
+
+    /**
+     * Registers the warm-up stage. The task returns
+     * <code>Boolean.FALSE</code> if there was nothing to warm up.
+     * 
+     * @param name the stage name.
+     * @param task the stage task.
+     */
+    public synchronized void register(String name, VimideJob.Task task) {
+        stages.add(new Stage(name, task));
+        if (started)
+            schedule();
+    }
+
+    /**
+     * Starts to run the registered stages, called once the http server was
+     * bound.
+     */
+    public synchronized void start() {
+        started = true;
+        schedule();
+    }
+
+    /**
+     * Tells if all the registered stages were finished.
+     * 
+     * @return true if ready.
+     */
+    public synchronized boolean isReady() {
+        for (Stage stage : stages) {
+            if (stage.state == State.PENDING || stage.state == State.RUNNING)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the states of the stages, keyed by the stage name.
+     * 
+     * @return the states.
+     */
+    public synchronized Map<String, Object> toMap() {
+        final Map<String, Object> map = Maps.newLinkedHashMap();
+        for (Stage stage : stages) {
+            final Map<String, Object> m = Maps.newHashMap();
+            m.put("state", stage.state.name().toLowerCase());
+            m.put("elapsed", stage.elapsed);
+            if (null != stage.error)
+                m.put("error", stage.error);
+            map.put(stage.name, m);
+        }
+        return map;
+    }
+
+    private void schedule() {
+        if (!ENABLED) {
+            for (Stage stage : stages) {
+                if (stage.state == State.PENDING)
+                    stage.state = State.SKIPPED;
+            }
+            return;
+        }
+        if (running)
+            return;
+
+        running = true;
+        VimideJobManager.getInstance().submit("Warm-up",
+                new VimideJob.Task() {
+
+                    @Override
+                    public Object run(VimideJob job) throws Exception {
+                        runPending(job);
+                        return toMap();
+                    }
+                });
+    }
+
+    private synchronized Stage next() {
+        for (Stage stage : stages) {
+            if (stage.state == State.PENDING) {
+                stage.state = State.RUNNING;
+                return stage;
+            }
+        }
+        // the stages registered later schedule another job.
+        running = false;
+        return null;
+    }
+
+    void runPending(VimideJob job) {
+        Stage stage;
+        while (null != (stage = next())) {
+            if (job.isCanceled()) {
+                finish(stage, State.SKIPPED, 0, null);
+                continue;
+            }
+            job.setTaskName(stage.name);
+
+            final RequestScheduler scheduler = RequestScheduler.getInstance();
+            final RequestScheduler.Ticket ticket = scheduler
+                    .admit(Level.BACKGROUND);
+            final long start = System.currentTimeMillis();
+            try {
+                final Object result = stage.task.run(job);
+                finish(stage, Boolean.FALSE.equals(result) ? State.SKIPPED
+                        : State.READY, System.currentTimeMillis() - start,
+                        null);
+            } catch (final Exception e) {
+                LOGGER.warn("Warm-up stage '{}' failed: {}", stage.name,
+                        e.getMessage());
+                finish(stage, State.FAILED, System.currentTimeMillis()
+                        - start, Throwables.getRootCause(e).toString());
+            } finally {
+                scheduler.release(ticket);
+            }
+            LOGGER.debug("Warm-up stage '{}': {} in {}ms", new Object[] {
+                    stage.name, stage.state, stage.elapsed });
+        }
+    }
+
+    private synchronized void finish(Stage stage, State state, long elapsed,
+            String error) {
+        stage.state = state;
+        stage.elapsed = elapsed;
+        stage.error = error;
+    }
+
+}
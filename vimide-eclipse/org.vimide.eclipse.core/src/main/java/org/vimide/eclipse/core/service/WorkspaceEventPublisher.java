@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideEventHub;
+import org.vimide.core.servlet.ResponseCache;
+import org.vimide.eclipse.core.refactoring.ResourceChangeListener;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Publishes the workspace activities to the {@link VimideEventHub}:
+ * <ul>
+ * <li>"job": the state changes of the user visible jobs, builds included.</li>
+ * <li>"files": the files changed, moved or renamed.</li>
+ * </ul>
+ * The problems are published by the {@link ProblemMarkerIndex}. Any change of
+ * the workspace invalidates the {@link ResponseCache} as well.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class WorkspaceEventPublisher extends JobChangeAdapter implements
+        IResourceChangeListener {
+
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(WorkspaceEventPublisher.class);
+
+    /**
+     * Singleton holder.
+     */
+    private static class SingletonHolder {
+        static final WorkspaceEventPublisher INSTANCE = new WorkspaceEventPublisher();
+    }
+
+    /**
+     * Retrieves the singleton instance.
+     * 
+     * @return the singleton instance.
+     */
+    public static WorkspaceEventPublisher getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private boolean installed;
+
+    /**
+     * Creates an new WorkspaceEventPublisher instance.
+     */
+    private WorkspaceEventPublisher() {
+        super();
+    }
+
+    /**
+     * Registers the publisher to the workspace and the job manager.
+     */
+    public synchronized void install() {
+        if (!installed) {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(this,
+                    IResourceChangeEvent.POST_CHANGE);
+            Job.getJobManager().addJobChangeListener(this);
+            installed = true;
+        }
+    }
+
+    /**
+     * Unregisters the publisher.
+     */
+    public synchronized void uninstall() {
+        if (installed) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+            Job.getJobManager().removeJobChangeListener(this);
+            installed = false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        if (null == event.getDelta())
+            return;
+
+        ResponseCache.getInstance().invalidate();
+
+        final ResourceChangeListener collector = new ResourceChangeListener();
+        try {
+            collector.resourceChanged(event);
+        } catch (final RuntimeException e) {
+            LOGGER.error("{}", e.getMessage(), e);
+            return;
+        }
+
+        final List<Map<String, String>> files = collector.getChangedFiles();
+        if (!files.isEmpty())
+            VimideEventHub.getInstance().publish("files", files);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.runtime.jobs.JobChangeAdapter#scheduled(org.eclipse.core.runtime.jobs.IJobChangeEvent)
+     */
+    @Override
+    public void scheduled(IJobChangeEvent event) {
+        publish(event, "scheduled");
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.runtime.jobs.JobChangeAdapter#running(org.eclipse.core.runtime.jobs.IJobChangeEvent)
+     */
+    @Override
+    public void running(IJobChangeEvent event) {
+        publish(event, "running");
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.runtime.jobs.JobChangeAdapter#done(org.eclipse.core.runtime.jobs.IJobChangeEvent)
+     */
+    @Override
+    public void done(IJobChangeEvent event) {
+        publish(event, "done");
+    }
+
+    void publish(IJobChangeEvent event, String status) {
+        final Job job = event.getJob();
+        if (null == job || job.isSystem())
+            return;
+
+        final Map<String, Object> data = Maps.newHashMap();
+        data.put("job", job.getName());
+        data.put("status", status);
+        data.put("build", job.belongsTo(ResourcesPlugin.FAMILY_AUTO_BUILD)
+                || job.belongsTo(ResourcesPlugin.FAMILY_MANUAL_BUILD));
+
+        final IStatus result = event.getResult();
+        if (null != result) {
+            data.put("severity", result.getSeverity());
+            data.put("message", result.getMessage());
+        }
+
+        VimideEventHub.getInstance().publish("job", data);
+    }
+
+}
@@ -41,6 +41,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.IDocument;
+import org.vimide.core.metrics.VimideTracer;
 import org.vimide.core.servlet.VimideHttpServlet;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 
@@ -120,6 +121,16 @@ public abstract class GenericVimideHttpServlet extends VimideHttpServlet {
 
 	protected IFile getProjectFile(IProject project, String filePath,
 			Boolean refresh) {
+		final int span = VimideTracer.enter("getProjectFile");
+		try {
+			return resolveProjectFile(project, filePath, refresh);
+		} finally {
+			VimideTracer.exit(span);
+		}
+	}
+
+	private IFile resolveProjectFile(IProject project, String filePath,
+			Boolean refresh) {
 		if (null == project || !project.exists()
 				|| Strings.isNullOrEmpty(filePath)) {
 			return null;
@@ -33,6 +33,7 @@ import org.osgi.framework.Bundle;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.VimideCorePlugin;
+import org.vimide.eclipse.core.service.WarmUpService;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
@@ -66,6 +67,9 @@ public class PingServlet extends GenericVimideHttpServlet {
         Map<String, Object> result = Maps.newHashMap();
         result.put("Eclipse", eclipseVersion);
         result.put("Vimide", vimideVersion);
+        // the clients could tell if the first requests would be slow.
+        result.put("Ready", WarmUpService.getInstance().isReady());
+        result.put("WarmUp", WarmUpService.getInstance().toMap());
 
         resp.writeAsJson(result).flush();
     }
@@ -30,6 +30,7 @@ import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 
 import org.vimide.core.server.VimideHttpServer;
+import org.vimide.core.servlet.Cacheable;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 
@@ -38,6 +39,7 @@ import org.vimide.core.servlet.VimideHttpServletResponse;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Cacheable
 @WebServlet(urlPatterns = "/servletList")
 @Deprecated
 public class ServletListServlet extends GenericVimideHttpServlet {
@@ -25,28 +25,37 @@ package org.vimide.eclipse.core.servlet.problem;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.runtime.CoreException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Coalesce;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
+import org.vimide.eclipse.core.service.ProblemMarkerIndex;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
-import org.vimide.eclipse.core.util.EclipseResourceUtil;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Requests to list all the specific level problems.
+ * <p>
+ * The problems are answered from the {@link ProblemMarkerIndex}. Supplying the
+ * <code>since</code> parameter with the version of a previous response only
+ * lists the files changed after it, unless <code>reset</code> is answered
+ * true, when the version is too old and all the problems are listed.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Coalesce
+@Priority(Priority.Level.NEAR_INTERACTIVE)
 @WebServlet(urlPatterns = "/problems")
 public class ProblemListServlet extends GenericVimideHttpServlet {
 
@@ -68,25 +77,38 @@ public class ProblemListServlet extends GenericVimideHttpServlet {
         }
 
         int severity = req.getIntParameter("severity", 2);
+        final boolean incremental = null != req.getParameter("since");
+        final ProblemMarkerIndex index = ProblemMarkerIndex.getInstance();
+        final long requested = req.getLongParameter("since", 0);
+        final long since = index.getValidSince(requested);
 
-        List<Map<String, Object>> results = Lists.newArrayList();
-        int depth = IResource.DEPTH_INFINITE;
+        // read before collecting, the changes applied meanwhile are listed
+        // again by the next request rather than skipped.
+        final long version = index.getVersion();
+        final List<Map<String, Object>> problems = Lists.newArrayList();
+        final Set<String> files = Sets.newLinkedHashSet();
 
         for (IProject project : projects) {
             if (project.exists()) {
-                try {
-                    IMarker[] findMarkers = project.findMarkers(
-                            IMarker.PROBLEM, true, depth);
-                    List<Map<String, Object>> problems = EclipseResourceUtil
-                            .getProblems(findMarkers, severity);
-                    if (null != problems && !problems.isEmpty())
-                        results.addAll(problems);
-                } catch (CoreException e) {
-                    LOGGER.error("{}", e.getMessage(), e);
-                }
+                problems.addAll(index.getProblems(project, severity, since,
+                        incremental ? files : null));
             }
         }
 
+        if (!incremental) {
+            resp.writeAsJson(problems);
+            return;
+        }
+
+        // only the files changed since the supplied version, the client
+        // replaces the problems of every listed file.
+        final Map<String, Object> results = Maps.newHashMap();
+        results.put("version", version);
+        // the token couldn't be honored, the client replaces all problems.
+        results.put("reset", requested > 0 && since == 0);
+        results.put("files", files);
+        results.put("problems", problems);
+
         resp.writeAsJson(results);
     }
 }
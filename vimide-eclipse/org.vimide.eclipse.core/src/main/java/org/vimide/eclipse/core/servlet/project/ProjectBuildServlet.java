@@ -28,20 +28,28 @@ import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.osgi.util.NLS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.servlet.ConcurrencyLimit;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.CoreMessages;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.core.util.VimideJobProgressMonitor;
 
 /**
- * Requests to build projects.
+ * Requests to build projects, executed as a job.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
-@WebServlet(urlPatterns = "/project_build")
+@ConcurrencyLimit(1)
+@Priority(Priority.Level.BACKGROUND)
+@WebServlet(urlPatterns = "/project_build", asyncSupported = true)
 public class ProjectBuildServlet extends GenericVimideHttpServlet {
 
     private static final long serialVersionUID = 1L;
@@ -65,12 +73,35 @@ public class ProjectBuildServlet extends GenericVimideHttpServlet {
             buildType = 9; // set to default mode(auto build).
         }
 
+        final IProject[] projects = all ? null : getProjects(req);
+        if (!all && (null == projects || projects.length == 0)) {
+            resp.sendError(403);
+            return;
+        }
+
+        final int kind = buildType;
+        submitJob(req, resp, "Build", new VimideJob.Task() {
+
+            @Override
+            public Object run(VimideJob job) throws Exception {
+                return build(kind, projects, new VimideJobProgressMonitor(job));
+            }
+        });
+    }
+
+    /**
+     * Builds the projects, or the whole workspace if <code>projects</code> is
+     * null.
+     */
+    String build(int buildType, IProject[] projects, IProgressMonitor monitor) {
         final StringBuilder sb = new StringBuilder();
 
-        if (all) {
+        if (null == projects) {
             try {
-                getWorkspace().build(buildType, null);
+                getWorkspace().build(buildType, monitor);
                 sb.append(CoreMessages.project_built_all);
+            } catch (final OperationCanceledException e) {
+                throw e;
             } catch (final Exception e) {
                 LOGGER.error("Error caught at Building all project: {}",
                         e.getMessage(), e);
@@ -78,20 +109,18 @@ public class ProjectBuildServlet extends GenericVimideHttpServlet {
                         "all"));
             }
         } else {
-
-            final IProject[] projects = getProjects(req);
-            if (!all && (null == projects || projects.length == 0)) {
-                resp.sendError(403);
-                return;
-            }
-
             for (IProject project : projects) {
+                if (monitor.isCanceled())
+                    throw new OperationCanceledException();
+
                 // perform a project to build.
                 try {
-                    project.build(buildType, null);
+                    project.build(buildType, monitor);
                     sb.append(
                             NLS.bind(CoreMessages.project_built,
                                     project.getName())).append("\n");
+                } catch (final OperationCanceledException e) {
+                    throw e;
                 } catch (final Exception e) {
                     LOGGER.error("Error caught at building project: {}",
                             project, e);
@@ -103,6 +132,6 @@ public class ProjectBuildServlet extends GenericVimideHttpServlet {
             }
         }
 
-        resp.writeAsJson(sb.toString());
+        return sb.toString();
     }
 }
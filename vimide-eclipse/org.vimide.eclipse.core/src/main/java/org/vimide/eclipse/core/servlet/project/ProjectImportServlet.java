@@ -33,24 +33,30 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.osgi.util.NLS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.servlet.ConcurrencyLimit;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.CoreMessages;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.core.util.VimideJobProgressMonitor;
 
 import com.google.common.base.Strings;
 
 /**
- * Request to import projects.
+ * Request to import projects, executed as a job.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
-@WebServlet(urlPatterns = "/project_import")
+@ConcurrencyLimit(1)
+@Priority(Priority.Level.BACKGROUND)
+@WebServlet(urlPatterns = "/project_import", asyncSupported = true)
 public class ProjectImportServlet extends GenericVimideHttpServlet {
 
     private static final long serialVersionUID = 1L;
@@ -76,6 +82,19 @@ public class ProjectImportServlet extends GenericVimideHttpServlet {
             return;
         }
 
+        submitJob(req, resp, "Import", new VimideJob.Task() {
+
+            @Override
+            public Object run(VimideJob job) throws Exception {
+                return importProject(file, new VimideJobProgressMonitor(job));
+            }
+        });
+    }
+
+    /**
+     * Imports the eclipse project located at the directory.
+     */
+    String importProject(File file, IProgressMonitor monitor) {
         final StringBuilder sb = new StringBuilder();
 
         final File dotProject = new File(file, ".project");
@@ -101,15 +120,14 @@ public class ProjectImportServlet extends GenericVimideHttpServlet {
                     // already exists.
                     sb.append(NLS.bind(CoreMessages.project_name_exists,
                             project.getName(), workspaceLoc));
-                    resp.writeAsJson(sb.toString());
-                    return;
+                    return sb.toString();
                 } else {
                     IPath path = new Path(file.getAbsolutePath());
                     description.setLocation(path);
 
                     try {
-                        project.create(description, new NullProgressMonitor());
-                        project.open(null);
+                        project.create(description, monitor);
+                        project.open(monitor);
                         
                         sb.append(NLS.bind(CoreMessages.project_imported,
                                 project.getName()));
@@ -126,7 +144,7 @@ public class ProjectImportServlet extends GenericVimideHttpServlet {
                     file.getAbsolutePath()));
         }
 
-        resp.writeAsJson(sb.toString());
+        return sb.toString();
     }
 
 }
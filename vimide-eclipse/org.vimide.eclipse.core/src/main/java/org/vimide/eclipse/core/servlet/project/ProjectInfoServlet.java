@@ -33,6 +33,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Cacheable;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.natures.NaturesMapping;
@@ -46,6 +47,7 @@ import com.google.common.collect.Maps;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Cacheable
 @WebServlet(urlPatterns = "/project_info")
 public class ProjectInfoServlet extends GenericVimideHttpServlet {
 
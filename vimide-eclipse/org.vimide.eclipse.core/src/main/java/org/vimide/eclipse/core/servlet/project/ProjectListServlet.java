@@ -35,6 +35,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Cacheable;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.natures.NaturesMapping;
@@ -49,6 +50,7 @@ import com.google.common.collect.Sets;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Cacheable
 @WebServlet(urlPatterns = "/project_list")
 public class ProjectListServlet extends GenericVimideHttpServlet {
 
@@ -29,6 +29,7 @@ import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 
 import org.eclipse.core.resources.IProject;
+import org.vimide.core.servlet.Cacheable;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
@@ -40,6 +41,7 @@ import com.google.common.collect.Lists;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Cacheable
 @WebServlet(urlPatterns = "/project_names")
 public class ProjectNamesServlet extends GenericVimideHttpServlet {
 
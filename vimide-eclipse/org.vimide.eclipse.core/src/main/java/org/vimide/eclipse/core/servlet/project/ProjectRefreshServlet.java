@@ -30,21 +30,28 @@ import javax.servlet.annotation.WebServlet;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.osgi.util.NLS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.servlet.ConcurrencyLimit;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.CoreMessages;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.core.util.VimideJobProgressMonitor;
 
 /**
- * Request to refresh projects.
+ * Request to refresh projects, executed as a job.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
-@WebServlet(urlPatterns = "/project_refresh")
+@ConcurrencyLimit(1)
+@Priority(Priority.Level.BACKGROUND)
+@WebServlet(urlPatterns = "/project_refresh", asyncSupported = true)
 public class ProjectRefreshServlet extends GenericVimideHttpServlet {
 
     private static final long serialVersionUID = 1L;
@@ -69,9 +76,25 @@ public class ProjectRefreshServlet extends GenericVimideHttpServlet {
             return;
         }
 
+        submitJob(req, resp, "Refresh", new VimideJob.Task() {
+
+            @Override
+            public Object run(VimideJob job) throws Exception {
+                return refresh(projects, new VimideJobProgressMonitor(job));
+            }
+        });
+    }
+
+    /**
+     * Refreshes the projects.
+     */
+    String refresh(IProject[] projects, IProgressMonitor monitor) {
         final StringBuilder sb = new StringBuilder();
 
         for (IProject project : projects) {
+            if (monitor.isCanceled())
+                throw new OperationCanceledException();
+
             if (sb.length() > 0)
                 sb.append("\n");
 
@@ -82,8 +105,7 @@ public class ProjectRefreshServlet extends GenericVimideHttpServlet {
                     continue;
                 }
                 try {
-                    project.refreshLocal(IResource.DEPTH_INFINITE,
-                            new NullProgressMonitor());
+                    project.refreshLocal(IResource.DEPTH_INFINITE, monitor);
                     sb.append(NLS.bind(CoreMessages.project_refreshed,
                             project.getName()));
 
@@ -99,7 +121,7 @@ public class ProjectRefreshServlet extends GenericVimideHttpServlet {
             }
         }
 
-        resp.writeAsJson(sb.toString());
+        return sb.toString();
     }
 
 }
@@ -31,6 +31,7 @@ import javax.servlet.annotation.WebServlet;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.eclipse.core.resources.IProject;
+import org.vimide.core.servlet.Cacheable;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.eclipse.core.natures.NaturesMapping;
@@ -45,6 +46,7 @@ import com.google.common.collect.Maps;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Cacheable
 @WebServlet(urlPatterns = "/projects")
 public class ProjectsServlet extends GenericVimideHttpServlet {
 
@@ -94,9 +94,19 @@ public class EclipseResourceUtil {
     }
 
     public static List<Map<String, Object>> getProblems(IMarker[] markers) {
-        return getProblems(markers, 2); // get all problems.
+        return getProblems(markers, IMarker.SEVERITY_ERROR); // get all problems.
     }
 
+    /**
+     * Retrieves the problems of the specific markers whose severity is no
+     * greater than the specific level, i.e. SEVERITY_WARNING excludes the
+     * errors.
+     * 
+     * @param markers the markers.
+     * @param severityLevel the max severity level.
+     * @return list of problems.
+     */
+
     public static List<Map<String, Object>> getProblems(IMarker[] markers,
             int severityLevel) {
         if (null != markers && markers.length > 0) {
@@ -105,7 +115,7 @@ public class EclipseResourceUtil {
                 try {
                     int severityValue = ((Integer) marker
                             .getAttribute(IMarker.SEVERITY)).intValue();
-                    if (severityValue <= severityValue) {
+                    if (severityValue <= severityLevel) {
                         Map<String, Object> result = getProblem(marker);
                         if (null != result)
                             lists.add(result);
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.util;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.core.servlet.RequestScheduler;
+
+/**
+ * Cancels the eclipse operation once the request it serves isn't waited any
+ * more: its {@link Deadline} passed or a newer request superseded it.
+ * <p>
+ * The request is captured on creating, so the monitor must be created on
+ * the thread serving the request, it could be polled from any thread after.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class RequestProgressMonitor extends NullProgressMonitor {
+
+    private final Deadline deadline = Deadline.current();
+    private final RequestScheduler.Ticket ticket = RequestScheduler.current();
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.eclipse.core.runtime.NullProgressMonitor#isCanceled()
+     */
+    @Override
+    public boolean isCanceled() {
+        return super.isCanceled()
+                || (null != deadline && deadline.isExpired())
+                || (null != ticket && ticket.isStale());
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.core.util;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.vimide.core.server.VimideJob;
+import org.vimide.core.servlet.RequestScheduler;
+
+/**
+ * Reports the progress of an eclipse operation to the {@link VimideJob} it
+ * runs in, the cancellation requested by the client is answered through
+ * {@link #isCanceled()}. The polling of the cancellation is also the
+ * checkpoint where a lower priority job yields to the higher requests, unless
+ * it holds a scheduling rule the higher ones might wait for.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class VimideJobProgressMonitor implements IProgressMonitor {
+
+    private final VimideJob job;
+
+    /**
+     * Creates an new VimideJobProgressMonitor instance.
+     * 
+     * @param job the job reported to.
+     */
+    public VimideJobProgressMonitor(VimideJob job) {
+        this.job = job;
+    }
+
+    @Override
+    public void beginTask(String name, int totalWork) {
+        job.beginTask(name, totalWork == UNKNOWN ? -1 : totalWork);
+    }
+
+    @Override
+    public void done() {
+        // NOOP, the job finishes when the task returns.
+    }
+
+    @Override
+    public void internalWorked(double work) {
+        job.worked(work);
+    }
+
+    @Override
+    public boolean isCanceled() {
+        // yielding with a rule held would block the higher requests on it.
+        if (null == Job.getJobManager().currentRule())
+            RequestScheduler.getInstance().checkpoint();
+        return job.isCanceled();
+    }
+
+    @Override
+    public void setCanceled(boolean value) {
+        if (value)
+            job.cancel();
+    }
+
+    @Override
+    public void setTaskName(String name) {
+        job.setTaskName(name);
+    }
+
+    @Override
+    public void subTask(String name) {
+        job.subTask(name);
+    }
+
+    @Override
+    public void worked(int work) {
+        internalWorked(work);
+    }
+
+}
@@ -22,21 +22,9 @@
  */
 package org.vimide.eclipse.flashbuilder;
 
-import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vimide.core.server.VimideHttpServer;
 import org.vimide.eclipse.core.VimidePlugin;
-import org.vimide.eclipse.flashbuilder.servlet.BlockCommentServlet;
-import org.vimide.eclipse.flashbuilder.servlet.CodeCompleteServlet;
-import org.vimide.eclipse.flashbuilder.servlet.CommentServlet;
-import org.vimide.eclipse.flashbuilder.servlet.FlexUpdateSrcServlet;
-import org.vimide.eclipse.flashbuilder.servlet.FormatServlet;
-import org.vimide.eclipse.flashbuilder.servlet.ImportServlet;
-import org.vimide.eclipse.flashbuilder.servlet.OrganizeImportsServlet;
-import org.vimide.eclipse.flashbuilder.servlet.OverrideImplServlet;
-import org.vimide.eclipse.flashbuilder.servlet.SdkListServlet;
-import org.vimide.eclipse.flashbuilder.servlet.SearchServlet;
 
 /**
  * Represents a eclipse plugin for flashbuilder extension of Vimide.
@@ -73,30 +61,5 @@ public class VimideFbPlugin extends VimidePlugin {
         plugin = this;
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    protected void activate(BundleContext context) {
-        super.activate(context);
-
-        // List SDKs.
-        VimideHttpServer.getInstance().registerServlet(SdkListServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                FlexUpdateSrcServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                CodeCompleteServlet.class);
-        VimideHttpServer.getInstance().registerServlet(FormatServlet.class);
-        VimideHttpServer.getInstance().registerServlet(CommentServlet.class);
-        VimideHttpServer.getInstance().registerServlet(ImportServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                OrganizeImportsServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                BlockCommentServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                OverrideImplServlet.class);
-        VimideHttpServer.getInstance().registerServlet(SearchServlet.class);
-    }
-
 }
 // vim:ft=java
@@ -31,6 +31,7 @@ import javax.servlet.annotation.WebServlet;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.vimide.core.servlet.ConcurrencyLimit;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.core.util.FileObject;
@@ -46,6 +47,7 @@ import com.adobe.flexide.editorcore.document.IFlexDocument;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@ConcurrencyLimit(2)
 @WebServlet(urlPatterns = "/flexSearch")
 public class SearchServlet extends GenericVimideHttpServlet {
 
@@ -23,21 +23,18 @@
 
 package org.vimide.eclipse.jdt;
 
+import java.io.File;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
 import org.osgi.framework.BundleContext;
-import org.vimide.core.server.VimideHttpServer;
+import org.vimide.core.servlet.RequestCoalescer;
 import org.vimide.eclipse.core.VimidePlugin;
-import org.vimide.eclipse.jdt.servlet.CodeCompleteServlet;
-import org.vimide.eclipse.jdt.servlet.JVMListServlet;
-import org.vimide.eclipse.jdt.servlet.JavaConstructorServlet;
-import org.vimide.eclipse.jdt.servlet.JavaCorrectServlet;
-import org.vimide.eclipse.jdt.servlet.JavaSearchServlet;
-import org.vimide.eclipse.jdt.servlet.impl.JavaGetSetServlet;
-import org.vimide.eclipse.jdt.servlet.impl.JavaImplServlet;
-import org.vimide.eclipse.jdt.servlet.source.JavaDocCommentServlet;
-import org.vimide.eclipse.jdt.servlet.source.JavaFormatServlet;
-import org.vimide.eclipse.jdt.servlet.source.JavaImportServlet;
-import org.vimide.eclipse.jdt.servlet.source.JavaUpdateSrcServlet;
-import org.vimide.eclipse.jdt.servlet.source.OrganizeImportsServlet;
+import org.vimide.eclipse.jdt.complete.CodeCompletionExecutor;
+import org.vimide.eclipse.jdt.service.JavaModelStampListener;
+import org.vimide.eclipse.jdt.service.JavaWarmUpService;
+import org.vimide.eclipse.jdt.service.JavaWorkingCopyManager;
 
 /**
  * Vimide JDT plugin for eclipse.
@@ -51,6 +48,21 @@ public class VimideJdtPlugin extends VimidePlugin {
      */
     public static final String PLUGIN_ID = "org.vimide.eclipse.jdt";
 
+    /**
+     * Stamps the files by their opened buffers, so the requests against an
+     * edited buffer don't share the responses of its older versions.
+     */
+    static final RequestCoalescer.Stamper BUFFER_STAMPER = new RequestCoalescer.Stamper() {
+
+        @Override
+        public String stampOf(File file) {
+            final IFile iFile = ResourcesPlugin.getWorkspace().getRoot()
+                    .getFileForLocation(new Path(file.getAbsolutePath()));
+            return null == iFile ? null : JavaWorkingCopyManager.getInstance()
+                    .getStamp(iFile);
+        }
+    };
+
     /**
      * Default Constructor.
      */
@@ -58,6 +70,20 @@ public class VimideJdtPlugin extends VimidePlugin {
         super();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.eclipse.core.VimidePlugin#stop(org.osgi.framework.BundleContext)
+     */
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        JavaModelStampListener.getInstance().uninstall();
+        RequestCoalescer.getInstance().removeStamper(BUFFER_STAMPER);
+        CodeCompletionExecutor.getInstance().shutdown();
+        JavaWorkingCopyManager.getInstance().closeAll();
+        super.stop(context);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -65,24 +91,9 @@ public class VimideJdtPlugin extends VimidePlugin {
     protected void activate(BundleContext context) {
         super.activate(context);
 
-        VimideHttpServer.getInstance().registerServlet(JVMListServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JavaFormatServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                JavaUpdateSrcServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                OrganizeImportsServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JavaImportServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JavaSearchServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                JavaDocCommentServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                CodeCompleteServlet.class);
-        VimideHttpServer.getInstance()
-                .registerServlet(JavaCorrectServlet.class);
-        VimideHttpServer.getInstance().registerServlet(
-                JavaConstructorServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JavaGetSetServlet.class);
-        VimideHttpServer.getInstance().registerServlet(JavaImplServlet.class);
+        JavaModelStampListener.getInstance().install();
+        RequestCoalescer.getInstance().addStamper(BUFFER_STAMPER);
+        JavaWarmUpService.getInstance().install();
     }
 }
 
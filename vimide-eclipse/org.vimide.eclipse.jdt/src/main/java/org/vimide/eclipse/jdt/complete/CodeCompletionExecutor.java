@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.jdt.complete;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.eclipse.core.util.RequestProgressMonitor;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Dedicated executor for java code completion.
+ * <p>
+ * Completions are calculated on worker threads instead of the SWT display
+ * thread, so requests for different files run in parallel. The number of
+ * in-flight requests for the same file is bounded by
+ * <code>vimide.complete.permitsPerFile</code>, the worker count by
+ * <code>vimide.complete.threads</code>.
+ * </p>
+ * <p>
+ * The wait is bounded by the {@link Deadline} of the request too, the
+ * calculation is cancelled once the deadline passed.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class CodeCompletionExecutor {
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(CodeCompletionExecutor.class);
+
+    static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime()
+            .availableProcessors());
+    static final int DEFAULT_PERMITS_PER_FILE = 2;
+    static final long DEFAULT_TIMEOUT = 10000L;
+
+    /**
+     * Singleton holder of {@link CodeCompletionExecutor}.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    private static class SingletonHolder {
+        static final CodeCompletionExecutor instance = new CodeCompletionExecutor(
+                Integer.getInteger("vimide.complete.threads", DEFAULT_THREADS),
+                Integer.getInteger("vimide.complete.permitsPerFile",
+                        DEFAULT_PERMITS_PER_FILE), Long.getLong(
+                        "vimide.complete.timeout", DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return singleton.
+     */
+    public static CodeCompletionExecutor getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final ExecutorService executor;
+    private final LoadingCache<String, Semaphore> filePermits;
+    private final long timeout;
+
+    /**
+     * Creates an new CodeCompletionExecutor instance.
+     * 
+     * @param threads the number of worker threads.
+     * @param permitsPerFile the maximum concurrent requests of one file.
+     * @param timeout the maximum milliseconds a request could wait.
+     */
+    CodeCompletionExecutor(int threads, final int permitsPerFile, long timeout) {
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("vimide-complete-%d").build());
+        this.filePermits = CacheBuilder.newBuilder().weakValues()
+                .build(new CacheLoader<String, Semaphore>() {
+
+                    @Override
+                    public Semaphore load(String key) throws Exception {
+                        return new Semaphore(permitsPerFile, true);
+                    }
+                });
+        this.timeout = timeout;
+    }
+
+    /**
+     * Calculates the code completion result on a worker thread.
+     * 
+     * @param src the source.
+     * @param offset the char offset of the cursor.
+     * @param layout the layout of result.
+     * @return the code completion result.
+     * @throws Exception
+     */
+    public Object calculate(final ICompilationUnit src, final int offset,
+            final String layout) throws Exception {
+        Deadline.check();
+        final long wait = Deadline.limit(timeout);
+        final long deadline = System.currentTimeMillis() + wait;
+        final Semaphore permits = filePermits.getUnchecked(src.getPath()
+                .toString());
+
+        if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+            Deadline.check();
+            throw new TimeoutException(
+                    "Too many pending completions for the file: "
+                            + src.getPath());
+        }
+
+        final CompletionTask task = new CompletionTask(permits, src, offset,
+                layout);
+        Future<Object> future = null;
+        try {
+            future = executor.submit(task);
+            return future.get(
+                    Math.max(0L, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        } catch (final TimeoutException e) {
+            LOGGER.warn("Code completion timeout at {}:{}", src.getPath(),
+                    offset);
+            task.monitor.setCanceled(true);
+            // a task still queued gives its permit back here, a running one
+            // keeps it until JDT actually returned.
+            future.cancel(!task.abandon());
+            Deadline.check();
+            throw e;
+        } finally {
+            // rejected by the executor, the task will never run.
+            if (null == future)
+                task.abandon();
+        }
+    }
+
+    /**
+     * Shutdowns the worker threads.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Completion task which holds a permit of the file.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    static class CompletionTask implements Callable<Object> {
+
+        // created on the request thread, captures the request.
+        final IProgressMonitor monitor = new RequestProgressMonitor();
+        final Deadline deadline = Deadline.current();
+        final AtomicBoolean started = new AtomicBoolean(false);
+        final Semaphore permits;
+        final ICompilationUnit src;
+        final int offset;
+        final String layout;
+
+        CompletionTask(Semaphore permits, ICompilationUnit src, int offset,
+                String layout) {
+            this.permits = permits;
+            this.src = src;
+            this.offset = offset;
+            this.layout = layout;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object call() throws Exception {
+            if (!started.compareAndSet(false, true))
+                return null; // abandoned, the permit was given back already.
+
+            final Deadline previous = Deadline.bind(deadline);
+            try {
+                return CodeCompletionService.getInstance().calculate(src,
+                        offset, layout, monitor);
+            } finally {
+                Deadline.bind(previous);
+                permits.release();
+            }
+        }
+
+        /**
+         * Abandons the task if it has not been started yet and gives its
+         * permit back.
+         * 
+         * @return true if the task was abandoned, false if it is running or
+         *         done already.
+         */
+        boolean abandon() {
+            if (!started.compareAndSet(false, true))
+                return false;
+            permits.release();
+            return true;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
@@ -45,10 +46,14 @@ import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.ui.text.java.CompletionProposalCollector;
+import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.metrics.VimideTracer;
 import org.vimide.core.util.FileObject;
+import org.vimide.core.util.LineIndex;
 import org.vimide.eclipse.core.util.EclipseResourceUtil;
+import org.vimide.eclipse.core.util.RequestProgressMonitor;
 import org.vimide.eclipse.jdt.search.SearchRequestor;
 import org.vimide.eclipse.jdt.service.JavaSourceService;
 
@@ -71,6 +76,7 @@ public class CodeCompletionProposalCollector extends
             .getLogger(CodeCompletionProposalCollector.class.getName());
 
     private List<CompletionProposal> proposals = Lists.newArrayList();
+    private List<CompletionProposal> deferred = Lists.newArrayList();
     private List<String> imports;
     private Map<String, Object> error;
 
@@ -109,6 +115,11 @@ public class CodeCompletionProposalCollector extends
                 case CompletionProposal.VARIABLE_DECLARATION:
                 case CompletionProposal.ANNOTATION_ATTRIBUTE_REF:
                 case CompletionProposal.POTENTIAL_METHOD_DECLARATION:
+                    if (isDisplayRequired(proposal)
+                            && null == Display.getCurrent()) {
+                        deferred.add(proposal);
+                        break;
+                    }
                     proposals.add(proposal);
                     super.accept(proposal);
                     break;
@@ -126,6 +137,59 @@ public class CodeCompletionProposalCollector extends
         }
     }
 
+    /**
+     * Tells if the supplied proposal must be created in the display thread.
+     * <p>
+     * The declaration proposals resolve the code templates and the
+     * preferences of the workbench.
+     * </p>
+     * 
+     * @param proposal the completion proposal.
+     * @return true if the display thread required, false otherwise.
+     */
+    protected boolean isDisplayRequired(CompletionProposal proposal) {
+        switch (proposal.getKind()) {
+            case CompletionProposal.ANONYMOUS_CLASS_DECLARATION:
+            case CompletionProposal.METHOD_DECLARATION:
+            case CompletionProposal.POTENTIAL_METHOD_DECLARATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Accepts the deferred proposals in the display thread, they were
+     * appended to the end of the proposals.
+     */
+    public void acceptDeferred() {
+        if (deferred.isEmpty())
+            return;
+
+        final List<CompletionProposal> pending = Lists.newArrayList(deferred);
+        deferred.clear();
+
+        Display.getDefault().syncExec(new Runnable() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                for (CompletionProposal proposal : pending) {
+                    try {
+                        proposals.add(proposal);
+                        CodeCompletionProposalCollector.super.accept(proposal);
+                    } catch (final IllegalArgumentException e) {
+                        proposals.remove(proposals.size() - 1);
+                        log.warn("Exception when processing proposal for: {}",
+                                String.valueOf(proposal.getCompletion()), e);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Gets the completion proposal by the supplied index.
      * 
@@ -165,7 +229,13 @@ public class CodeCompletionProposalCollector extends
                 SearchEngine engine = new SearchEngine();
                 SearchParticipant[] participants = new SearchParticipant[] { SearchEngine
                         .getDefaultSearchParticipant() };
-                engine.search(pattern, participants, scope, requestor, null);
+                final int span = VimideTracer.enter("SearchEngine.search");
+                try {
+                    engine.search(pattern, participants, scope, requestor,
+                            new RequestProgressMonitor());
+                } finally {
+                    VimideTracer.exit(span);
+                }
 
                 if (!requestor.getMatches().isEmpty()) {
                     imports = Lists.newArrayList();
@@ -225,8 +295,15 @@ public class CodeCompletionProposalCollector extends
             int pos[] = null;
 
             try {
-                pos = new FileObject(fileName).getLineColumn(problem
-                        .getSourceStart());
+                // a working copy was completed against its own contents,
+                // which may differ from the file on disk.
+                pos = src.isWorkingCopy() ? LineIndex.forString(
+                        src.getBuffer().getContents()).getLineColumn(
+                        problem.getSourceStart()) : new FileObject(fileName)
+                        .getLineColumn(problem.getSourceStart());
+            } catch (JavaModelException e) {
+                e.printStackTrace();
+                pos = new int[] { problem.getSourceLineNumber(), 0 };
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
                 pos = new int[] { problem.getSourceLineNumber(), 0 };
@@ -26,11 +26,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.CompletionProposal;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.internal.ui.text.java.JavaCompletionProposal;
 import org.eclipse.jdt.internal.ui.text.java.LazyJavaCompletionProposal;
 import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.metrics.VimideTracer;
 import org.vimide.eclipse.core.complete.CodeCompletionResult;
 import org.vimide.eclipse.jdt.service.JavaBaseService;
 
@@ -84,10 +87,35 @@ public class CodeCompletionService extends JavaBaseService {
      */
     public Object calculate(final ICompilationUnit src, final int offset,
             String layout) throws Exception {
+        return calculate(src, offset, layout, null);
+    }
+
+    /**
+     * Calculates the code completion result.
+     * 
+     * @param src the source.
+     * @param offset the char offset of the cursor.
+     * @param layout the layout of result.
+     * @param monitor the progress monitor to cancel the calculation, may be
+     *            null.
+     * @return the code completion result.
+     */
+    public Object calculate(final ICompilationUnit src, final int offset,
+            String layout, IProgressMonitor monitor) throws Exception {
 
         CodeCompletionProposalCollector collector = new CodeCompletionProposalCollector(
                 src);
-        src.codeComplete(offset, collector);
+        final long start = System.nanoTime();
+        final int span = VimideTracer.enter("codeComplete");
+        try {
+            src.codeComplete(offset, collector, monitor);
+        } finally {
+            VimideTracer.exit(span);
+        }
+        VimideMetrics.recordPhase("jdt", start);
+
+        // the proposals which depends on the workbench were deferred.
+        collector.acceptDeferred();
 
         IJavaCompletionProposal[] proposals = collector
                 .getJavaCompletionProposals();
@@ -47,11 +47,17 @@ import org.eclipse.jdt.core.IProblemRequestor;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.correction.ContributedProcessorDescriptor;
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.text.java.IQuickFixProcessor;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.metrics.VimideTracer;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.eclipse.core.util.RequestProgressMonitor;
 
 import com.google.common.collect.Lists;
 
@@ -118,13 +124,24 @@ public class JavaBaseService {
      * @return the compilation unit element.
      */
     public ICompilationUnit getCompilationUnit(IProject project, IPath path) {
+        final int span = VimideTracer.enter("getCompilationUnit");
+        try {
+            return findCompilationUnit(project, path);
+        } finally {
+            VimideTracer.exit(span);
+        }
+    }
+
+    private ICompilationUnit findCompilationUnit(IProject project, IPath path) {
         if (null != project && null != path) {
             IFile file = project.getFile(path);
             if (null != file && file.exists()) {
-                // refresh locally at first.
-                try {
-                    file.refreshLocal(IResource.DEPTH_INFINITE, null);
-                } catch (CoreException e) {
+                // refresh locally only if the file was changed on disk.
+                if (!file.isSynchronized(IResource.DEPTH_ZERO)) {
+                    try {
+                        file.refreshLocal(IResource.DEPTH_ZERO, null);
+                    } catch (CoreException e) {
+                    }
                 }
                 return JavaCore.createCompilationUnitFrom(file);
             }
@@ -132,6 +149,43 @@ public class JavaBaseService {
         return null;
     }
 
+    /**
+     * Gets a working copy of the supplied source which holds the unsaved
+     * contents of the editor buffer. Neither the file on disk nor the
+     * workspace resource is touched, the caller must discard the working copy
+     * when done.
+     * 
+     * @param src the source.
+     * @param contents the contents of the buffer.
+     * @return the working copy.
+     * @throws Exception
+     */
+    public ICompilationUnit getWorkingCopy(ICompilationUnit src,
+            String contents) throws Exception {
+        ICompilationUnit workingCopy = src.getWorkingCopy(null);
+        workingCopy.getBuffer().setContents(contents);
+        return workingCopy;
+    }
+
+    /**
+     * Reconciles the supplied working copy and gets the problems of its
+     * buffer contents.
+     * 
+     * @param workingCopy the working copy.
+     * @return the problems.
+     * @throws Exception
+     */
+    public IProblem[] reconcile(ICompilationUnit workingCopy) throws Exception {
+        Deadline.check();
+        final long start = System.nanoTime();
+        CompilationUnit ast = workingCopy.reconcile(AST.JLS3, true,
+                workingCopy.getOwner(), new RequestProgressMonitor());
+        VimideMetrics.recordPhase("parse", start);
+        if (null == ast)
+            return new IProblem[0];
+        return ast.getProblems();
+    }
+
     /**
      * Gets the fully qualified name of the supplied java element.
      * <p/>
@@ -534,21 +588,35 @@ public class JavaBaseService {
      * @return the problems.
      * @throws Exception
      */
-    @SuppressWarnings("deprecation")
     public IProblem[] getProblems(ICompilationUnit src, int... ids)
             throws Exception {
-        ICompilationUnit workingCopy = src.getWorkingCopy(null);
-
         ProblemRequestor requestor = new ProblemRequestor(ids);
-        try {
-            workingCopy.discardWorkingCopy();
-            workingCopy.becomeWorkingCopy(requestor, null);
-        } finally {
-            workingCopy.discardWorkingCopy();
+
+        // the opened buffer only re-analyses what changed.
+        IProblem[] problems = null;
+        if (src.isWorkingCopy()) {
+            problems = reconcile(src);
+        } else if (null != src.getResource()
+                && IResource.FILE == src.getResource().getType()) {
+            problems = JavaWorkingCopyManager.getInstance().reconcile(
+                    (IFile) src.getResource());
+        }
+
+        if (null == problems) {
+            ICompilationUnit workingCopy = src.getWorkingCopy(null);
+            try {
+                problems = reconcile(workingCopy);
+            } finally {
+                workingCopy.discardWorkingCopy();
+            }
+        }
+
+        for (IProblem problem : problems) {
+            requestor.acceptProblem(problem);
         }
 
-        List<IProblem> problems = requestor.getProblems();
-        return problems.toArray(new IProblem[problems.size()]);
+        List<IProblem> results = requestor.getProblems();
+        return results.toArray(new IProblem[results.size()]);
     }
 
     /**
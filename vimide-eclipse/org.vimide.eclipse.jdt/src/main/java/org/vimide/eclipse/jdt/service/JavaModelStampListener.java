@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.jdt.service;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.launching.IVMInstall;
+import org.eclipse.jdt.launching.IVMInstallChangedListener;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.eclipse.jdt.launching.PropertyChangeEvent;
+import org.vimide.core.servlet.ResponseCache;
+
+/**
+ * Invalidates the {@link ResponseCache} on the changes of the java model and
+ * of the installed VMs.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class JavaModelStampListener implements IElementChangedListener,
+        IVMInstallChangedListener {
+
+    /**
+     * Singleton holder of {@link JavaModelStampListener}.
+     */
+    private static class SingletonHolder {
+        static final JavaModelStampListener instance = new JavaModelStampListener();
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return singleton.
+     */
+    public static JavaModelStampListener getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private boolean installed;
+
+    /**
+     * Creates an new JavaModelStampListener instance.
+     */
+    private JavaModelStampListener() {
+        super();
+    }
+
+    /**
+     * Registers the listener, the reconciles of the working copies are
+     * ignored as they don't change the answers cached.
+     */
+    public synchronized void install() {
+        if (!installed) {
+            JavaCore.addElementChangedListener(this,
+                    ElementChangedEvent.POST_CHANGE);
+            JavaRuntime.addVMInstallChangedListener(this);
+            installed = true;
+        }
+    }
+
+    /**
+     * Unregisters the listener.
+     */
+    public synchronized void uninstall() {
+        if (installed) {
+            JavaCore.removeElementChangedListener(this);
+            JavaRuntime.removeVMInstallChangedListener(this);
+            installed = false;
+        }
+    }
+
+    @Override
+    public void elementChanged(ElementChangedEvent event) {
+        ResponseCache.getInstance().invalidate();
+    }
+
+    @Override
+    public void defaultVMInstallChanged(IVMInstall previous,
+            IVMInstall current) {
+        ResponseCache.getInstance().invalidate();
+    }
+
+    @Override
+    public void vmChanged(PropertyChangeEvent event) {
+        ResponseCache.getInstance().invalidate();
+    }
+
+    @Override
+    public void vmAdded(IVMInstall vm) {
+        ResponseCache.getInstance().invalidate();
+    }
+
+    @Override
+    public void vmRemoved(IVMInstall vm) {
+        ResponseCache.getInstance().invalidate();
+    }
+
+}
@@ -45,12 +45,16 @@ import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
+import org.vimide.core.metrics.VimideTracer;
+import org.vimide.core.servlet.Deadline;
 import org.vimide.core.util.Os;
 import org.vimide.core.util.Position;
+import org.vimide.eclipse.core.util.RequestProgressMonitor;
 import org.vimide.eclipse.jdt.search.SearchRequestor;
 import org.vimide.eclipse.jdt.util.EclipseJdtUtil;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 
 /**
  * Represents a service for searching.
@@ -242,10 +246,17 @@ public class JavaSearchService extends JavaBaseService {
         SearchRequestor requestor = new SearchRequestor();
 
         if (null != pattern) {
+            Deadline.check();
             SearchEngine engine = new SearchEngine();
             SearchParticipant[] participants = new SearchParticipant[] { SearchEngine
                     .getDefaultSearchParticipant() };
-            engine.search(pattern, participants, scope, requestor, null);
+            final int span = VimideTracer.enter("SearchEngine.search");
+            try {
+                engine.search(pattern, participants, scope, requestor,
+                        new RequestProgressMonitor());
+            } finally {
+                VimideTracer.exit(span);
+            }
         }
         return requestor.getMatches();
     }
@@ -260,6 +271,42 @@ public class JavaSearchService extends JavaBaseService {
      */
     public Position createPosition(IProject project, SearchMatch match)
             throws Exception {
+        return Position.fromOffset(getMatchFile(project, match),
+                getFullyQualifiedName((IJavaElement) match.getElement()),
+                match.getOffset(), match.getLength());
+    }
+
+    /**
+     * Creates the positions from the supplied SearchMatch objects in batch,
+     * each file of the matches is read only once.
+     * 
+     * @param project the project searching from.
+     * @param matches the SearchMatch objects.
+     * @return the positions in the order of the matches.
+     * @throws Exception
+     */
+    public List<Position> createPositions(IProject project,
+            List<SearchMatch> matches) throws Exception {
+        List<Position.Request> requests = Lists.newArrayList();
+        for (SearchMatch match : matches) {
+            requests.add(new Position.Request(getMatchFile(project, match),
+                    getFullyQualifiedName((IJavaElement) match.getElement()),
+                    match.getOffset(), match.getLength()));
+        }
+        return Position.fromOffsets(requests);
+    }
+
+    /**
+     * Gets the file or the jar/zip url which contains the supplied
+     * SearchMatch object.
+     * 
+     * @param project the project searching from.
+     * @param match the SearchMatch object.
+     * @return the file name.
+     * @throws Exception
+     */
+    protected String getMatchFile(IProject project, SearchMatch match)
+            throws Exception {
         IJavaElement element = (IJavaElement) match.getElement();
         IJavaElement parent = EclipseJdtUtil.getPrimaryElement(element);
 
@@ -342,8 +389,6 @@ public class JavaSearchService extends JavaBaseService {
             file = null != location ? location.toOSString() : null;
         }
 
-        elementName = getFullyQualifiedName(element);
-        return Position.fromOffset(file.replace('\\', '/'), elementName,
-                match.getOffset(), match.getLength());
+        return file.replace('\\', '/');
     }
 }
@@ -35,6 +35,7 @@ import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
@@ -760,13 +761,29 @@ public class JavaSourceService extends JavaBaseService {
      */
     public Object organizeImports(ICompilationUnit src, int offset,
             String... types) throws Exception {
+        return organizeImports(src, offset, null, types);
+    }
+
+    /**
+     * Organzies the imports for the supplied source, reporting the progress
+     * to the monitor.
+     * 
+     * @param src the source file.
+     * @param offset the offset.
+     * @param monitor the progress monitor, could be null.
+     * @param types the array of types.
+     * @return the position result or null if illegal.
+     * @throws Exception
+     */
+    public Object organizeImports(ICompilationUnit src, int offset,
+            IProgressMonitor monitor, String... types) throws Exception {
         int oldLength = src.getBuffer().getLength();
         if (oldLength == 0 || offset <= 0 || offset > oldLength) {
             return null;
         }
 
         CompilationUnit astRoot = SharedASTProvider.getAST(src,
-                SharedASTProvider.WAIT_YES, null);
+                SharedASTProvider.WAIT_YES, monitor);
 
         ChooseImports query = new ChooseImports(src.getJavaProject()
                 .getProject(), types);
@@ -778,16 +795,16 @@ public class JavaSourceService extends JavaBaseService {
                 astRoot, settings.importIgnoreLowercase, true /* save */, true,
                 query);
 
-        TextEdit edit = op.createTextEdit(null);
+        TextEdit edit = op.createTextEdit(monitor);
 
         if (null != query.choices && !query.choices.isEmpty()) {
             return query.choices;
         }
 
         if (null != edit) {
-            JavaModelUtil.applyEdit(src, edit, true, null);
+            JavaModelUtil.applyEdit(src, edit, true, monitor);
             if (src.isWorkingCopy()) {
-                src.commitWorkingCopy(false, null);
+                src.commitWorkingCopy(false, monitor);
             }
         }
 
@@ -796,9 +813,9 @@ public class JavaSourceService extends JavaBaseService {
         if (null != groupingEdit) {
             if (null == edit)
                 edit = groupingEdit;
-            JavaModelUtil.applyEdit(src, groupingEdit, true, null);
+            JavaModelUtil.applyEdit(src, groupingEdit, true, monitor);
             if (src.isWorkingCopy())
-                src.commitWorkingCopy(false, null);
+                src.commitWorkingCopy(false, monitor);
         }
 
         if (null != edit) {
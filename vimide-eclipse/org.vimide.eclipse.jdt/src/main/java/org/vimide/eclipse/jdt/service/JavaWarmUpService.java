@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.jdt.service;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameRequestor;
+import org.vimide.core.server.VimideJob;
+import org.vimide.eclipse.core.service.WarmUpService;
+import org.vimide.eclipse.core.util.VimideJobProgressMonitor;
+import org.vimide.eclipse.jdt.complete.CodeCompletionService;
+
+/**
+ * Warm-up stages of the java services, registered to the
+ * {@link WarmUpService}.
+ * <p>
+ * The index stage waits for the indexer to be ready for searching, the
+ * completion stage completes, reconciles and looks up the quick fixes of a
+ * synthetic compilation unit in the first java project, which is never
+ * saved.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class JavaWarmUpService extends JavaBaseService {
+
+    static final String SYNTHETIC_NAME = "VimideWarmUp.java";
+    static final String SYNTHETIC_SOURCE = "class VimideWarmUp {\n"
+            + "    void run(String s) {\n" + "        s.\n" + "    }\n"
+            + "}\n";
+
+    /**
+     * Singleton holder of {@link JavaWarmUpService}.
+     */
+    private static class SingletonHolder {
+        static final JavaWarmUpService instance = new JavaWarmUpService();
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return singleton.
+     */
+    public static JavaWarmUpService getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private boolean installed;
+
+    /**
+     * Creates an new JavaWarmUpService instance.
+     */
+    private JavaWarmUpService() {
+        super();
+    }
+
+    /**
+     * Registers the warm-up stages.
+     */
+    public synchronized void install() {
+        if (installed)
+            return;
+
+        installed = true;
+        WarmUpService.getInstance().register("jdt.index",
+                new VimideJob.Task() {
+
+                    @Override
+                    public Object run(VimideJob job) throws Exception {
+                        waitForIndex(new VimideJobProgressMonitor(job));
+                        return null;
+                    }
+                });
+        WarmUpService.getInstance().register("jdt.completion",
+                new VimideJob.Task() {
+
+                    @Override
+                    public Object run(VimideJob job) throws Exception {
+                        return completeSynthetic(new VimideJobProgressMonitor(
+                                job));
+                    }
+                });
+    }
+
+    /**
+     * Waits until the indexes are ready for searching.
+     * 
+     * @param monitor the progress monitor.
+     * @throws Exception
+     */
+    void waitForIndex(IProgressMonitor monitor) throws Exception {
+        new SearchEngine().searchAllTypeNames(null,
+                SearchPattern.R_EXACT_MATCH, "Object".toCharArray(),
+                SearchPattern.R_EXACT_MATCH, IJavaSearchConstants.CLASS,
+                SearchEngine.createWorkspaceScope(), new TypeNameRequestor() {
+                }, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+    }
+
+    /**
+     * Completes the synthetic compilation unit, primes the reconciler and the
+     * quick fix processors as well.
+     * 
+     * @param monitor the progress monitor.
+     * @return false if no java project to complete in.
+     * @throws Exception
+     */
+    Object completeSynthetic(IProgressMonitor monitor) throws Exception {
+        final ICompilationUnit src = findSyntheticUnit();
+        if (null == src)
+            return Boolean.FALSE;
+
+        final ICompilationUnit workingCopy = getWorkingCopy(src,
+                SYNTHETIC_SOURCE);
+        try {
+            CodeCompletionService.getInstance().calculate(workingCopy,
+                    SYNTHETIC_SOURCE.indexOf("s.") + 2, null, monitor);
+            if (!monitor.isCanceled()) {
+                reconcile(workingCopy);
+                getQuickFixProcessors(workingCopy);
+            }
+        } finally {
+            workingCopy.discardWorkingCopy();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the synthetic compilation unit in the default package of the
+     * first source folder of the open java projects.
+     * 
+     * @return the compilation unit, null if no java project.
+     * @throws Exception
+     */
+    ICompilationUnit findSyntheticUnit() throws Exception {
+        for (IJavaProject project : JavaCore.create(
+                ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects()) {
+            if (!project.getProject().isOpen())
+                continue;
+            for (IPackageFragmentRoot root : project
+                    .getPackageFragmentRoots()) {
+                if (root.getKind() == IPackageFragmentRoot.K_SOURCE)
+                    return root.getPackageFragment("").getCompilationUnit(
+                            SYNTHETIC_NAME);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.jdt.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+/**
+ * Keeps the working copies of the buffers opened by the editors alive between
+ * requests.
+ * <p>
+ * The working copies are fed by incremental text edits, so a reconcile only
+ * analyses what changed. They are evicted by least recently used order when
+ * the buffers exceed <code>vimide.workingCopy.maxBytes</code>.
+ * </p>
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+public class JavaWorkingCopyManager {
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(JavaWorkingCopyManager.class);
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Singleton holder of {@link JavaWorkingCopyManager}.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    private static class SingletonHolder {
+        static final JavaWorkingCopyManager instance = new JavaWorkingCopyManager(
+                Long.getLong("vimide.workingCopy.maxBytes", DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Gets the singleton instance.
+     * 
+     * @return singleton.
+     */
+    public static JavaWorkingCopyManager getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private final Cache<String, Entry> entries;
+    private final AtomicLong openings = new AtomicLong();
+
+    /**
+     * Creates an new JavaWorkingCopyManager instance.
+     * 
+     * @param maxBytes the memory cap of the buffers.
+     */
+    JavaWorkingCopyManager(long maxBytes) {
+        entries = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher(new Weigher<String, Entry>() {
+
+                    @Override
+                    public int weigh(String key, Entry value) {
+                        return value.weight;
+                    }
+                }).removalListener(new RemovalListener<String, Entry>() {
+
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<String, Entry> notification) {
+                        // re-weighing puts the same entry again, which is
+                        // still the current one.
+                        if (notification.getValue() != entries
+                                .getIfPresent(notification.getKey())) {
+                            notification.getValue().discard();
+                        }
+                    }
+                }).build();
+    }
+
+    /**
+     * Opens the buffer of the supplied file with its contents, the working
+     * copy was replaced if already opened.
+     * 
+     * @param file the file of the buffer.
+     * @param contents the contents of the buffer.
+     * @return the version of the buffer.
+     * @throws Exception
+     */
+    public long open(IFile file, String contents) throws Exception {
+        final ICompilationUnit src = JavaCore.createCompilationUnitFrom(file);
+        if (null == src)
+            throw new IllegalArgumentException("Not a java source: " + file);
+
+        final Entry entry = new Entry(src.getWorkingCopy(null),
+                openings.incrementAndGet());
+        synchronized (entry) {
+            entry.workingCopy.getBuffer().setContents(contents);
+            entry.update();
+        }
+        entries.put(keyOf(file), entry);
+        return entry.version;
+    }
+
+    /**
+     * Applies a text edit to the opened buffer.
+     * 
+     * @param file the file of the buffer.
+     * @param version the version of the buffer the edit based on, negative to
+     *            skip the checking.
+     * @param offset the char offset of the replaced range.
+     * @param length the char length of the replaced range.
+     * @param text the replacing text.
+     * @return the new version of the buffer, or -1 if the buffer wasn't opened
+     *         or the version mismatched.
+     * @throws Exception
+     */
+    public long update(IFile file, long version, int offset, int length,
+            String text) throws Exception {
+        final String key = keyOf(file);
+        final Entry entry = entries.getIfPresent(key);
+        if (null == entry)
+            return -1;
+
+        synchronized (entry) {
+            if (version >= 0 && version != entry.version)
+                return -1;
+
+            final IBuffer buffer = entry.workingCopy.getBuffer();
+            if (offset < 0 || length < 0
+                    || offset + length > buffer.getLength())
+                throw new IllegalArgumentException("Illegal edit range: "
+                        + offset + ", " + length);
+
+            buffer.replace(offset, length, null == text ? "" : text);
+            entry.update();
+        }
+
+        // re-weighs the entry by its new length.
+        entries.asMap().replace(key, entry, entry);
+        return entry.version;
+    }
+
+    /**
+     * Gets a snapshot of the contents of the opened buffer.
+     * <p>
+     * The working copy itself is never handed out, it is edited concurrently
+     * by {@link #update(IFile, long, int, int, String)}.
+     * </p>
+     * 
+     * @param file the file of the buffer.
+     * @return the contents, or null if not opened.
+     * @throws JavaModelException
+     */
+    public String getContents(IFile file) throws JavaModelException {
+        final Entry entry = entries.getIfPresent(keyOf(file));
+        if (null == entry)
+            return null;
+
+        synchronized (entry) {
+            return entry.workingCopy.getBuffer().getContents();
+        }
+    }
+
+    /**
+     * Gets the stamp of the opened buffer, which changes with every opening
+     * and edit of it, unlike the version reset by the reopening.
+     * 
+     * @param file the file of the buffer.
+     * @return the stamp, or null if not opened.
+     */
+    public String getStamp(IFile file) {
+        final Entry entry = entries.getIfPresent(keyOf(file));
+        if (null == entry)
+            return null;
+        return entry.opening + "." + entry.version;
+    }
+
+    /**
+     * Reconciles the opened buffer and gets its problems.
+     * 
+     * @param file the file of the buffer.
+     * @return the problems, or null if the buffer wasn't opened.
+     * @throws Exception
+     */
+    public IProblem[] reconcile(IFile file) throws Exception {
+        final Entry entry = entries.getIfPresent(keyOf(file));
+        if (null == entry)
+            return null;
+
+        synchronized (entry) {
+            return JavaSourceService.getInstance()
+                    .reconcile(entry.workingCopy);
+        }
+    }
+
+    /**
+     * Closes the opened buffer and discards its working copy.
+     * 
+     * @param file the file of the buffer.
+     */
+    public void close(IFile file) {
+        entries.invalidate(keyOf(file));
+    }
+
+    /**
+     * Closes all the opened buffers.
+     */
+    public void closeAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Gets the key of the supplied file, keyed by the project and the project
+     * relative path.
+     * 
+     * @param file the file.
+     * @return the key.
+     */
+    protected String keyOf(IFile file) {
+        return file.getFullPath().toString();
+    }
+
+    /**
+     * Entry of the opened buffer.
+     * 
+     * @author keyhom (keyhom.c@gmail.com)
+     */
+    static class Entry {
+
+        final ICompilationUnit workingCopy;
+        final long opening;
+        volatile long version = 0;
+        volatile int weight = 0;
+
+        Entry(ICompilationUnit workingCopy, long opening) {
+            this.workingCopy = workingCopy;
+            this.opening = opening;
+        }
+
+        void update() throws JavaModelException {
+            version++;
+            // chars are two bytes each.
+            weight = workingCopy.getBuffer().getLength() * 2;
+        }
+
+        synchronized void discard() {
+            try {
+                workingCopy.discardWorkingCopy();
+            } catch (final Exception e) {
+                LOGGER.warn("Unable to discard the working copy: {}",
+                        workingCopy.getPath(), e);
+            }
+        }
+    }
+}
@@ -33,20 +33,27 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.swt.widgets.Display;
+import org.eclipse.jdt.core.JavaModelException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Coalesce;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
-import org.vimide.core.util.FileObject;
+import org.vimide.core.util.LineIndex;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.jdt.complete.CodeCompletionExecutor;
 import org.vimide.eclipse.jdt.complete.CodeCompletionService;
+import org.vimide.eclipse.jdt.service.JavaWorkingCopyManager;
 
 /**
  * Requests to handle java code completions.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Coalesce
+@Priority(Priority.Level.INTERACTIVE)
 @WebServlet(urlPatterns = "/javaComplete")
 public class CodeCompleteServlet extends GenericVimideHttpServlet {
 
@@ -65,6 +72,35 @@ public class CodeCompleteServlet extends GenericVimideHttpServlet {
     protected void doGet(VimideHttpServletRequest req,
             VimideHttpServletResponse resp) throws ServletException,
             IOException {
+        complete(req, resp, null);
+    }
+
+    /**
+     * Completes against the unsaved buffer contents supplied by the request
+     * body, the file on disk is neither read nor refreshed.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        complete(req, resp, req.getContentAsString());
+    }
+
+    /**
+     * Handles the code completion of the saved file or the supplied buffer
+     * contents.
+     * 
+     * @param req the request.
+     * @param resp the response.
+     * @param contents the buffer contents, null to use the opened buffer or
+     *            the saved file.
+     * @throws IOException
+     */
+    protected void complete(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp, String contents)
+            throws IOException {
         final IProject project = getProject(req);
         if (null == project || !project.exists()) {
             resp.sendError(403);
@@ -77,42 +113,59 @@ public class CodeCompleteServlet extends GenericVimideHttpServlet {
             return;
         }
 
+        // Obtains the compilation unit with src.
+        final IFile iFile = project.getFile(new Path(file.getPath())
+                .makeRelativeTo(project.getLocation()));
+
+        // the buffer opened by the editor was preferred, completes against a
+        // snapshot of it since it could be edited meanwhile.
+        if (null == contents) {
+            try {
+                contents = JavaWorkingCopyManager.getInstance().getContents(
+                        iFile);
+            } catch (final JavaModelException e) {
+                LOGGER.warn("Unable to read the opened buffer: {}", iFile, e);
+            }
+        }
+
         int offset = req.getIntParameter("offset", 0);
 
         if (0 < offset) {
-            offset = new FileObject(file).getCharLength(offset);
+            final LineIndex index = null != contents ? LineIndex
+                    .forString(contents) : LineIndex.forFile(file);
+            offset = index.toCharOffset(offset);
         }
 
         final int charOffset = offset;
 
-        // Obtains the compilation unit with src.
-        final IFile iFile = project.getFile(new Path(file.getPath())
-                .makeRelativeTo(project.getLocation()));
-
         final String layout = req.getNotNullParameter("layout");
-        final ICompilationUnit src = JavaCore.createCompilationUnitFrom(iFile);
-        final Object[] result = new Object[] { null };
-
-        Display.getDefault().syncExec(new Runnable() {
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public void run() {
+        ICompilationUnit src = JavaCore.createCompilationUnitFrom(iFile);
+        Object result = null;
+
+        try {
+            if (null != contents)
+                src = CodeCompletionService.getInstance().getWorkingCopy(src,
+                        contents);
+
+            result = CodeCompletionExecutor.getInstance().calculate(src,
+                    charOffset, layout);
+        } catch (final Exception e) {
+            // the client has gone if the deadline passed.
+            Deadline.check();
+            LOGGER.error("", e);
+        } finally {
+            if (null != contents && src.isWorkingCopy()) {
                 try {
-                    result[0] = CodeCompletionService.getInstance().calculate(
-                            src, charOffset, layout);
-                } catch (final Exception e) {
-                    LOGGER.error("", e);
+                    src.discardWorkingCopy();
+                } catch (final Exception ignore) {
                 }
             }
-        });
+        }
 
-        if (null == result[0])
-            result[0] = 1;
+        if (null == result)
+            result = 1;
 
-        resp.writeAsJson(result[0]);
+        resp.writeAsJson(result);
     }
 
 }
@@ -28,21 +28,28 @@ import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.core.util.FileObject;
+import org.vimide.core.util.LineIndex;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
 import org.vimide.eclipse.jdt.correct.JavaCorrectService;
+import org.vimide.eclipse.jdt.service.JavaWorkingCopyManager;
 
 /**
  * Handles requests for code corrections.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Priority(Priority.Level.INTERACTIVE)
 @WebServlet(urlPatterns = "/javaCorrect")
 public class JavaCorrectServlet extends GenericVimideHttpServlet {
 
@@ -81,9 +88,22 @@ public class JavaCorrectServlet extends GenericVimideHttpServlet {
         }
 
         int offset = req.getIntParameter("offset", 0);
-        if (0 < offset)
-            offset = new FileObject(file).getCharLength(offset);
-        else if (0 >= offset) {
+        if (0 < offset) {
+            // the problems of an opened buffer were reported against its
+            // contents, which may differ from the file on disk.
+            final IFile iFile = project.getFile(new Path(file.getPath())
+                    .makeRelativeTo(project.getLocation()));
+            String contents = null;
+            try {
+                contents = JavaWorkingCopyManager.getInstance().getContents(
+                        iFile);
+            } catch (final JavaModelException e) {
+                log.warn("Unable to read the opened buffer: {}", iFile, e);
+            }
+            offset = null != contents ? LineIndex.forString(contents)
+                    .toCharOffset(offset) : new FileObject(file)
+                    .getCharLength(offset);
+        } else if (0 >= offset) {
             resp.sendError(403);
             return;
         }
@@ -36,6 +36,10 @@ import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Coalesce;
+import org.vimide.core.servlet.ConcurrencyLimit;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.core.util.FileObject;
@@ -50,6 +54,9 @@ import com.google.common.collect.Lists;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Coalesce
+@ConcurrencyLimit(value = 2, waitMillis = 5000, maxQueue = 4)
+@Priority(Priority.Level.NEAR_INTERACTIVE)
 @WebServlet(urlPatterns = "/javaSearch")
 public class JavaSearchServlet extends GenericVimideHttpServlet {
 
@@ -105,23 +112,25 @@ public class JavaSearchServlet extends GenericVimideHttpServlet {
                     length, caseSensitive, service.getType(type), scope,
                     pattern);
 
-            List<Position> results = Lists.newArrayList();
+            List<SearchMatch> located = Lists.newArrayList();
             for (SearchMatch match : matches) {
                 IJavaElement element = (IJavaElement) match.getElement();
                 if (null != element) {
                     int elementType = element.getElementType();
                     if (elementType != IJavaElement.PACKAGE_FRAGMENT
                             && elementType != IJavaElement.PACKAGE_FRAGMENT_ROOT) {
-                        Position result = service
-                                .createPosition(project, match);
-                        if (null != result)
-                            results.add(result);
+                        located.add(match);
                     }
                 }
             }
 
+            // resolves the positions by file in batch.
+            List<Position> results = service.createPositions(project, located);
+
             resp.writeAsJson(results);
         } catch (final Exception e) {
+            // the client has gone if the deadline passed.
+            Deadline.check();
             log.error("Error caught at searching: {}", e.getMessage(), e);
             resp.writeAsJson(e.getMessage());
             return;
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2013 keyhom.c@gmail.com.
+ *
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from
+ * the use of this software.
+ *
+ * Permission is granted to anyone to use this software for any purpose
+ * excluding commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ *
+ *     1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software
+ *     in a product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ *
+ *     2. Altered source versions must be plainly marked as such, and must not
+ *     be misrepresented as being the original software.
+ *
+ *     3. This notice may not be removed or altered from any source
+ *     distribution.
+ */
+package org.vimide.eclipse.jdt.servlet.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vimide.core.servlet.Priority;
+import org.vimide.core.servlet.VimideHttpServletRequest;
+import org.vimide.core.servlet.VimideHttpServletResponse;
+import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.jdt.service.JavaWorkingCopyManager;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Requests to open, update and close the persistent working copy of an
+ * editor buffer.
+ * <ul>
+ * <li><code>/javaBufferOpen</code>: the request body is the whole buffer.</li>
+ * <li><code>/javaBufferUpdate</code>: the request body replaces the range of
+ * the char <code>offset</code> and <code>length</code>, based on the buffer
+ * <code>version</code>.</li>
+ * <li><code>/javaBufferClose</code>: discards the working copy.</li>
+ * </ul>
+ * A version of -1 tells the client to open the buffer again.
+ * 
+ * @author keyhom (keyhom.c@gmail.com)
+ */
+@Priority(value = Priority.Level.INTERACTIVE, supersede = false)
+@WebServlet(urlPatterns = { "/javaBufferOpen", "/javaBufferUpdate",
+        "/javaBufferClose" })
+public class JavaBufferServlet extends GenericVimideHttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logger
+     */
+    static final Logger LOGGER = LoggerFactory
+            .getLogger(JavaBufferServlet.class);
+
+    static final String OPEN = "/javaBufferOpen";
+    static final String UPDATE = "/javaBufferUpdate";
+    static final String CLOSE = "/javaBufferClose";
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doGet(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doGet(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        if (!CLOSE.equals(req.getServletPath())) {
+            resp.sendError(405);
+            return;
+        }
+
+        final IFile iFile = getBufferFile(req);
+        if (null == iFile) {
+            resp.sendError(403);
+            return;
+        }
+
+        JavaWorkingCopyManager.getInstance().close(iFile);
+        resp.writeAsJson(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see org.vimide.core.servlet.VimideHttpServlet#doPost(org.vimide.core.servlet.VimideHttpServletRequest,
+     *      org.vimide.core.servlet.VimideHttpServletResponse)
+     */
+    @Override
+    protected void doPost(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final IFile iFile = getBufferFile(req);
+        if (null == iFile) {
+            resp.sendError(403);
+            return;
+        }
+
+        final JavaWorkingCopyManager manager = JavaWorkingCopyManager
+                .getInstance();
+        final String path = req.getServletPath();
+        long version = -1;
+
+        try {
+            if (OPEN.equals(path)) {
+                version = manager.open(iFile, req.getContentAsString());
+            } else if (UPDATE.equals(path)) {
+                version = manager.update(iFile,
+                        req.getLongParameter("version", -1),
+                        req.getIntParameter("offset"),
+                        req.getIntParameter("length"),
+                        req.getContentAsString());
+            } else if (CLOSE.equals(path)) {
+                manager.close(iFile);
+            }
+        } catch (final IllegalArgumentException e) {
+            resp.sendError(400, e.getMessage());
+            return;
+        } catch (final Exception e) {
+            LOGGER.error("Error caught at updating buffer {}: {}",
+                    new Object[] { iFile, e.getMessage(), e });
+            version = -1;
+        }
+
+        final Map<String, Object> result = Maps.newHashMap();
+        result.put("version", version);
+        resp.writeAsJson(result);
+    }
+
+    /**
+     * Gets the workspace file of the requested buffer, the resource isn't
+     * refreshed.
+     * 
+     * @param req the request.
+     * @return the file, or null if the project or file was illegal.
+     */
+    protected IFile getBufferFile(VimideHttpServletRequest req) {
+        final IProject project = getProject(req);
+        final File file = getFile(req);
+        if (null == project || !project.exists() || null == file)
+            return null;
+        return getProjectFile(project, file.getAbsolutePath(), false);
+    }
+}
@@ -41,11 +41,17 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.compiler.IProblem;
+import org.vimide.core.metrics.VimideMetrics;
+import org.vimide.core.servlet.Deadline;
+import org.vimide.core.servlet.Priority;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
-import org.vimide.core.util.FileObject;
+import org.vimide.core.util.LineIndex;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
 import org.vimide.eclipse.core.util.EclipseResourceUtil;
+import org.vimide.eclipse.jdt.service.JavaBaseService;
+import org.vimide.eclipse.jdt.service.JavaSourceService;
+import org.vimide.eclipse.jdt.service.JavaWorkingCopyManager;
 import org.vimide.eclipse.jdt.util.EclipseJdtUtil;
 
 import com.google.common.collect.Lists;
@@ -55,6 +61,7 @@ import com.google.common.collect.Lists;
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
+@Priority(Priority.Level.NEAR_INTERACTIVE)
 @WebServlet(urlPatterns = "/javaUpdateSrcFile")
 public class JavaUpdateSrcServlet extends GenericVimideHttpServlet {
 
@@ -77,12 +84,16 @@ public class JavaUpdateSrcServlet extends GenericVimideHttpServlet {
 
         final NullProgressMonitor monitor = new NullProgressMonitor();
 
-        try {
-            // refresh the file to clean the dirty.
-            iFile.refreshLocal(IResource.DEPTH_INFINITE, monitor);
-        } catch (Exception ignore) {
-            ignore.printStackTrace();
+        final long refreshStart = System.nanoTime();
+        // refresh locally only if the file was changed on disk.
+        if (!iFile.isSynchronized(IResource.DEPTH_ZERO)) {
+            try {
+                iFile.refreshLocal(IResource.DEPTH_ZERO, monitor);
+            } catch (Exception ignore) {
+                ignore.printStackTrace();
+            }
         }
+        VimideMetrics.recordPhase("refresh", refreshStart);
 
         if (validate) {
             List<Map<String, Object>> results = Lists.newArrayList();
@@ -93,9 +104,14 @@ public class JavaUpdateSrcServlet extends GenericVimideHttpServlet {
                 IProblem[] problems = EclipseJdtUtil.getProblems(src);
                 String fileName = src.getResource().getLocation().toOSString()
                         .replace('\\', '/');
+                // the problems of an opened buffer were reported against its
+                // contents, which may differ from the file on disk.
+                final String contents = JavaWorkingCopyManager.getInstance()
+                        .getContents(iFile);
+                LineIndex index = null != contents ? LineIndex
+                        .forString(contents) : LineIndex.forFile(file);
                 for (IProblem problem : problems) {
-                    int[] pos = new FileObject(file).getLineColumn(problem
-                            .getSourceStart());
+                    int[] pos = index.getLineColumn(problem.getSourceStart());
                     Map<String, Object> m = EclipseResourceUtil
                             .wrapProblemAsMap(problem.getMessage(),
                                     problem.getSourceStart(),
@@ -122,4 +138,60 @@ public class JavaUpdateSrcServlet extends GenericVimideHttpServlet {
         }
     }
 
+    /**
+     * Validates the unsaved buffer contents supplied by the request body in a
+     * working copy, the file on disk is neither refreshed nor built.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(VimideHttpServletRequest req,
+            VimideHttpServletResponse resp) throws ServletException,
+            IOException {
+        final IProject project = getProject(req);
+        final File file = getFile(req);
+        if (null == project || !project.exists() || null == file) {
+            resp.sendError(403);
+            return;
+        }
+
+        final String contents = req.getContentAsString();
+        final IFile iFile = getProjectFile(project, file.getAbsolutePath(),
+                false);
+        final List<Map<String, Object>> results = Lists.newArrayList();
+
+        ICompilationUnit workingCopy = null;
+        try {
+            final JavaBaseService service = JavaSourceService.getInstance();
+            workingCopy = service.getWorkingCopy(
+                    JavaCore.createCompilationUnitFrom(iFile), contents);
+
+            final IProblem[] problems = service.reconcile(workingCopy);
+            final LineIndex index = LineIndex.forString(contents);
+            final String fileName = iFile.getLocation().toOSString()
+                    .replace('\\', '/');
+            for (IProblem problem : problems) {
+                int[] pos = index.getLineColumn(problem.getSourceStart());
+                results.add(EclipseResourceUtil.wrapProblemAsMap(
+                        problem.getMessage(), problem.getSourceStart(),
+                        problem.getSourceEnd(), fileName,
+                        problem.getSourceLineNumber(), pos[1],
+                        problem.isError() ? 2 : 1));
+            }
+        } catch (Exception ignore) {
+            // the client has gone if the deadline passed.
+            Deadline.check();
+            ignore.printStackTrace();
+        } finally {
+            if (null != workingCopy) {
+                try {
+                    workingCopy.discardWorkingCopy();
+                } catch (final Exception ignore) {
+                }
+            }
+        }
+
+        resp.writeAsJson(results);
+    }
+
 }
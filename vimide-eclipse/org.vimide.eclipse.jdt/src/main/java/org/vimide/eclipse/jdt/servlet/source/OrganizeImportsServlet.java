@@ -35,20 +35,22 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vimide.core.server.VimideJob;
 import org.vimide.core.servlet.VimideHttpServletRequest;
 import org.vimide.core.servlet.VimideHttpServletResponse;
 import org.vimide.core.util.FileObject;
 import org.vimide.eclipse.core.servlet.GenericVimideHttpServlet;
+import org.vimide.eclipse.core.util.VimideJobProgressMonitor;
 import org.vimide.eclipse.jdt.service.JavaSourceService;
 
 import com.google.common.base.Strings;
 
 /**
- * Requests to organize imports for the specific source.
+ * Requests to organize imports for the specific source, executed as a job.
  * 
  * @author keyhom (keyhom.c@gmail.com)
  */
-@WebServlet(urlPatterns = "/javaOrganizeImports")
+@WebServlet(urlPatterns = "/javaOrganizeImports", asyncSupported = true)
 public class OrganizeImportsServlet extends GenericVimideHttpServlet {
 
     private static final long serialVersionUID = 1L;
@@ -89,20 +91,31 @@ public class OrganizeImportsServlet extends GenericVimideHttpServlet {
         }
 
         // Be sure the project and the file is correct.
-        JavaSourceService service = JavaSourceService.getInstance();
+        final JavaSourceService service = JavaSourceService.getInstance();
         IPath path = new Path(file.getPath()).makeRelativeTo(project
                 .getLocation());
-        ICompilationUnit src = service.getCompilationUnit(project, path);
-
-        try {
-            Object object = service.organizeImports(src, offset, types);
-            if (null == object)
-                object = 1;
-            resp.writeAsJson(object);
-        } catch (final Exception e) {
-            LOGGER.error("", e);
-            resp.writeAsJson(e.getMessage());
-        }
+        final ICompilationUnit src = service.getCompilationUnit(project, path);
+        final int charOffset = offset;
+        final String[] importTypes = types;
+
+        submitJob(req, resp, "Organize imports", new VimideJob.Task() {
+
+            @Override
+            public Object run(VimideJob job) throws Exception {
+                try {
+                    Object object = service.organizeImports(src, charOffset,
+                            new VimideJobProgressMonitor(job), importTypes);
+                    if (null == object)
+                        object = 1;
+                    return object;
+                } catch (final Exception e) {
+                    if (job.isCanceled())
+                        throw e;
+                    LOGGER.error("", e);
+                    return e.getMessage();
+                }
+            }
+        });
     }
 
 }
@@ -22,21 +22,17 @@
  */
 package org.vimide.eclipse.jdt.util;
 
-import java.util.List;
-
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IOpenable;
-import org.eclipse.jdt.core.IProblemRequestor;
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.vimide.eclipse.core.util.EclipseProjectUtil;
-
-import com.google.common.collect.Lists;
+import org.vimide.eclipse.jdt.service.JavaSourceService;
 
 /**
  * The utilities for eclipse JDT plugin.
@@ -68,47 +64,10 @@ public class EclipseJdtUtil {
         return getProblems(src, null);
     }
 
-    @SuppressWarnings("deprecation")
     public static IProblem[] getProblems(ICompilationUnit src, final int[] ids)
             throws Exception {
         if (null != src && src.exists()) {
-            ICompilationUnit workingCopy = src.getWorkingCopy(null);
-            final List<IProblem> problems = Lists.newArrayList();
-            IProblemRequestor requestor = new IProblemRequestor() {
-
-                @Override
-                public boolean isActive() {
-                    return true;
-                }
-
-                @Override
-                public void endReporting() {
-                }
-
-                @Override
-                public void beginReporting() {
-                }
-
-                @Override
-                public void acceptProblem(IProblem problem) {
-                    if (ids != null) {
-                        for (int id : ids) {
-                            if (problem.getID() == id)
-                                problems.add(problem);
-                        }
-                    } else {
-                        problems.add(problem);
-                    }
-                }
-            };
-            try {
-                workingCopy.discardWorkingCopy();
-                workingCopy.becomeWorkingCopy(requestor, null);
-            } finally {
-                workingCopy.discardWorkingCopy();
-            }
-
-            return problems.toArray(new IProblem[problems.size()]);
+            return JavaSourceService.getInstance().getProblems(src, ids);
         }
         return null;
     }